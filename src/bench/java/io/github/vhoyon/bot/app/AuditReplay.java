@@ -0,0 +1,466 @@
+package io.github.vhoyon.bot.app;
+
+import io.github.vhoyon.bot.utilities.metrics.CommandLatencies;
+import io.github.vhoyon.bot.utilities.metrics.LatencyHistogram;
+import io.github.vhoyon.vramework.Framework;
+import io.github.vhoyon.vramework.abstracts.AbstractCommandRouter;
+import io.github.vhoyon.vramework.abstracts.CommandsLinker;
+import io.github.vhoyon.vramework.objects.Buffer;
+import io.github.vhoyon.vramework.objects.CommandsRepository;
+import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Replays an audit file (as written by the
+ * {@link io.github.vhoyon.bot.utilities.audit.AuditWriter AuditWriter}, rolled
+ * {@code .gz} files included) through the {@link MessageListener} and the
+ * {@link CommandRouter}, using a {@link StandInDiscord} instead of Discord, so
+ * that production load shapes can be reproduced without any network.
+ * <p>
+ * The messages are replayed as fast as possible by default, or following
+ * the times of the audit file divided by a speed factor (such as
+ * {@code --speed 60} to replay an hour in a minute). At the end, the
+ * throughput, the latency percentiles of the routers (from the reception of
+ * a message to the end of its router), the allocation rate and the REST
+ * actions the bot tried to make are reported.
+ * </p>
+ * <p>
+ * Usage (from the root of the project) :
+ * </p>
+ *
+ * <pre>
+ * mvn -P benchmarks test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=io.github.vhoyon.bot.app.AuditReplay \
+ *     -Dexec.args="audit.txt [--speed factor] [--guilds count] [--users count]"
+ * </pre>
+ *
+ * @version 1.0
+ * @since v0.12.0
+ * @author V-ed (Guillaume Marcoux)
+ */
+public class AuditReplay {
+	
+	private static final DateTimeFormatter ENTRY_FORMAT = DateTimeFormatter
+			.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+	private static final int TIMESTAMP_LENGTH = 25;
+	
+	private static final long COMPLETION_TIMEOUT = TimeUnit.SECONDS
+			.toNanos(30);
+	
+	private final StandInDiscord discord;
+	private final double speed;
+	
+	private final LatencyHistogram latencies = new LatencyHistogram();
+	private final LongAdder routersCreated = new LongAdder();
+	private final LongAdder routersCompleted = new LongAdder();
+	
+	private long replayedCount;
+	private long replayThreadAllocated;
+	
+	/**
+	 * Creates the replay of the messages.
+	 *
+	 * @param discord
+	 *            The stand-in Discord that creates the events.
+	 * @param speed
+	 *            The factor to divide the times between the messages by, or
+	 *            {@code 0} to replay them as fast as possible.
+	 * @since v0.12.0
+	 */
+	public AuditReplay(StandInDiscord discord, double speed){
+		this.discord = discord;
+		this.speed = speed;
+	}
+	
+	public static void main(String[] args) throws Exception{
+		
+		if(args.length == 0){
+			System.out
+					.println("Usage : AuditReplay <audit file> [--speed factor] [--guilds count] [--users count]");
+			return;
+		}
+		
+		File auditFile = new File(args[0]);
+		double speed = 0;
+		int guilds = 1;
+		int users = 1;
+		
+		for(int i = 1; i < args.length - 1; i += 2){
+			switch(args[i]){
+			case "--speed":
+				speed = Double.parseDouble(args[i + 1]);
+				break;
+			case "--guilds":
+				guilds = Integer.parseInt(args[i + 1]);
+				break;
+			case "--users":
+				users = Integer.parseInt(args[i + 1]);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option "
+						+ args[i] + "!");
+			}
+		}
+		
+		Framework.build(Main.class, false);
+		
+		AuditReplay replay = new AuditReplay(new StandInDiscord(guilds,
+				users), speed);
+		
+		int status = 0;
+		
+		try{
+			System.out.println(replay.replay(auditFile));
+		}
+		catch(IOException e){
+			System.err.println(e.getMessage());
+			status = 1;
+		}
+		
+		RouterDispatcher.get().shutdown();
+		
+		System.exit(status);
+		
+	}
+	
+	/**
+	 * Replays every entry of the {@code auditFile} and waits for their
+	 * routers to finish.
+	 *
+	 * @param auditFile
+	 *            The audit file to replay, which may be gzipped.
+	 * @return The report of the replay.
+	 * @throws IOException
+	 *             If the audit file cannot be read, or if none of its lines
+	 *             is an entry of the AuditWriter.
+	 * @since v0.12.0
+	 */
+	public String replay(File auditFile) throws IOException{
+		
+		ReplayListener listener = new ReplayListener();
+		
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory
+				.getThreadMXBean();
+		
+		long replayThreadId = Thread.currentThread().getId();
+		
+		Map<Long, Long> allocatedBefore = getAllocatedBytes(threads,
+				replayThreadId);
+		
+		MessageGate gate = MessageGate.get();
+		RouterDispatcher dispatcher = RouterDispatcher.get();
+		
+		long droppedBefore = gate.getDroppedCount();
+		long rejectedBefore = dispatcher.getRejectedCount();
+		
+		long start = System.nanoTime();
+		
+		long replayedBefore = replayedCount;
+		long skippedCount = 0;
+		
+		try(BufferedReader reader = openAudit(auditFile)){
+			
+			long firstTimestamp = -1;
+			
+			String entry = null;
+			long entryTimestamp = 0;
+			
+			String line;
+			
+			while((line = reader.readLine()) != null){
+				
+				long timestamp = parseTimestamp(line);
+				
+				if(timestamp == -1){
+					// Continuation of a message on multiple lines
+					if(entry != null)
+						entry += "\n" + line;
+					else
+						skippedCount++;
+					continue;
+				}
+				
+				if(entry != null)
+					replayEntry(listener, threads, entry, entryTimestamp
+							- firstTimestamp, start);
+				
+				if(firstTimestamp == -1)
+					firstTimestamp = timestamp;
+				
+				entry = line.substring(TIMESTAMP_LENGTH + 1);
+				entryTimestamp = timestamp;
+				
+			}
+			
+			if(entry != null)
+				replayEntry(listener, threads, entry, entryTimestamp
+						- firstTimestamp, start);
+			
+		}
+		
+		// Such as a file written before the AuditWriter, whose lines would
+		// all be taken for continuations
+		if(replayedCount == replayedBefore)
+			throw new IOException("No entry of " + auditFile.getPath()
+					+ " could be parsed (" + skippedCount
+					+ " lines skipped) : each entry must start with a [yyyy-MM-dd"
+					+ " HH:mm:ss.SSS] timestamp, as written by the AuditWriter.");
+		
+		long replayNanos = System.nanoTime() - start;
+		
+		long deadline = System.nanoTime() + COMPLETION_TIMEOUT;
+		
+		while(routersCompleted.sum()
+				+ (dispatcher.getRejectedCount() - rejectedBefore) < routersCreated
+					.sum() && System.nanoTime() < deadline)
+			LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+		
+		long totalNanos = System.nanoTime() - start;
+		
+		long allocated = replayThreadAllocated
+				+ getAllocatedDelta(threads, allocatedBefore, replayThreadId);
+		
+		return buildReport(replayNanos, totalNanos, allocated, skippedCount,
+				gate.getDroppedCount() - droppedBefore,
+				dispatcher.getRejectedCount() - rejectedBefore);
+		
+	}
+	
+	private void replayEntry(ReplayListener listener,
+			com.sun.management.ThreadMXBean threads, String content,
+			long offsetMillis, long start){
+		
+		if(speed > 0){
+			
+			long target = start
+					+ (long)(TimeUnit.MILLISECONDS.toNanos(offsetMillis) / speed);
+			
+			long wait;
+			
+			while((wait = target - System.nanoTime()) > 0)
+				LockSupport.parkNanos(wait);
+			
+		}
+		
+		MessageReceivedEvent event = discord.createEvent(replayedCount++,
+				content);
+		
+		long threadId = Thread.currentThread().getId();
+		
+		// Only count what the bot allocates, not the creation of the event
+		long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+		
+		listener.receivedAt = System.nanoTime();
+		listener.onMessageReceived(event);
+		
+		replayThreadAllocated += threads.getThreadAllocatedBytes(threadId)
+				- allocatedBefore;
+		
+	}
+	
+	private String buildReport(long replayNanos, long totalNanos,
+			long allocatedBytes, long skippedCount, long droppedCount,
+			long rejectedCount){
+		
+		double seconds = totalNanos / 1_000_000_000.0;
+		
+		LatencyHistogram.Snapshot snapshot = latencies.getSnapshot();
+		
+		StringBuilder builder = new StringBuilder();
+		
+		builder.append(String.format(
+				"Replayed %d messages in %.3f s (%.3f s to send them)%n",
+				replayedCount, seconds, replayNanos / 1_000_000_000.0));
+		
+		if(skippedCount > 0)
+			builder.append(String.format(
+					"Skipped %d lines without a timestamp before the first entry%n",
+					skippedCount));
+		
+		builder.append(String.format("Throughput : %.1f messages/s%n",
+				replayedCount / seconds));
+		builder.append(String.format(
+				"Routers : %d created, %d completed, %d rejected, %d messages dropped by the gate%n",
+				routersCreated.sum(), routersCompleted.sum(), rejectedCount,
+				droppedCount));
+		builder.append(String.format(
+				"Latency (us) : p50 %d, p99 %d, p999 %d, max %d%n",
+				toMicros(snapshot.getValueAtPercentile(50)),
+				toMicros(snapshot.getValueAtPercentile(99)),
+				toMicros(snapshot.getValueAtPercentile(99.9)),
+				toMicros(snapshot.getMax())));
+		builder.append(String.format(
+				"Allocations : %.1f MB/s, %d bytes/message%n",
+				allocatedBytes / seconds / (1024 * 1024),
+				replayedCount == 0 ? 0 : allocatedBytes / replayedCount));
+		builder.append("REST actions : ")
+				.append(discord.getRestActionsCount()).append(" ")
+				.append(discord.getRestActions()).append("\n\n");
+		builder.append(CommandLatencies.get().getReport());
+		
+		return builder.toString();
+		
+	}
+	
+	private static BufferedReader openAudit(File auditFile)
+			throws IOException{
+		
+		InputStream input = new FileInputStream(auditFile);
+		
+		if(auditFile.getName().endsWith(".gz"))
+			input = new GZIPInputStream(input);
+		
+		return new BufferedReader(new InputStreamReader(input,
+				StandardCharsets.UTF_8));
+		
+	}
+	
+	private static long parseTimestamp(String line){
+		
+		if(line.length() <= TIMESTAMP_LENGTH || line.charAt(0) != '['
+				|| line.charAt(TIMESTAMP_LENGTH - 1) != ']')
+			return -1;
+		
+		try{
+			return LocalDateTime
+					.parse(line.substring(1, TIMESTAMP_LENGTH - 1),
+							ENTRY_FORMAT).atZone(ZoneId.systemDefault())
+					.toInstant().toEpochMilli();
+		}
+		catch(DateTimeParseException e){
+			return -1;
+		}
+		
+	}
+	
+	private static Map<Long, Long> getAllocatedBytes(
+			com.sun.management.ThreadMXBean threads, long excludedThreadId){
+		
+		Map<Long, Long> allocated = new HashMap<>();
+		
+		for(long threadId : threads.getAllThreadIds())
+			if(threadId != excludedThreadId)
+				allocated.put(threadId, threads.getThreadAllocatedBytes(threadId));
+		
+		return allocated;
+		
+	}
+	
+	private static long getAllocatedDelta(
+			com.sun.management.ThreadMXBean threads, Map<Long, Long> before,
+			long excludedThreadId){
+		
+		long delta = 0;
+		
+		// Threads that ended during the replay (such as detached commands)
+		// are not counted
+		for(Map.Entry<Long, Long> allocated : getAllocatedBytes(threads,
+				excludedThreadId).entrySet()){
+			
+			if(allocated.getValue() < 0)
+				continue;
+			
+			Long previous = before.get(allocated.getKey());
+			
+			delta += allocated.getValue()
+					- (previous == null || previous < 0 ? 0 : previous);
+			
+		}
+		
+		return delta;
+		
+	}
+	
+	private static long toMicros(long nanos){
+		return TimeUnit.NANOSECONDS.toMicros(nanos);
+	}
+	
+	/**
+	 * Listener that creates routers which record their latency once they
+	 * are done.
+	 */
+	private class ReplayListener extends MessageListener {
+		
+		private BotCommandsLinker linker;
+		private long receivedAt;
+		
+		@Override
+		protected CommandsLinker createCommandLinker(){
+			
+			// Called by the super constructor : this field has no
+			// initializer so that this value is kept
+			linker = (BotCommandsLinker)super.createCommandLinker();
+			
+			return linker;
+			
+		}
+		
+		@Override
+		protected AbstractCommandRouter createRouter(
+				MessageReceivedEvent event, String receivedMessage,
+				Buffer buffer, CommandsRepository commandsRepo){
+			
+			routersCreated.increment();
+			
+			return new ReplayRouter(event, receivedMessage, buffer,
+					commandsRepo, linker.getCommandsTable(), receivedAt);
+			
+		}
+		
+	}
+	
+	/**
+	 * Router that records the time between the reception of its message and
+	 * the end of its first run (commands that are detached from their lane
+	 * run a second time on their own thread, which is not counted).
+	 */
+	private class ReplayRouter extends CommandRouter {
+		
+		private final long receivedAt;
+		private final AtomicBoolean isRecorded = new AtomicBoolean();
+		
+		ReplayRouter(MessageReceivedEvent event, String receivedMessage,
+				Buffer buffer, CommandsRepository commandsRepo,
+				CommandsTable commandsTable, long receivedAt){
+			super(event, receivedMessage, buffer, commandsRepo, commandsTable);
+			
+			this.receivedAt = receivedAt;
+		}
+		
+		@Override
+		public void run(){
+			
+			try{
+				super.run();
+			}
+			finally{
+				
+				// A detached command runs its router a second time
+				if(isRecorded.compareAndSet(false, true)){
+					
+					latencies.record(System.nanoTime() - receivedAt);
+					routersCompleted.increment();
+					
+				}
+				
+			}
+			
+		}
+		
+	}
+	
+}
@@ -0,0 +1,155 @@
+package io.github.vhoyon.bot.app;
+
+import io.github.vhoyon.bot.utilities.settings.ChannelPrefixes;
+import io.github.vhoyon.bot.utilities.settings.ChannelSettings;
+import io.github.vhoyon.vramework.abstracts.AbstractBotCommand;
+import io.github.vhoyon.vramework.objects.Buffer;
+import io.github.vhoyon.vramework.objects.CommandsRepository;
+import io.github.vhoyon.vramework.objects.Dictionary;
+import io.github.vhoyon.vramework.objects.Request;
+import io.github.vhoyon.vramework.utilities.settings.Setting;
+import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
+import org.openjdk.jmh.annotations.*;
+import utils.MockFactory;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * Benchmarks of the routing path of a command, from the creation of its
+ * {@link CommandRouter} to the lookup of its command, driven by mocked JDA
+ * events.
+ * <p>
+ * Run them with {@code mvn -P benchmarks verify -DskipTests} : the results
+ * (throughput and, through the {@code gc} profiler, allocations per
+ * operation) are printed and written to {@code target/jmh-result.json}. The
+ * mocks are created once and do not record their invocations, so their cost
+ * is the same between two runs and routing regressions show up as numbers.
+ * </p>
+ *
+ * @version 1.0
+ * @since v0.12.0
+ * @author V-ed (Guillaume Marcoux)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandRoutingBenchmark {
+	
+	private static final long GUILD_ID = 301234567890123456L;
+	private static final long CHANNEL_ID = 401234567890123456L;
+	private static final long CUSTOM_CHANNEL_ID = 401234567890123457L;
+	private static final long USER_ID = 501234567890123456L;
+	
+	/**
+	 * The message routed, without its command prefix.
+	 */
+	@Param({
+		"hello", "timer -m 5 -s 30", "unknown some content"
+	})
+	public String content;
+	
+	private String message;
+	private String commandName;
+	private String commandPrefix;
+	private char parameterPrefix;
+	
+	private MessageReceivedEvent event;
+	private Buffer buffer;
+	private CommandsRepository commandsRepo;
+	private CommandsTable commandsTable;
+	private CommandRouter router;
+	private Dictionary dictionary;
+	private AbstractBotCommand command;
+	
+	@Setup
+	public void setUp(){
+		
+		commandPrefix = ChannelPrefixes.get().getDefaultCommandPrefix();
+		parameterPrefix = ChannelPrefixes.get().getParameterPrefix(CHANNEL_ID);
+		
+		message = commandPrefix + content;
+		commandName = content.split(" ", 2)[0];
+		
+		event = MockFactory.createMessageEvent(GUILD_ID, CHANNEL_ID, USER_ID,
+				message);
+		buffer = mock(Buffer.class, withSettings().stubOnly());
+		commandsRepo = mock(CommandsRepository.class, withSettings()
+				.stubOnly());
+		
+		commandsTable = new BotCommandsLinker().getCommandsTable();
+		
+		router = new CommandRouter(event, message, buffer, commandsRepo,
+				commandsTable);
+		dictionary = router.getDictionary();
+		
+		command = commandsTable.createCommand(commandName);
+		
+		// A channel that changed its prefix, to compare with the shared
+		// defaults
+		ChannelSettings.get().update(CUSTOM_CHANNEL_ID, ChannelPrefixes.PREFIX,
+				"?", "?");
+		ChannelPrefixes.get().invalidate(CUSTOM_CHANNEL_ID);
+		
+	}
+	
+	@Benchmark
+	public CommandRouter createRouter(){
+		return new CommandRouter(event, message, buffer, commandsRepo,
+				commandsTable);
+	}
+	
+	@Benchmark
+	public Request createRequest(){
+		return router.createRequest(message);
+	}
+	
+	@Benchmark
+	public String defaultCommandPrefix(){
+		return ChannelPrefixes.get().getCommandPrefix(CHANNEL_ID);
+	}
+	
+	@Benchmark
+	public String customCommandPrefix(){
+		return ChannelPrefixes.get().getCommandPrefix(CUSTOM_CHANNEL_ID);
+	}
+	
+	@Benchmark
+	public Setting defaultSettings(){
+		return ChannelSettings.get().getSettings(CHANNEL_ID, dictionary);
+	}
+	
+	@Benchmark
+	public Setting customSettings(){
+		return ChannelSettings.get().getSettings(CUSTOM_CHANNEL_ID,
+				dictionary);
+	}
+	
+	@Benchmark
+	public Request linkParameters(){
+		
+		Request request = new Request(message, commandPrefix,
+				parameterPrefix);
+		
+		if(command != null)
+			ParametersSchema.of(command).applyTo(request);
+		
+		return request;
+		
+	}
+	
+	@Benchmark
+	public AbstractBotCommand lookupCommand(){
+		return commandsTable.createCommand(commandName);
+	}
+	
+	@Benchmark
+	public String primaryCallName(){
+		return commandsTable.getPrimaryCallName(commandName);
+	}
+	
+}
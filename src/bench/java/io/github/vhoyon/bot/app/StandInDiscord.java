@@ -0,0 +1,213 @@
+package io.github.vhoyon.bot.app;
+
+import net.dv8tion.jda.core.entities.*;
+import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
+import net.dv8tion.jda.core.managers.AudioManager;
+import net.dv8tion.jda.core.requests.RestAction;
+import org.mockito.stubbing.Answer;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * Stand-in for Discord used to replay messages without any network : it
+ * creates the guilds, channels and users of the messages as mocks, and
+ * records every {@link RestAction} the bot creates (such as sending a
+ * message) instead of executing it.
+ * <p>
+ * Every mock is stub only so that they do not record their invocations, and
+ * the same {@code RestAction} stub is returned for each type of action, so
+ * replaying millions of messages does not grow the memory used. The
+ * callbacks given to the actions are never called.
+ * </p>
+ *
+ * @version 1.0
+ * @since v0.12.0
+ * @author V-ed (Guillaume Marcoux)
+ */
+public class StandInDiscord {
+	
+	private static final long FIRST_ID = 400000000000000000L;
+	
+	private final ConcurrentHashMap<String, LongAdder> restActions = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<Class<?>, Object> restActionStubs = new ConcurrentHashMap<>();
+	
+	private final Answer<Object> recordingAnswer = invocation -> {
+		
+		Class<?> returnType = invocation.getMethod().getReturnType();
+		
+		if(!RestAction.class.isAssignableFrom(returnType))
+			return RETURNS_DEFAULTS.answer(invocation);
+		
+		restActions.computeIfAbsent(invocation.getMethod().getName(),
+				name -> new LongAdder()).increment();
+		
+		return restActionStubs.computeIfAbsent(returnType,
+				type -> mock(type, withSettings().stubOnly().defaultAnswer(
+						RETURNS_SELF)));
+		
+	};
+	
+	private final Guild[] guilds;
+	private final TextChannel[] channels;
+	private final User[] users;
+	private final Member[][] members;
+	
+	/**
+	 * Creates the guilds (each with a single text channel) and the users that
+	 * send the messages replayed.
+	 *
+	 * @param guildsCount
+	 *            The amount of guilds to spread the messages on.
+	 * @param usersCount
+	 *            The amount of users that send the messages.
+	 * @since v0.12.0
+	 */
+	public StandInDiscord(int guildsCount, int usersCount){
+		
+		if(guildsCount < 1 || usersCount < 1)
+			throw new IllegalArgumentException(
+					"There must be at least one guild and one user!");
+		
+		this.guilds = new Guild[guildsCount];
+		this.channels = new TextChannel[guildsCount];
+		this.users = new User[usersCount];
+		this.members = new Member[guildsCount][usersCount];
+		
+		for(int u = 0; u < usersCount; u++){
+			
+			users[u] = stub(User.class);
+			
+			long userId = FIRST_ID + 200000 + u;
+			
+			doReturn(userId).when(users[u]).getIdLong();
+			doReturn(Long.toString(userId)).when(users[u]).getId();
+			doReturn("user" + u).when(users[u]).getName();
+			doReturn(false).when(users[u]).isBot();
+			
+		}
+		
+		for(int g = 0; g < guildsCount; g++){
+			
+			long guildId = FIRST_ID + g;
+			long channelId = FIRST_ID + 100000 + g;
+			
+			Guild guild = stub(Guild.class);
+			TextChannel channel = stub(TextChannel.class);
+			AudioManager audioManager = stub(AudioManager.class);
+			
+			doReturn(guildId).when(guild).getIdLong();
+			doReturn(Long.toString(guildId)).when(guild).getId();
+			doReturn(audioManager).when(guild).getAudioManager();
+			
+			doReturn(channelId).when(channel).getIdLong();
+			doReturn(Long.toString(channelId)).when(channel).getId();
+			doReturn(guild).when(channel).getGuild();
+			doReturn(ChannelType.TEXT).when(channel).getType();
+			
+			for(int u = 0; u < usersCount; u++){
+				
+				Member member = stub(Member.class);
+				
+				doReturn(users[u]).when(member).getUser();
+				doReturn(guild).when(member).getGuild();
+				doReturn(stub(GuildVoiceState.class)).when(member)
+						.getVoiceState();
+				
+				members[g][u] = member;
+				
+			}
+			
+			guilds[g] = guild;
+			channels[g] = channel;
+			
+		}
+		
+	}
+	
+	/**
+	 * Creates the event of a message received, spreading the messages on the
+	 * guilds and users using the {@code index} of the message.
+	 *
+	 * @param index
+	 *            The index of the message in the replay.
+	 * @param content
+	 *            The raw content of the message.
+	 * @return The event of this message.
+	 * @since v0.12.0
+	 */
+	public MessageReceivedEvent createEvent(long index, String content){
+		
+		int g = (int)(index % guilds.length);
+		int u = (int)((index / guilds.length) % users.length);
+		
+		Message message = stub(Message.class);
+		
+		doReturn(index).when(message).getIdLong();
+		doReturn(Long.toString(index)).when(message).getId();
+		doReturn(content).when(message).getContentRaw();
+		doReturn(content).when(message).getContentDisplay();
+		doReturn(content).when(message).getContentStripped();
+		doReturn(channels[g]).when(message).getChannel();
+		doReturn(channels[g]).when(message).getTextChannel();
+		doReturn(guilds[g]).when(message).getGuild();
+		doReturn(users[u]).when(message).getAuthor();
+		doReturn(members[g][u]).when(message).getMember();
+		
+		MessageReceivedEvent event = stub(MessageReceivedEvent.class);
+		
+		doReturn(message).when(event).getMessage();
+		doReturn(index).when(event).getMessageIdLong();
+		doReturn(channels[g]).when(event).getChannel();
+		doReturn(channels[g]).when(event).getTextChannel();
+		doReturn(guilds[g]).when(event).getGuild();
+		doReturn(users[u]).when(event).getAuthor();
+		doReturn(members[g][u]).when(event).getMember();
+		doReturn(ChannelType.TEXT).when(event).getChannelType();
+		doAnswer(invocation -> invocation.getArgument(0) == ChannelType.TEXT)
+				.when(event).isFromType(any());
+		
+		return event;
+		
+	}
+	
+	/**
+	 * @return The amount of each type of {@link RestAction} created so far,
+	 *         sorted by the name of the method that created them.
+	 * @since v0.12.0
+	 */
+	public Map<String, Long> getRestActions(){
+		
+		Map<String, Long> actions = new TreeMap<>();
+		
+		restActions.forEach((name, count) -> actions.put(name, count.sum()));
+		
+		return actions;
+		
+	}
+	
+	/**
+	 * @return The amount of {@link RestAction} created so far.
+	 * @since v0.12.0
+	 */
+	public long getRestActionsCount(){
+		
+		long count = 0;
+		
+		for(LongAdder adder : restActions.values())
+			count += adder.sum();
+		
+		return count;
+		
+	}
+	
+	private <T> T stub(Class<T> type){
+		return mock(type, withSettings().stubOnly().defaultAnswer(
+				recordingAnswer));
+	}
+	
+}
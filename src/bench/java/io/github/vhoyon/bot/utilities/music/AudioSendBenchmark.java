@@ -0,0 +1,145 @@
+package io.github.vhoyon.bot.utilities.music;
+
+import com.sedmelluq.discord.lavaplayer.format.StandardAudioDataFormats;
+import com.sedmelluq.discord.lavaplayer.track.playback.MutableAudioFrame;
+import com.sedmelluq.discord.lavaplayer.track.playback.NonAllocatingAudioFrameBuffer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Benchmark of the 20 ms send path of the music : every operation sends one
+ * frame from each of {@link #PLAYERS} players, the way JDA polls the
+ * {@link AudioHandler} of every Guild that plays music.
+ * <p>
+ * Each player decodes in its own {@link NonAllocatingAudioFrameBuffer}, as
+ * configured by the {@link MusicManager}, and is fed the packets of a track
+ * of {@link #TRACK_PACKETS} packets whose lengths follow those of a variable
+ * bitrate Opus stream : around {@value #MEAN_PACKET_LENGTH} bytes, with the
+ * few bytes long packets of silences. The track starts over once all its
+ * packets are sent, which counts as a track change for the handlers.
+ * </p>
+ * <p>
+ * The {@code gc} profiler does not report 0 B/op. JDA 3.5 needs an array of
+ * the exact length of each packet, and the lengths of this track (about 365
+ * distinct lengths, about 114 KiB) do not fit in
+ * {@link AudioHandler#MAX_KEPT_BYTES}. Each handler thus drops its arrays
+ * about 3 times per track, and again at each track change, then allocates
+ * them again. Replaying the packets of this track through the same logic
+ * gives about 45 bytes allocated per frame. This is the figure to compare a
+ * {@code gc.alloc.rate.norm} against.
+ * </p>
+ *
+ * @version 1.0
+ * @since v0.12.0
+ * @author V-ed (Guillaume Marcoux)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AudioSendBenchmark {
+	
+	public static final int PLAYERS = 500;
+	
+	/**
+	 * Packets of a track of 3 minutes, at one packet every 20 ms.
+	 */
+	public static final int TRACK_PACKETS = 3 * 60 * 50;
+	
+	/**
+	 * The mean length of the packets of a 128 kbps stream.
+	 */
+	public static final int MEAN_PACKET_LENGTH = 320;
+	
+	private static final int BUFFER_DURATION = 5000;
+	private static final int PACKET_LENGTH_DEVIATION = 60;
+	private static final double SILENCE_RATIO = 0.03;
+	private static final int SILENCE_PACKET_LENGTH = 3;
+	
+	private NonAllocatingAudioFrameBuffer[] buffers;
+	private AudioHandler[] handlers;
+	
+	private MutableAudioFrame decodedFrame;
+	private byte[][] packets;
+	private int packetIndex;
+	private long timecode;
+	
+	@Setup
+	public void setUp(){
+		
+		buffers = new NonAllocatingAudioFrameBuffer[PLAYERS];
+		handlers = new AudioHandler[PLAYERS];
+		
+		for(int i = 0; i < PLAYERS; i++){
+			buffers[i] = new NonAllocatingAudioFrameBuffer(BUFFER_DURATION,
+					StandardAudioDataFormats.DISCORD_OPUS, new AtomicBoolean());
+			handlers[i] = new AudioHandler(buffers[i], () -> true);
+		}
+		
+		int maximumLength = StandardAudioDataFormats.DISCORD_OPUS
+				.maximumChunkSize();
+		
+		Random random = new Random(42);
+		
+		packets = new byte[TRACK_PACKETS][];
+		
+		for(int i = 0; i < TRACK_PACKETS; i++){
+			
+			int length;
+			
+			if(random.nextDouble() < SILENCE_RATIO)
+				length = SILENCE_PACKET_LENGTH;
+			else
+				length = (int)Math.round(MEAN_PACKET_LENGTH
+						+ random.nextGaussian() * PACKET_LENGTH_DEVIATION);
+			
+			packets[i] = new byte[Math.max(SILENCE_PACKET_LENGTH,
+					Math.min(maximumLength, length))];
+			random.nextBytes(packets[i]);
+			
+		}
+		
+		decodedFrame = new MutableAudioFrame();
+		decodedFrame.setFormat(StandardAudioDataFormats.DISCORD_OPUS);
+		decodedFrame.setVolume(100);
+		decodedFrame.setBuffer(ByteBuffer.allocate(
+				StandardAudioDataFormats.DISCORD_OPUS.maximumChunkSize()));
+		
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(PLAYERS)
+	public void sendFrame(Blackhole blackhole) throws InterruptedException{
+		
+		byte[] packet = packets[packetIndex];
+		
+		packetIndex = (packetIndex + 1) % TRACK_PACKETS;
+		
+		if(packetIndex == 0)
+			for(AudioHandler handler : handlers)
+				handler.onTrackChanged();
+		
+		decodedFrame.store(packet, 0, packet.length);
+		decodedFrame.setTimecode(timecode += 20);
+		
+		for(int i = 0; i < PLAYERS; i++){
+			
+			// What the decoding thread of the player does
+			buffers[i].consume(decodedFrame);
+			
+			// What the sending thread of JDA does, every 20 ms
+			if(handlers[i].canProvide())
+				blackhole.consume(handlers[i].provide20MsAudio());
+			
+		}
+		
+	}
+	
+}
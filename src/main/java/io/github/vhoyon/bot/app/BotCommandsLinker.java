@@ -2,14 +2,29 @@ package io.github.vhoyon.bot.app;
 
 import io.github.vhoyon.bot.errorHandling.BotError;
 import io.github.vhoyon.bot.utilities.interfaces.Commands;
+import io.github.vhoyon.vramework.abstracts.AbstractBotCommand;
 import io.github.vhoyon.vramework.abstracts.CommandsLinker;
 import io.github.vhoyon.vramework.interfaces.LinkableCommand;
+import io.github.vhoyon.vramework.modules.Logger;
+import io.github.vhoyon.vramework.modules.Logger.LogType;
 import io.github.vhoyon.vramework.objects.CommandLinksContainer;
+import io.github.vhoyon.vramework.objects.Link;
 import io.github.vhoyon.vramework.utilities.formatting.DiscordFormatter;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Linker that links the commands package which should contain all of the
  * commands available in Discord for our bot.
+ * <p>
+ * On creation, it also builds the {@link CommandsTable} used by the routers to
+ * find the command to create for each request out of the
+ * {@link CommandsIndex} generated at compile time, and logs the aliases that
+ * are used by more than one command. The commands package is never scanned :
+ * the links of the framework (used by the help command) are built from the
+ * same index.
+ * </p>
  *
  * @version 1.0
  * @since v0.4.0
@@ -19,9 +34,59 @@ import io.github.vhoyon.vramework.utilities.formatting.DiscordFormatter;
 public class BotCommandsLinker extends CommandsLinker implements Commands,
 		DiscordFormatter {
 	
+	/**
+	 * The package where all of the bot's commands are.
+	 * 
+	 * @since v0.12.0
+	 */
+	public static final String COMMANDS_PACKAGE = "io.github.vhoyon.bot.commands";
+	
+	// The super constructor creates the links container, which needs the
+	// table : this field has no initializer so that the table built then is
+	// kept
+	private CommandsTable commandsTable;
+	
+	/**
+	 * Creates the linker and builds the {@link CommandsTable} of all the
+	 * commands of the {@link #COMMANDS_PACKAGE} out of the
+	 * {@link CommandsIndex} generated at compile time.
+	 * 
+	 * @throws IllegalStateException
+	 *             If the index was not generated, which means that the
+	 *             annotation processor did not run for this build.
+	 * @since v0.12.0
+	 */
+	public BotCommandsLinker() throws IllegalStateException{
+		super();
+		
+		CommandsTable commandsTable = getOrBuildCommandsTable();
+		
+		if(commandsTable.getCollisions().isEmpty())
+			Logger.log(commandsTable.getReport());
+		else
+			Logger.log(commandsTable.getReport(), LogType.WARNING);
+	}
+	
+	/**
+	 * @return The immutable table that links each call name to its command.
+	 * @since v0.12.0
+	 */
+	public CommandsTable getCommandsTable(){
+		return this.commandsTable;
+	}
+	
 	@Override
 	public CommandLinksContainer createLinksContainer(){
-		return new CommandLinksContainer("io.github.vhoyon.bot.commands"){
+		
+		List<Link> links = new ArrayList<>();
+		
+		// Built from the indexed classes so that the framework does not scan
+		// the commands package itself
+		for(Class<? extends AbstractBotCommand> commandClass : getOrBuildCommandsTable()
+				.getCommandClasses())
+			links.add(new Link(commandClass));
+		
+		return new CommandLinksContainer(links.toArray(new Link[0])){
 			
 			@Override
 			public LinkableCommand whenCommandNotFound(String commandName){
@@ -40,4 +105,22 @@ public class BotCommandsLinker extends CommandsLinker implements Commands,
 		return code(command);
 	}
 	
+	private CommandsTable getOrBuildCommandsTable(){
+		
+		if(commandsTable == null){
+			
+			CommandsIndex index = CommandsTable.loadIndex();
+			
+			if(index == null)
+				throw new IllegalStateException(
+						"No generated commands index found! Make sure that annotation processing is enabled for your build (see the README).");
+			
+			commandsTable = CommandsTable.fromIndex(index);
+			
+		}
+		
+		return commandsTable;
+		
+	}
+	
 }
@@ -4,15 +4,22 @@ import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
 import io.github.vhoyon.bot.errorHandling.BotError;
 import io.github.vhoyon.bot.errorHandling.BotErrorPrivate;
 import io.github.vhoyon.bot.utilities.abstracts.SimpleTextCommand;
+import io.github.vhoyon.bot.utilities.audit.AuditWriter;
+import io.github.vhoyon.bot.utilities.interfaces.BlockingCommand;
 import io.github.vhoyon.bot.utilities.interfaces.Commands;
 import io.github.vhoyon.bot.utilities.interfaces.Resources;
+import io.github.vhoyon.bot.utilities.metrics.CommandLatencies;
+import io.github.vhoyon.bot.utilities.metrics.CommandLatencies.Stage;
+import io.github.vhoyon.bot.utilities.settings.ChannelPrefixes;
+import io.github.vhoyon.bot.utilities.settings.ChannelSettings;
 import io.github.vhoyon.bot.utilities.specifics.CommandConfirmed;
+import io.github.vhoyon.bot.utilities.specifics.ConfirmationRegistry;
 import io.github.vhoyon.vramework.abstracts.AbstractBotCommand;
 import io.github.vhoyon.vramework.abstracts.AbstractCommandRouter;
 import io.github.vhoyon.vramework.exceptions.NoCommandException;
 import io.github.vhoyon.vramework.interfaces.Command;
 import io.github.vhoyon.vramework.interfaces.Emojis;
-import io.github.vhoyon.vramework.interfaces.Utils;
+import io.github.vhoyon.vramework.interfaces.Stoppable;
 import io.github.vhoyon.vramework.modules.Audit;
 import io.github.vhoyon.vramework.modules.Logger;
 import io.github.vhoyon.vramework.objects.*;
@@ -20,7 +27,11 @@ import io.github.vhoyon.vramework.utilities.CommandsThreadManager;
 import io.github.vhoyon.vramework.utilities.formatting.DiscordFormatter;
 import io.github.vhoyon.vramework.utilities.settings.Setting;
 
-import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * This is the custom Router for Vhoyon's bot that routes common commands to
@@ -35,33 +46,134 @@ import java.util.ArrayList;
 public class CommandRouter extends AbstractCommandRouter implements Resources,
 		Commands, Emojis, DiscordFormatter {
 	
+	/**
+	 * Name under which the latencies of the commands that are not in the
+	 * {@link CommandsTable} are recorded.
+	 *
+	 * @since v0.12.0
+	 */
+	public static final String UNKNOWN_COMMAND = "(unknown)";
+	
+	private static final AtomicInteger activeCommands = new AtomicInteger();
+	private static final Set<CommandRouter> stoppableRouters = ConcurrentHashMap
+			.newKeySet();
+	// Routers are no longer threads named after their command : the framework
+	// cannot find the ones that are not detached, so they are tracked here
+	private static final ConcurrentHashMap<String, CommandRouter> runningRouters = new ConcurrentHashMap<>();
+	
+	private final long laneKey;
+	private final long channelId;
+	private final long userId;
+	private final CommandsTable commandsTable;
+	private volatile boolean isDetached;
+	private volatile String runningKey;
+	private Setting settings;
+	private String metricName;
+	private long parseNanos;
+	
 	/**
 	 * @see io.github.vhoyon.vramework.abstracts.AbstractCommandRouter
 	 */
 	public CommandRouter(MessageReceivedEvent event, String receivedMessage,
 			Buffer buffer, CommandsRepository commandsRepo){
+		this(event, receivedMessage, buffer, commandsRepo, null);
+	}
+	
+	/**
+	 * Creates a router that finds its command using the
+	 * {@code commandsTable} instead of the generic lookup of the
+	 * {@link CommandsRepository}.
+	 *
+	 * @param commandsTable
+	 *            The table to find the commands in. Can be {@code null} to
+	 *            use the generic lookup.
+	 * @see io.github.vhoyon.vramework.abstracts.AbstractCommandRouter
+	 * @since v0.12.0
+	 */
+	public CommandRouter(MessageReceivedEvent event, String receivedMessage,
+			Buffer buffer, CommandsRepository commandsRepo,
+			CommandsTable commandsTable){
 		super(event, receivedMessage, buffer, commandsRepo);
+		
+		this.commandsTable = commandsTable;
+		this.channelId = event.getChannel().getIdLong();
+		this.userId = event.getAuthor().getIdLong();
+		this.laneKey = event.getGuild() != null ? event.getGuild()
+				.getIdLong() : this.channelId;
+	}
+	
+	/**
+	 * Queues this router in the {@link RouterDispatcher} lane of its guild
+	 * instead of starting a new thread for it.
+	 * <p>
+	 * The thread of this router is only started when the command routed is a
+	 * {@link io.github.vhoyon.vramework.interfaces.Stoppable Stoppable} one, so
+	 * that long running commands (such as timers) does not block their
+	 * guild's lane and still can be found by the
+	 * {@link io.github.vhoyon.vramework.utilities.CommandsThreadManager
+	 * CommandsThreadManager}. The action of a {@link BlockingCommand} is run
+	 * by the pool of threads for blocking actions of the
+	 * {@link RouterDispatcher} instead.
+	 * </p>
+	 *
+	 * @since v0.12.0
+	 */
+	@Override
+	public synchronized void start(){
+		
+		if(isDetached)
+			super.start();
+		else
+			RouterDispatcher.get().dispatch(laneKey, this);
+		
 	}
 	
 	@Override
 	protected Request createRequest(String receivedMessage){
-		return new Request(receivedMessage, getCommandPrefix(),
+		
+		long start = System.nanoTime();
+		
+		Request request = new Request(receivedMessage, getCommandPrefix(),
 				getCommandParameterPrefix());
+		
+		// Called by the super constructor : this field has no initializer so
+		// that this value is kept
+		parseNanos = System.nanoTime() - start;
+		
+		return request;
+		
 	}
 	
 	@Override
 	public void run(){
 		
+		if(isDetached){
+			executeCommand(getAbstractBotCommand());
+			return;
+		}
+		
 		Request request = getRequest();
 		MessageEventDigger eventDigger = getEventDigger();
 		
+		long validationNanos = 0;
+		long runningCheckNanos = 0;
+		
 		try{
 			
+			long stageStart = System.nanoTime();
+			
 			setCommand(validateMessage());
 			
+			parseNanos += System.nanoTime() - stageStart;
+			
 			if(request.isCommand()){
 				
-				Audit.audit(request.getInitialMessage());
+				AuditWriter auditWriter = AuditWriter.get();
+				
+				if(auditWriter != null)
+					auditWriter.audit(request.getInitialMessage());
+				else
+					Audit.audit(request.getInitialMessage());
 				
 				if(getCommand() == null){
 					
@@ -72,14 +184,12 @@ public class CommandRouter extends AbstractCommandRouter implements Resources,
 					
 					boolean confirmationConfirmed = false;
 					
-					try{
-						
-						String textChannelKey = eventDigger.getChannelKey();
-						
-						Object needsConfirmation = getBuffer().get(
-								BUFFER_CONFIRMATION, textChannelKey);
-						
-						CommandConfirmed confirmationObject = (CommandConfirmed)needsConfirmation;
+					stageStart = System.nanoTime();
+					
+					CommandConfirmed confirmationObject = ConfirmationRegistry
+							.get().take(channelId, userId);
+					
+					if(confirmationObject != null){
 						
 						if(request.getCommand().equals(CONFIRM)){
 							confirmationObject.confirmed();
@@ -94,10 +204,7 @@ public class CommandRouter extends AbstractCommandRouter implements Resources,
 							
 						}
 						
-						getBuffer().remove(BUFFER_CONFIRMATION, textChannelKey);
-						
 					}
-					catch(NullPointerException e){}
 					
 					if(request.hasError()){
 						setCommand(new BotError(
@@ -107,12 +214,27 @@ public class CommandRouter extends AbstractCommandRouter implements Resources,
 						setCommand(null);
 					}
 					
-					if(!confirmationConfirmed){
+					validationNanos = System.nanoTime() - stageStart;
+					
+					if(confirmationConfirmed){
+						metricName = request.getCommand();
+					}
+					else{
 						
 						String commandName = request.getCommand();
 						
-						if(CommandsThreadManager.isCommandRunning(commandName,
-								eventDigger, this)){
+						stageStart = System.nanoTime();
+						
+						boolean isRunning = runningRouters
+								.containsKey(routerKey)
+								|| CommandsThreadManager.isCommandRunning(
+										commandName, eventDigger, this);
+						
+						runningCheckNanos = System.nanoTime() - stageStart;
+						
+						if(isRunning){
+							
+							metricName = commandName;
 							
 							setCommand(new BotError(lang(
 									"CommandIsRunningError", code(commandName))));
@@ -120,7 +242,29 @@ public class CommandRouter extends AbstractCommandRouter implements Resources,
 						}
 						else{
 							
-							setCommand(getLinkableCommand(commandName));
+							AbstractBotCommand linkedCommand = null;
+							
+							if(commandsTable != null)
+								linkedCommand = commandsTable
+										.createCommand(commandName);
+							
+							if(linkedCommand != null){
+								
+								metricName = commandsTable
+										.getPrimaryCallName(commandName);
+								
+								setCommand(linkedCommand);
+								
+								runningKey = routerKey;
+								
+							}
+							else{
+								
+								metricName = UNKNOWN_COMMAND;
+								
+								setCommand(getLinkableCommand(commandName));
+								
+							}
 							
 						}
 						
@@ -128,41 +272,27 @@ public class CommandRouter extends AbstractCommandRouter implements Resources,
 					
 				}
 				
+				stageStart = System.nanoTime();
+				
 				try{
+					ParametersSchema.of(getAbstractBotCommand()).applyTo(
+							getRequest());
+				}
+				catch(NullPointerException e){}
+				
+				parseNanos += System.nanoTime() - stageStart;
+				
+				if(metricName != null){
 					
-					ParametersHelp[] commandParamsHelp = getAbstractBotCommand()
-							.getParametersDescriptions();
+					CommandLatencies latencies = CommandLatencies.get();
 					
-					if(commandParamsHelp != null){
-						ArrayList<ArrayList<String>> paramsHelpMap = new ArrayList<>();
-						ArrayList<String> contentLessParams = new ArrayList<>();
-						
-						for(ParametersHelp commandParamHelp : commandParamsHelp){
-							
-							paramsHelpMap.add(commandParamHelp.getAllParams());
-							
-							if(!commandParamHelp.doesAcceptsContent()){
-								contentLessParams.add(commandParamHelp
-										.getParam());
-							}
-							
-							if(commandParamHelp.getWeight() != 0){
-								try{
-									getRequest().setParameterWeight(
-											commandParamHelp.getParam(),
-											commandParamHelp.getWeight());
-								}
-								catch(IllegalArgumentException e){}
-							}
-							
-						}
-						
-						getRequest().setParamLinkMap(paramsHelpMap);
-						getRequest().setParamsAsContentLess(contentLessParams);
-					}
+					latencies.record(metricName, Stage.PARSE, parseNanos);
+					latencies.record(metricName, Stage.VALIDATION,
+							validationNanos);
+					latencies.record(metricName, Stage.RUNNING_CHECK,
+							runningCheckNanos);
 					
 				}
-				catch(NullPointerException e){}
 				
 			}
 			
@@ -170,11 +300,27 @@ public class CommandRouter extends AbstractCommandRouter implements Resources,
 			
 			if(command != null){
 				
-				try{
-					command.action();
+				// Registered from the lane of the guild, which also ran the
+				// running check : two routers of the same command and channel
+				// cannot both pass it
+				if(runningKey != null)
+					runningRouters.put(runningKey, this);
+				
+				if(command instanceof Stoppable
+						&& RouterDispatcher.isLaneThread()){
+					isDetached = true;
+					start();
 				}
-				catch(Exception e){
-					Logger.log(e);
+				else if(command instanceof BlockingCommand
+						&& RouterDispatcher.isLaneThread()){
+					
+					if(!RouterDispatcher.get().dispatchBlocking(
+							() -> executeCommand(command)))
+						stopRunning();
+					
+				}
+				else{
+					executeCommand(command);
 				}
 				
 			}
@@ -187,6 +333,91 @@ public class CommandRouter extends AbstractCommandRouter implements Resources,
 		
 	}
 	
+	/**
+	 * Runs the action of the command routed, logging any exception that it
+	 * could throw and recording its duration in the {@link CommandLatencies}.
+	 *
+	 * @param command
+	 *            The command to run.
+	 * @since v0.12.0
+	 */
+	protected void executeCommand(AbstractBotCommand command){
+		
+		long start = System.nanoTime();
+		
+		boolean isStoppable = command instanceof Stoppable;
+		
+		if(isStoppable)
+			stoppableRouters.add(this);
+		
+		activeCommands.incrementAndGet();
+		
+		try{
+			command.action();
+		}
+		catch(Exception e){
+			Logger.log(e);
+		}
+		finally{
+			activeCommands.decrementAndGet();
+			
+			if(isStoppable)
+				stoppableRouters.remove(this);
+			
+			stopRunning();
+			
+			if(metricName != null)
+				CommandLatencies.get().record(metricName, Stage.ACTION,
+						System.nanoTime() - start);
+		}
+		
+	}
+	
+	/**
+	 * @return The amount of commands that are currently running their action.
+	 * @since v0.12.0
+	 */
+	public static int getActiveCommandsCount(){
+		return activeCommands.get();
+	}
+	
+	/**
+	 * @return The amount of {@link Stoppable} commands that are currently
+	 *         running their action.
+	 * @since v0.12.0
+	 */
+	public static int getRunningStoppablesCount(){
+		return stoppableRouters.size();
+	}
+	
+	/**
+	 * Kills every {@link Stoppable} command that is currently running and
+	 * waits for them to end their action.
+	 *
+	 * @param deadlineNanos
+	 *            The {@link System#nanoTime()} after which this method stops
+	 *            waiting for the commands.
+	 * @return The amount of commands that were still running at the deadline.
+	 * @since v0.12.0
+	 */
+	public static int stopRunningCommands(long deadlineNanos){
+		
+		for(CommandRouter router : stoppableRouters){
+			try{
+				router.getAbstractBotCommand().kill();
+			}
+			catch(Exception e){
+				Logger.log(e);
+			}
+		}
+		
+		while(!stoppableRouters.isEmpty() && System.nanoTime() < deadlineNanos)
+			LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+		
+		return stoppableRouters.size();
+		
+	}
+	
 	@Override
 	public Command commandWhenFromPrivate(){
 		return new BotErrorPrivate(
@@ -211,9 +442,7 @@ public class CommandRouter extends AbstractCommandRouter implements Resources,
 			if(getRequest() != null && getRequest().getCommandPrefix() != null)
 				return getRequest().getCommandPrefix();
 			
-			String prefix = getSettings().getFieldValue("prefix");
-			
-			return prefix;
+			return ChannelPrefixes.get().getCommandPrefix(getChannelId());
 			
 		}
 		catch(Exception e){
@@ -230,9 +459,7 @@ public class CommandRouter extends AbstractCommandRouter implements Resources,
 			if(getRequest() != null && getRequest().getParametersPrefix() != 0)
 				return getRequest().getParametersPrefix();
 			
-			char paramPrefix = getSettings().getFieldValue("param_prefix");
-			
-			return paramPrefix;
+			return ChannelPrefixes.get().getParameterPrefix(getChannelId());
 			
 		}
 		catch(Exception e){
@@ -243,37 +470,124 @@ public class CommandRouter extends AbstractCommandRouter implements Resources,
 	
 	/**
 	 * Gets the {@link io.github.vhoyon.vramework.utilities.settings.Setting
-	 * Setting} object from
-	 * the Buffer for the TextChannel of this Router or create it if there is
-	 * currently none in the Buffer.
+	 * Setting} object of the TextChannel of this Router from the
+	 * {@link ChannelSettings}.
+	 * <p>
+	 * Channels that never changed a setting all share the same default
+	 * {@code Setting} object : {@link #prepareSettingsChange()} must be called
+	 * before changing any setting so that this router gets its own copy.
+	 * </p>
 	 *
 	 * @return The {@link io.github.vhoyon.vramework.utilities.settings.Setting
-	 *         Setting} object from
-	 *         the associated buffer.
+	 *         Setting} object of this router's TextChannel.
 	 * @since 0.9.0
 	 */
 	public Setting getSettings(){
 		
-		String textChannelKey = getEventDigger().getChannelKey();
+		if(settings == null)
+			settings = ChannelSettings.get().getSettings(getChannelId(),
+					getDictionary());
 		
-		String settingsKey = Utils.buildKey(textChannelKey, BUFFER_SETTINGS);
+		return settings;
 		
-		boolean hasSettings = getBuffer().has(settingsKey);
+	}
+	
+	/**
+	 * Makes sure that the {@code Setting} object returned by
+	 * {@link #getSettings()} belongs to this router and not to all the
+	 * channels, so that it can be changed safely. Changes must then be
+	 * reported using {@link #onSettingChanged(String, Object)}.
+	 *
+	 * @since v0.12.0
+	 */
+	public void prepareSettingsChange(){
 		
-		Setting settings;
+		ChannelSettings channelSettings = ChannelSettings.get();
 		
-		if(!hasSettings){
-			
-			settings = new Setting(getDictionary(), SETTINGS);
-			
-			getBuffer().push(settings, settingsKey);
-			
-		}
-		else{
-			settings = (Setting)getBuffer().get(settingsKey);
-		}
+		if(settings == null || settings == channelSettings.getDefaults())
+			settings = channelSettings.createSettings(getChannelId(),
+					getDictionary());
 		
-		return settings;
+	}
+	
+	/**
+	 * Notifies this router that a setting of its TextChannel was changed, so
+	 * that the change is stored in the {@link ChannelSettings} and the values
+	 * cached out of the
+	 * {@link io.github.vhoyon.vramework.utilities.settings.Setting Setting}
+	 * object (such as the {@link ChannelPrefixes}) are kept up to date.
+	 *
+	 * @param settingName
+	 *            The name of the setting that was changed.
+	 * @param rawValue
+	 *            The value that was given to save the setting, or {@code null}
+	 *            if it was reset to its default value.
+	 * @since v0.12.0
+	 */
+	public void onSettingChanged(String settingName, Object rawValue){
+		
+		if(settings == null || settings == ChannelSettings.get().getDefaults())
+			return;
+		
+		Object value = settings.getFieldValue(settingName);
+		
+		ChannelSettings.get().update(channelId, settingName, rawValue, value);
+		
+		if(ChannelPrefixes.PREFIX.equals(settingName)
+				|| ChannelPrefixes.PARAMETER_PREFIX.equals(settingName))
+			ChannelPrefixes.get().invalidate(channelId);
+		
+	}
+	
+	/**
+	 * Registers a confirmation that the user of this router has to answer in
+	 * the TextChannel of this router, which will be given back to the next
+	 * router of the same user and channel.
+	 *
+	 * @param confirmation
+	 *            The confirmation waiting for an answer.
+	 * @since v0.12.0
+	 */
+	public void registerConfirmation(CommandConfirmed confirmation){
+		
+		final Buffer buffer = getBuffer();
+		final String textChannelKey = getEventDigger().getChannelKey();
+		
+		// The framework also keeps the last confirmation of each channel in
+		// the Buffer, which must be freed along with the registry's entry
+		ConfirmationRegistry.get().register(channelId, userId, confirmation,
+				() -> {
+					
+					if(!buffer.has(BUFFER_CONFIRMATION, textChannelKey))
+						return;
+					
+					Object buffered = buffer.get(BUFFER_CONFIRMATION,
+							textChannelKey);
+					
+					if(buffered == confirmation)
+						buffer.remove(BUFFER_CONFIRMATION, textChannelKey);
+					
+				});
+		
+	}
+	
+	private void stopRunning(){
+		
+		String key = runningKey;
+		
+		if(key != null)
+			runningRouters.remove(key, this);
+		
+	}
+	
+	private long getChannelId(){
+		
+		// The settings are first needed while the super constructor creates
+		// the Request, before the channelId field is set
+		if(channelId != 0)
+			return channelId;
+		
+		return getEventDigger().getChannel().getIdLong();
 		
 	}
 	
@@ -0,0 +1,27 @@
+package io.github.vhoyon.bot.app;
+
+import io.github.vhoyon.vramework.abstracts.AbstractBotCommand;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Index of the commands of the bot, generated at compile time by the
+ * {@link io.github.vhoyon.bot.processing.CommandsIndexProcessor
+ * CommandsIndexProcessor} and loaded as a service by the
+ * {@link BotCommandsLinker}.
+ *
+ * @version 1.0
+ * @since v0.12.0
+ * @author V-ed (Guillaume Marcoux)
+ */
+public interface CommandsIndex {
+	
+	/**
+	 * @return Every command class indexed, each linked to a factory that
+	 *         creates a new instance of it.
+	 * @since v0.12.0
+	 */
+	Map<Class<? extends AbstractBotCommand>, Supplier<AbstractBotCommand>> getCommands();
+	
+}
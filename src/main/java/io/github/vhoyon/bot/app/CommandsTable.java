@@ -0,0 +1,254 @@
+package io.github.vhoyon.bot.app;
+
+import io.github.vhoyon.vramework.abstracts.AbstractBotCommand;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Immutable dispatch table that links every call name (including the aliases
+ * returned by {@code getCalls()}) of the bot's commands to a factory of that
+ * command.
+ * <p>
+ * The table is built once at startup from the {@link CommandsIndex} generated
+ * at compile time, so that finding the command of a request is a single hash
+ * lookup and neither finding the commands nor creating them involves any
+ * reflection. Aliases used by more than one command are reported
+ * through {@link #getCollisions()} : the first command (in alphabetical order
+ * of its class name) keeps the alias.
+ * </p>
+ *
+ * @version 1.0
+ * @since v0.12.0
+ * @author V-ed (Guillaume Marcoux)
+ */
+public final class CommandsTable {
+	
+	private final Map<String, Supplier<AbstractBotCommand>> factories;
+	private final Map<String, Class<? extends AbstractBotCommand>> owners;
+	private final Map<String, String> primaryCallNames;
+	private final List<String> collisions;
+	private final List<Class<? extends AbstractBotCommand>> commandClasses;
+	
+	private CommandsTable(
+			Map<String, Supplier<AbstractBotCommand>> factories,
+			Map<String, Class<? extends AbstractBotCommand>> owners,
+			Map<String, String> primaryCallNames, List<String> collisions,
+			List<Class<? extends AbstractBotCommand>> commandClasses){
+		this.factories = Collections.unmodifiableMap(factories);
+		this.owners = Collections.unmodifiableMap(owners);
+		this.primaryCallNames = Collections.unmodifiableMap(primaryCallNames);
+		this.collisions = Collections.unmodifiableList(collisions);
+		this.commandClasses = Collections.unmodifiableList(commandClasses);
+	}
+	
+	/**
+	 * Creates the table out of a {@link CommandsIndex} generated at compile
+	 * time. Each command is created once using its factory to read its calls,
+	 * so that no reflection is involved.
+	 *
+	 * @param index
+	 *            The index of the commands to link.
+	 * @return The table of the commands indexed.
+	 * @since v0.12.0
+	 */
+	public static CommandsTable fromIndex(CommandsIndex index){
+		return fromFactories(index.getCommands());
+	}
+	
+	/**
+	 * Loads the {@link CommandsIndex} generated at compile time, if there is
+	 * one in the classpath.
+	 *
+	 * @return The generated index, or {@code null} if the annotation
+	 *         processor did not run for this build.
+	 * @since v0.12.0
+	 */
+	public static CommandsIndex loadIndex(){
+		
+		Iterator<CommandsIndex> indexes = ServiceLoader.load(
+				CommandsIndex.class, CommandsTable.class.getClassLoader())
+				.iterator();
+		
+		return indexes.hasNext() ? indexes.next() : null;
+		
+	}
+	
+	private static CommandsTable fromFactories(
+			Map<Class<? extends AbstractBotCommand>, Supplier<AbstractBotCommand>> commands){
+		
+		List<Class<? extends AbstractBotCommand>> sortedClasses = new ArrayList<>(
+				commands.keySet());
+		
+		sortedClasses.sort(Comparator.comparing(Class::getName));
+		
+		Map<String, Supplier<AbstractBotCommand>> factories = new HashMap<>();
+		Map<String, Class<? extends AbstractBotCommand>> owners = new HashMap<>();
+		Map<String, String> primaryCallNames = new HashMap<>();
+		List<String> collisions = new ArrayList<>();
+		
+		for(Class<? extends AbstractBotCommand> commandClass : sortedClasses){
+			
+			Supplier<AbstractBotCommand> factory = commands.get(commandClass);
+			
+			List<String> calls = getCallNames(factory.get());
+			
+			for(String call : calls){
+				
+				Class<? extends AbstractBotCommand> owner = owners.get(call);
+				
+				if(owner == null){
+					factories.put(call, factory);
+					owners.put(call, commandClass);
+					primaryCallNames.put(call, calls.get(0));
+				}
+				else if(owner != commandClass){
+					collisions.add("The call " + call + " of "
+							+ commandClass.getSimpleName()
+							+ " is already used by " + owner.getSimpleName()
+							+ ".");
+				}
+				
+			}
+			
+		}
+		
+		return new CommandsTable(factories, owners, primaryCallNames,
+				collisions, sortedClasses);
+		
+	}
+	
+	/**
+	 * Creates a new instance of the command linked to the {@code callName}.
+	 *
+	 * @param callName
+	 *            The name (or alias) used to call the command.
+	 * @return A new instance of the command, or {@code null} if no command
+	 *         uses this call name.
+	 * @since v0.12.0
+	 */
+	public AbstractBotCommand createCommand(String callName){
+		
+		Supplier<AbstractBotCommand> factory = factories.get(callName);
+		
+		return factory == null ? null : factory.get();
+		
+	}
+	
+	/**
+	 * @param callName
+	 *            The name (or alias) used to call the command.
+	 * @return {@code true} if a command uses this call name, {@code false}
+	 *         otherwise.
+	 * @since v0.12.0
+	 */
+	public boolean hasCommand(String callName){
+		return factories.containsKey(callName);
+	}
+	
+	/**
+	 * @param callName
+	 *            The name (or alias) used to call the command.
+	 * @return The class of the command linked to the call name, or
+	 *         {@code null} if there is none.
+	 * @since v0.12.0
+	 */
+	public Class<? extends AbstractBotCommand> getCommandClass(String callName){
+		return owners.get(callName);
+	}
+	
+	/**
+	 * Gets the first call of the command linked to the {@code callName}, so
+	 * that every alias of a command can be reported under the same name
+	 * without creating the command to read its calls.
+	 *
+	 * @param callName
+	 *            The name (or alias) used to call the command.
+	 * @return The first call of the command linked to the call name, or
+	 *         {@code null} if there is none.
+	 * @since v0.12.0
+	 */
+	public String getPrimaryCallName(String callName){
+		return primaryCallNames.get(callName);
+	}
+	
+	/**
+	 * @return The classes of all the commands of this table, in alphabetical
+	 *         order of their name.
+	 * @since v0.12.0
+	 */
+	public List<Class<? extends AbstractBotCommand>> getCommandClasses(){
+		return commandClasses;
+	}
+	
+	/**
+	 * @return All the call names (and aliases) of this table.
+	 * @since v0.12.0
+	 */
+	public Set<String> getCallNames(){
+		return factories.keySet();
+	}
+	
+	/**
+	 * @return The description of each alias that was used by more than one
+	 *         command when this table was built.
+	 * @since v0.12.0
+	 */
+	public List<String> getCollisions(){
+		return collisions;
+	}
+	
+	/**
+	 * @return A short report of this table, listing its size and the aliases
+	 *         collisions found.
+	 * @since v0.12.0
+	 */
+	public String getReport(){
+		
+		StringBuilder builder = new StringBuilder();
+		
+		builder.append("Linked ").append(factories.size())
+				.append(" call names to ")
+				.append(new HashSet<>(owners.values()).size())
+				.append(" commands");
+		
+		if(collisions.isEmpty()){
+			builder.append(" without any collision.");
+		}
+		else{
+			
+			builder.append(" with ").append(collisions.size())
+					.append(" collision(s) :");
+			
+			for(String collision : collisions)
+				builder.append("\n- ").append(collision);
+			
+		}
+		
+		return builder.toString();
+		
+	}
+	
+	/**
+	 * Reads the calls of a command, which can either be a single
+	 * {@code String} or an array of {@code String}.
+	 *
+	 * @param command
+	 *            The command to read the calls of.
+	 * @return A list of the calls of the command.
+	 * @since v0.12.0
+	 */
+	public static List<String> getCallNames(AbstractBotCommand command){
+		
+		Object calls = command.getCalls();
+		
+		if(calls instanceof String)
+			return Collections.singletonList((String)calls);
+		else if(calls instanceof String[])
+			return Arrays.asList((String[])calls);
+		
+		return Collections.emptyList();
+		
+	}
+	
+}
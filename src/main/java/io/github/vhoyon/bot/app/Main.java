@@ -1,16 +1,19 @@
 package io.github.vhoyon.bot.app;
 
+import io.github.vhoyon.bot.consoles.HeadlessConsole;
 import io.github.vhoyon.bot.consoles.TerminalConsole;
 import io.github.vhoyon.bot.consoles.UIConsole;
+import io.github.vhoyon.bot.utilities.audit.AuditWriter;
+import io.github.vhoyon.bot.utilities.metrics.MetricsServer;
 import io.github.vhoyon.vramework.Framework;
 import io.github.vhoyon.vramework.interfaces.Console;
-import io.github.vhoyon.vramework.modules.Audit;
 import io.github.vhoyon.vramework.modules.Environment;
 import io.github.vhoyon.vramework.modules.Logger;
-import io.github.vhoyon.vramework.objects.AuditableFile;
 import io.github.vhoyon.vramework.objects.Request;
 import io.github.vhoyon.vramework.utilities.FrameworkTemplate;
 
+import java.io.File;
+
 /**
  * The main class for running Vhoyon's bot.
  * 
@@ -32,24 +35,69 @@ public class Main {
 			
 			Framework.build(Main.class, programRequest.hasParameter("d"));
 			
-			Audit.setOutputs(new AuditableFile("audit.txt", Framework
-					.runnableSystemPath()));
+			AuditWriter.start(new File(Framework.runnableSystemPath(),
+					"audit.txt"));
+			
+			ShutdownCoordinator.get().installHook();
+			
+			if(programRequest.hasParameter("m", "metrics")){
+				
+				MetricsServer metricsServer = MetricsServer.start();
+				
+				Logger.log("Metrics available at http://"
+						+ Environment.getVar("METRICS_HOST",
+								MetricsServer.DEFAULT_HOST) + ":"
+						+ metricsServer.getPort() + "/metrics", false);
+				
+			}
 			
 			FrameworkTemplate.botToken = Environment.getVar("BOT_TOKEN");
 			
 			Console console;
 			
-			if(programRequest.hasParameter("t", "terminal")){
+			if(programRequest.hasParameter("headless")){
+				
+				// Never touches UIConsole so that no AWT class gets loaded
+				HeadlessConsole headlessConsole = new HeadlessConsole(){
+					@Override
+					public void onStart() throws Exception{
+						FrameworkTemplate.startBot(this, new MessageListener());
+						ShutdownCoordinator.get().onBotStarted(
+								() -> FrameworkTemplate.stopBot(this));
+					}
+					
+					@Override
+					public void onStop() throws Exception{
+						ShutdownCoordinator.get().stopBot();
+					}
+					
+					@Override
+					public void onInitialized(){
+						logLink();
+					}
+				};
+				
+				// The hook of the coordinator stops the bot, and only then
+				// releases the console
+				ShutdownCoordinator.get().addShutdownListener(
+						headlessConsole::release);
+				
+				console = headlessConsole;
+				
+			}
+			else if(programRequest.hasParameter("t", "terminal")){
 				
 				console = new TerminalConsole(){
 					@Override
 					public void onStart() throws Exception{
 						FrameworkTemplate.startBot(this, new MessageListener());
+						ShutdownCoordinator.get().onBotStarted(
+								() -> FrameworkTemplate.stopBot(this));
 					}
 					
 					@Override
 					public void onStop() throws Exception{
-						FrameworkTemplate.stopBot(this);
+						ShutdownCoordinator.get().stopBot();
 					}
 					
 					@Override
@@ -65,11 +113,13 @@ public class Main {
 					@Override
 					public void onStart() throws Exception{
 						FrameworkTemplate.startBot(this, new MessageListener());
+						ShutdownCoordinator.get().onBotStarted(
+								() -> FrameworkTemplate.stopBot(this));
 					}
 					
 					@Override
 					public void onStop() throws Exception{
-						FrameworkTemplate.stopBot(this);
+						ShutdownCoordinator.get().stopBot();
 					}
 					
 					@Override
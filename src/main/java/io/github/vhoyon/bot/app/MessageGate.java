@@ -0,0 +1,169 @@
+package io.github.vhoyon.bot.app;
+
+import io.github.vhoyon.bot.utilities.settings.ChannelPrefixes;
+import net.dv8tion.jda.core.entities.ChannelType;
+import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fast-path filter that decides if a message received could be a command
+ * before any {@link CommandRouter}, thread or
+ * {@link io.github.vhoyon.vramework.objects.Request Request} is created for it.
+ * <p>
+ * Messages sent by bots (including this one) are dropped, and messages from a
+ * TextChannel are only forwarded if they start with the prefix of that
+ * channel. Private messages are always forwarded as the router is the one
+ * answering them. None of these checks allocates any object.
+ * </p>
+ * <p>
+ * The prefixes of the channels are read from the {@link ChannelPrefixes}
+ * cache, which must be kept up to date by the routers when the
+ * {@code prefix} setting of a channel changes.
+ * </p>
+ *
+ * @version 1.0
+ * @since v0.12.0
+ * @author V-ed (Guillaume Marcoux)
+ */
+public class MessageGate {
+	
+	private static final class Holder {
+		private static final MessageGate INSTANCE = new MessageGate(
+				ChannelPrefixes.get());
+	}
+	
+	private final ChannelPrefixes prefixes;
+	
+	private final LongAdder dropped = new LongAdder();
+	private final LongAdder forwarded = new LongAdder();
+	
+	private volatile boolean isClosed;
+	
+	/**
+	 * Creates a gate that reads the prefix of each channel from the
+	 * {@code prefixes} cache.
+	 *
+	 * @param prefixes
+	 *            The cache of the prefixes of the channels.
+	 * @since v0.12.0
+	 */
+	public MessageGate(ChannelPrefixes prefixes){
+		this.prefixes = prefixes;
+	}
+	
+	/**
+	 * Gets the MessageGate for the whole bot, which uses the prefixes of
+	 * {@link ChannelPrefixes#get()}.
+	 *
+	 * @return The only instance of the gate.
+	 * @since v0.12.0
+	 */
+	public static MessageGate get(){
+		return Holder.INSTANCE;
+	}
+	
+	/**
+	 * Determines if the message of the {@code event} should be sent to a
+	 * router, counting the decision.
+	 *
+	 * @param event
+	 *            The event of the message received.
+	 * @return {@code true} if the message could be a command for this bot,
+	 *         {@code false} if it should be dropped.
+	 * @since v0.12.0
+	 */
+	public boolean shouldForward(MessageReceivedEvent event){
+		
+		boolean shouldForward;
+		
+		if(isClosed || event.getAuthor().isBot()){
+			shouldForward = false;
+		}
+		else if(!event.isFromType(ChannelType.TEXT)){
+			shouldForward = true;
+		}
+		else{
+			shouldForward = startsWithPrefix(event.getMessage()
+					.getContentRaw(), event.getChannel().getIdLong());
+		}
+		
+		if(shouldForward)
+			forwarded.increment();
+		else
+			dropped.increment();
+		
+		return shouldForward;
+		
+	}
+	
+	/**
+	 * Drops every message received until {@link #open()} is called, such as
+	 * while the bot is shutting down.
+	 *
+	 * @since v0.12.0
+	 */
+	public void close(){
+		this.isClosed = true;
+	}
+	
+	/**
+	 * Forwards the messages received again after a call to {@link #close()}.
+	 *
+	 * @since v0.12.0
+	 */
+	public void open(){
+		this.isClosed = false;
+	}
+	
+	/**
+	 * @return {@code true} if this gate currently drops every message,
+	 *         {@code false} otherwise.
+	 * @since v0.12.0
+	 */
+	public boolean isClosed(){
+		return this.isClosed;
+	}
+	
+	/**
+	 * Determines if the {@code content} starts with the prefix of the channel.
+	 *
+	 * @param content
+	 *            The raw content of the message.
+	 * @param channelId
+	 *            The ID of the channel where the message was sent.
+	 * @return {@code true} if the content starts with the channel's prefix,
+	 *         {@code false} otherwise.
+	 * @since v0.12.0
+	 */
+	public boolean startsWithPrefix(String content, long channelId){
+		return content != null && content.startsWith(getPrefix(channelId));
+	}
+	
+	/**
+	 * @param channelId
+	 *            The ID of the channel to get the prefix of.
+	 * @return The prefix currently used in the channel.
+	 * @since v0.12.0
+	 */
+	public String getPrefix(long channelId){
+		return prefixes.getCommandPrefix(channelId);
+	}
+	
+	/**
+	 * @return The amount of messages dropped by this gate.
+	 * @since v0.12.0
+	 */
+	public long getDroppedCount(){
+		return dropped.sum();
+	}
+	
+	/**
+	 * @return The amount of messages forwarded to a router by this gate.
+	 * @since v0.12.0
+	 */
+	public long getForwardedCount(){
+		return forwarded.sum();
+	}
+	
+}
@@ -15,6 +15,10 @@ import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
  * CommandsLinker} (our {@link BotCommandsLinker}) and create the appropriate
  * {@link io.github.vhoyon.vramework.abstracts.AbstractCommandRouter AbstractCommandRouter} (our
  * {@link CommandRouter}).
+ * <p>
+ * Every message goes through the {@link MessageGate} first so that messages
+ * that cannot be commands are dropped before any router is created.
+ * </p>
  * 
  * @version 1.0
  * @since 0.1.0
@@ -24,16 +28,31 @@ import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
 public class MessageListener extends AbstractMessageListener implements
 		Resources {
 	
+	private BotCommandsLinker commandsLinker;
+	
+	@Override
+	public void onMessageReceived(MessageReceivedEvent event){
+		
+		if(MessageGate.get().shouldForward(event))
+			super.onMessageReceived(event);
+		
+	}
+	
 	@Override
 	protected CommandsLinker createCommandLinker(){
-		return new BotCommandsLinker();
+		
+		this.commandsLinker = new BotCommandsLinker();
+		
+		return this.commandsLinker;
+		
 	}
 	
 	@Override
 	protected AbstractCommandRouter createRouter(MessageReceivedEvent event,
 			String receivedMessage, Buffer buffer,
 			CommandsRepository commandsRepo){
-		return new CommandRouter(event, receivedMessage, buffer, commandsRepo);
+		return new CommandRouter(event, receivedMessage, buffer, commandsRepo,
+				commandsLinker.getCommandsTable());
 	}
 	
 }
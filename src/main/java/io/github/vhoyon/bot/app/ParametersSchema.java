@@ -0,0 +1,159 @@
+package io.github.vhoyon.bot.app;
+
+import io.github.vhoyon.vramework.abstracts.AbstractBotCommand;
+import io.github.vhoyon.vramework.objects.ParametersHelp;
+import io.github.vhoyon.vramework.objects.Request;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Parsed form of the {@link ParametersHelp} of a command, which is what the
+ * {@link Request} needs to link the parameters it received : the names
+ * (and aliases) of each parameter, which ones does not accept content and
+ * their weight.
+ * <p>
+ * The schema of a command only depends on its class, so it is built once for
+ * each command class (the first time the command is used) and then copied
+ * into every {@link Request} of that command, which may change its lists. As
+ * the parameters names does not depend on the language of the channel, a
+ * single schema is shared by every language : the descriptions, which are
+ * translated, are only built when the help of a command is actually
+ * requested.
+ * </p>
+ *
+ * @version 1.0
+ * @since v0.12.0
+ * @author V-ed (Guillaume Marcoux)
+ */
+public final class ParametersSchema {
+	
+	private static final ParametersSchema EMPTY = new ParametersSchema();
+	
+	private static final ConcurrentHashMap<Class<?>, ParametersSchema> schemas = new ConcurrentHashMap<>();
+	
+	private final ArrayList<ArrayList<String>> paramLinkMap;
+	private final ArrayList<String> contentLessParams;
+	private final String[] weightedParams;
+	private final int[] weights;
+	
+	private ParametersSchema(){
+		this.paramLinkMap = null;
+		this.contentLessParams = null;
+		this.weightedParams = new String[0];
+		this.weights = new int[0];
+	}
+	
+	private ParametersSchema(ParametersHelp[] parametersHelp){
+		
+		this.paramLinkMap = new ArrayList<>(parametersHelp.length);
+		this.contentLessParams = new ArrayList<>();
+		
+		ArrayList<ParametersHelp> weighted = new ArrayList<>();
+		
+		for(ParametersHelp parameterHelp : parametersHelp){
+			
+			paramLinkMap.add(new ArrayList<>(parameterHelp.getAllParams()));
+			
+			if(!parameterHelp.doesAcceptsContent())
+				contentLessParams.add(parameterHelp.getParam());
+			
+			if(parameterHelp.getWeight() != 0)
+				weighted.add(parameterHelp);
+			
+		}
+		
+		this.weightedParams = new String[weighted.size()];
+		this.weights = new int[weighted.size()];
+		
+		for(int i = 0; i < weighted.size(); i++){
+			weightedParams[i] = weighted.get(i).getParam();
+			weights[i] = weighted.get(i).getWeight();
+		}
+		
+	}
+	
+	/**
+	 * Gets the schema of the {@code command}'s class, building it out of its
+	 * {@link AbstractBotCommand#getParametersDescriptions()} if this is the
+	 * first time this class is used.
+	 *
+	 * @param command
+	 *            The command to get the schema of.
+	 * @return The schema shared by all the commands of the same class.
+	 * @since v0.12.0
+	 */
+	public static ParametersSchema of(AbstractBotCommand command){
+		
+		ParametersSchema schema = schemas.get(command.getClass());
+		
+		if(schema == null){
+			
+			ParametersHelp[] parametersHelp = command
+					.getParametersDescriptions();
+			
+			schema = parametersHelp == null ? EMPTY : new ParametersSchema(
+					parametersHelp);
+			
+			ParametersSchema existing = schemas.putIfAbsent(
+					command.getClass(), schema);
+			
+			if(existing != null)
+				schema = existing;
+			
+		}
+		
+		return schema;
+		
+	}
+	
+	/**
+	 * Links the parameters of the {@code request} using this schema.
+	 *
+	 * @param request
+	 *            The request to link the parameters of.
+	 * @since v0.12.0
+	 */
+	public void applyTo(Request request){
+		
+		if(this.paramLinkMap == null)
+			return;
+		
+		for(int i = 0; i < weightedParams.length; i++){
+			try{
+				request.setParameterWeight(weightedParams[i], weights[i]);
+			}
+			catch(IllegalArgumentException e){}
+		}
+		
+		// Each request gets its own lists so that no request can change the
+		// parameters of the others
+		ArrayList<ArrayList<String>> requestLinkMap = new ArrayList<>(
+				paramLinkMap.size());
+		
+		for(ArrayList<String> links : paramLinkMap)
+			requestLinkMap.add(new ArrayList<>(links));
+		
+		request.setParamLinkMap(requestLinkMap);
+		request.setParamsAsContentLess(new ArrayList<>(contentLessParams));
+		
+	}
+	
+	/**
+	 * @return {@code true} if the command of this schema has no parameters
+	 *         descriptions, {@code false} otherwise.
+	 * @since v0.12.0
+	 */
+	public boolean isEmpty(){
+		return this.paramLinkMap == null;
+	}
+	
+	/**
+	 * @return The amount of commands classes that have their schema cached.
+	 * @since v0.12.0
+	 */
+	public static int getCachedCount(){
+		return schemas.size();
+	}
+	
+}
@@ -0,0 +1,425 @@
+package io.github.vhoyon.bot.app;
+
+import io.github.vhoyon.bot.utilities.specifics.EnvironmentConfig;
+import io.github.vhoyon.vramework.modules.Logger;
+import io.github.vhoyon.vramework.modules.Logger.LogType;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Dispatch engine that runs the {@link CommandRouter} objects on a bounded
+ * amount of worker threads instead of starting a new thread for each message
+ * received.
+ * <p>
+ * Each worker (called a <i>lane</i>) has its own bounded queue and each guild
+ * is always pinned to the same lane, which means that the commands of a single
+ * guild are routed in the order they were received. When a lane's queue is
+ * full, the router is dropped and counted as rejected instead of blocking
+ * JDA's event thread.
+ * </p>
+ * <p>
+ * The actions of the commands that can block (such as the ones waiting on a
+ * web service) are not run by the lanes, as they would stall every guild
+ * pinned to the same lane : they are handed over to a separate bounded pool
+ * of threads (see {@link #dispatchBlocking(Runnable)}).
+ * </p>
+ * <p>
+ * The amount of lanes, the capacity of their queue and the amount of threads
+ * for blocking actions can be configured using the environment variables
+ * {@code ROUTER_THREADS}, {@code ROUTER_QUEUE_CAPACITY} and
+ * {@code ROUTER_BLOCKING_THREADS}. Dropped routers are logged at most once
+ * every {@value #REJECTIONS_LOG_INTERVAL} seconds.
+ * </p>
+ *
+ * @version 1.0
+ * @since v0.12.0
+ * @author V-ed (Guillaume Marcoux)
+ */
+public class RouterDispatcher {
+	
+	/**
+	 * Default capacity of the queue of each lane when the
+	 * {@code ROUTER_QUEUE_CAPACITY} environment variable is not set.
+	 *
+	 * @since v0.12.0
+	 */
+	public final static int DEFAULT_QUEUE_CAPACITY = 1000;
+	
+	/**
+	 * Default amount of threads that run the blocking actions when the
+	 * {@code ROUTER_BLOCKING_THREADS} environment variable is not set.
+	 *
+	 * @since v0.12.0
+	 */
+	public final static int DEFAULT_BLOCKING_THREADS = 32;
+	
+	/**
+	 * Minimum time, in seconds, between two warnings about dropped routers.
+	 *
+	 * @since v0.12.0
+	 */
+	public final static int REJECTIONS_LOG_INTERVAL = 10;
+	
+	private static final String THREAD_PREFIX = "router-lane-";
+	private static final String BLOCKING_THREAD_PREFIX = "router-blocking-";
+	
+	private static final class Holder {
+		private static final RouterDispatcher INSTANCE = new RouterDispatcher(
+				EnvironmentConfig.getInt("ROUTER_THREADS", Runtime
+						.getRuntime().availableProcessors()),
+				EnvironmentConfig.getInt("ROUTER_QUEUE_CAPACITY",
+						DEFAULT_QUEUE_CAPACITY), EnvironmentConfig.getInt(
+						"ROUTER_BLOCKING_THREADS", DEFAULT_BLOCKING_THREADS));
+	}
+	
+	private final ThreadPoolExecutor[] lanes;
+	private final ThreadPoolExecutor blockingPool;
+	private final int queueCapacity;
+	
+	private final LongAdder dispatched = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+	
+	private final LongAdder unloggedRejections = new LongAdder();
+	private final AtomicLong nextRejectionsLog = new AtomicLong(
+			System.nanoTime());
+	
+	/**
+	 * Creates a dispatcher with the amount of lanes and the capacity of their
+	 * queue given in parameters, and {@value #DEFAULT_BLOCKING_THREADS}
+	 * threads for the blocking actions.
+	 *
+	 * @param lanesCount
+	 *            The amount of worker threads to route commands with.
+	 * @param queueCapacity
+	 *            The maximum amount of routers waiting in each lane.
+	 * @throws IllegalArgumentException
+	 *             If any of the parameters is lower than {@code 1}.
+	 * @since v0.12.0
+	 */
+	public RouterDispatcher(int lanesCount, int queueCapacity){
+		this(lanesCount, queueCapacity, DEFAULT_BLOCKING_THREADS);
+	}
+	
+	/**
+	 * Creates a dispatcher with the amount of lanes, the capacity of their
+	 * queue and the amount of threads for the blocking actions given in
+	 * parameters.
+	 *
+	 * @param lanesCount
+	 *            The amount of worker threads to route commands with.
+	 * @param queueCapacity
+	 *            The maximum amount of routers waiting in each lane, and of
+	 *            blocking actions waiting for a thread.
+	 * @param blockingThreads
+	 *            The maximum amount of blocking actions run at the same time.
+	 * @throws IllegalArgumentException
+	 *             If any of the parameters is lower than {@code 1}.
+	 * @since v0.12.0
+	 */
+	public RouterDispatcher(int lanesCount, int queueCapacity,
+			int blockingThreads){
+		
+		if(lanesCount < 1 || queueCapacity < 1 || blockingThreads < 1)
+			throw new IllegalArgumentException(
+					"The dispatcher needs at least one lane with a capacity of at least one router, and one thread for blocking actions!");
+		
+		this.queueCapacity = queueCapacity;
+		this.lanes = new ThreadPoolExecutor[lanesCount];
+		
+		for(int i = 0; i < lanesCount; i++){
+			
+			final String laneName = THREAD_PREFIX + i;
+			
+			this.lanes[i] = new ThreadPoolExecutor(1, 1, 0L,
+					TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(
+							queueCapacity), runnable -> {
+						Thread thread = new Thread(runnable, laneName);
+						thread.setDaemon(true);
+						return thread;
+					});
+			
+		}
+		
+		final AtomicInteger blockingThreadsCount = new AtomicInteger();
+		
+		this.blockingPool = new ThreadPoolExecutor(blockingThreads,
+				blockingThreads, 60L, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+					Thread thread = new Thread(runnable, BLOCKING_THREAD_PREFIX
+							+ blockingThreadsCount.getAndIncrement());
+					thread.setDaemon(true);
+					return thread;
+				});
+		
+		// Only keeps threads while blocking actions are being run
+		this.blockingPool.allowCoreThreadTimeOut(true);
+		
+	}
+	
+	/**
+	 * Gets the RouterDispatcher for the whole bot, configured using the
+	 * {@code ROUTER_THREADS}, {@code ROUTER_QUEUE_CAPACITY} and
+	 * {@code ROUTER_BLOCKING_THREADS} environment variables.
+	 *
+	 * @return The only instance of the dispatcher.
+	 * @since v0.12.0
+	 */
+	public static RouterDispatcher get(){
+		return Holder.INSTANCE;
+	}
+	
+	/**
+	 * Queues the {@code router} in the lane pinned to the {@code laneKey}
+	 * (usually the guild's ID).
+	 *
+	 * @param laneKey
+	 *            The key that determines which lane should run the router.
+	 * @param router
+	 *            The router to run.
+	 * @return {@code true} if the router was queued, {@code false} if it was
+	 *         rejected because the lane's queue is full or because the
+	 *         dispatcher is shut down.
+	 * @since v0.12.0
+	 */
+	public boolean dispatch(long laneKey, Runnable router){
+		
+		try{
+			lanes[getLaneIndex(laneKey)].execute(router);
+		}
+		catch(RejectedExecutionException e){
+			onRejected();
+			return false;
+		}
+		
+		dispatched.increment();
+		
+		return true;
+		
+	}
+	
+	/**
+	 * Runs the {@code action} of a command that can block for a long time
+	 * (such as waiting on a web service) on the pool of threads for blocking
+	 * actions, so that it does not stall its lane.
+	 *
+	 * @param action
+	 *            The action to run.
+	 * @return {@code true} if the action was queued, {@code false} if it was
+	 *         rejected because every thread is busy and the queue is full or
+	 *         because the dispatcher is shut down.
+	 * @since v0.12.0
+	 */
+	public boolean dispatchBlocking(Runnable action){
+		
+		try{
+			blockingPool.execute(action);
+		}
+		catch(RejectedExecutionException e){
+			onRejected();
+			return false;
+		}
+		
+		return true;
+		
+	}
+	
+	/**
+	 * Determines which lane a key is pinned to. The key is mixed so that
+	 * Discord's snowflakes (which share their lowest bits across IDs created
+	 * at the same time) spread evenly across the lanes.
+	 *
+	 * @param laneKey
+	 *            The key to find the lane of.
+	 * @return The index of the lane for the {@code laneKey}.
+	 * @since v0.12.0
+	 */
+	public int getLaneIndex(long laneKey){
+		
+		long mixed = laneKey * 0x9E3779B97F4A7C15L;
+		
+		return (int)((mixed >>> 32) % lanes.length);
+		
+	}
+	
+	/**
+	 * @return The amount of lanes (worker threads) of this dispatcher.
+	 * @since v0.12.0
+	 */
+	public int getLanesCount(){
+		return lanes.length;
+	}
+	
+	/**
+	 * @return The maximum amount of routers waiting in each lane.
+	 * @since v0.12.0
+	 */
+	public int getQueueCapacity(){
+		return queueCapacity;
+	}
+	
+	/**
+	 * @return The total amount of routers waiting to be run in all the lanes,
+	 *         and of blocking actions waiting for a thread.
+	 * @since v0.12.0
+	 */
+	public int getQueueDepth(){
+		
+		int depth = blockingPool.getQueue().size();
+		
+		for(ThreadPoolExecutor lane : lanes)
+			depth += lane.getQueue().size();
+		
+		return depth;
+		
+	}
+	
+	/**
+	 * @param laneIndex
+	 *            The index of the lane to get the depth from.
+	 * @return The amount of routers waiting to be run in the lane.
+	 * @since v0.12.0
+	 */
+	public int getQueueDepth(int laneIndex){
+		return lanes[laneIndex].getQueue().size();
+	}
+	
+	/**
+	 * @return The amount of routers that were accepted by this dispatcher.
+	 * @since v0.12.0
+	 */
+	public long getDispatchedCount(){
+		return dispatched.sum();
+	}
+	
+	/**
+	 * @return The amount of blocking actions that are currently running.
+	 * @since v0.12.0
+	 */
+	public int getActiveBlockingCount(){
+		return blockingPool.getActiveCount();
+	}
+	
+	/**
+	 * @return The amount of routers (and blocking actions) that were dropped
+	 *         because their queue was full.
+	 * @since v0.12.0
+	 */
+	public long getRejectedCount(){
+		return rejected.sum();
+	}
+	
+	/**
+	 * @return The amount of routers that were fully run by the lanes.
+	 * @since v0.12.0
+	 */
+	public long getCompletedCount(){
+		
+		long completed = 0;
+		
+		for(ThreadPoolExecutor lane : lanes)
+			completed += lane.getCompletedTaskCount();
+		
+		return completed;
+		
+	}
+	
+	/**
+	 * Determines if the current thread is one of the lanes of a dispatcher.
+	 *
+	 * @return {@code true} if the code calling this method is being run by a
+	 *         lane, {@code false} otherwise.
+	 * @since v0.12.0
+	 */
+	public static boolean isLaneThread(){
+		return Thread.currentThread().getName().startsWith(THREAD_PREFIX);
+	}
+	
+	/**
+	 * Waits for every lane to have run all of its queued routers, and for
+	 * every blocking action to have ended.
+	 *
+	 * @param deadlineNanos
+	 *            The {@link System#nanoTime()} after which this method stops
+	 *            waiting.
+	 * @return {@code true} if every lane is idle, {@code false} if the
+	 *         deadline was reached first.
+	 * @since v0.12.0
+	 */
+	public boolean awaitIdle(long deadlineNanos){
+		
+		while(!isIdle()){
+			
+			if(System.nanoTime() >= deadlineNanos)
+				return false;
+			
+			LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+			
+		}
+		
+		return true;
+		
+	}
+	
+	/**
+	 * @return {@code true} if no lane is running or waiting to run a router
+	 *         and no blocking action is running or waiting, {@code false}
+	 *         otherwise.
+	 * @since v0.12.0
+	 */
+	public boolean isIdle(){
+		
+		if(blockingPool.getActiveCount() > 0
+				|| !blockingPool.getQueue().isEmpty())
+			return false;
+		
+		for(ThreadPoolExecutor lane : lanes)
+			if(lane.getActiveCount() > 0 || !lane.getQueue().isEmpty())
+				return false;
+		
+		return true;
+		
+	}
+	
+	/**
+	 * Stops accepting new routers and blocking actions. The ones already
+	 * queued will still be run.
+	 *
+	 * @since v0.12.0
+	 */
+	public void shutdown(){
+		
+		for(ThreadPoolExecutor lane : lanes)
+			lane.shutdown();
+		
+		blockingPool.shutdown();
+		
+	}
+	
+	private void onRejected(){
+		
+		rejected.increment();
+		unloggedRejections.increment();
+		
+		long now = System.nanoTime();
+		long nextLog = nextRejectionsLog.get();
+		
+		// Only one of the threads dropping routers at the same time logs,
+		// so that an overloaded bot does not also flood its logs
+		if(now - nextLog >= 0
+				&& nextRejectionsLog.compareAndSet(nextLog, now
+						+ TimeUnit.SECONDS.toNanos(REJECTIONS_LOG_INTERVAL))){
+			
+			Logger.log(unloggedRejections.sumThenReset()
+					+ " command(s) dropped since the last warning as the router queues are full ("
+					+ queueCapacity + " routers waiting per queue).",
+					LogType.WARNING);
+			
+		}
+		
+	}
+	
+}
@@ -0,0 +1,383 @@
+package io.github.vhoyon.bot.app;
+
+import io.github.vhoyon.bot.utilities.audit.AuditWriter;
+import io.github.vhoyon.bot.utilities.metrics.MetricsServer;
+import io.github.vhoyon.bot.utilities.music.MusicManager;
+import io.github.vhoyon.bot.utilities.music.PlayerReaper;
+import io.github.vhoyon.bot.utilities.specifics.ConfirmationRegistry;
+import io.github.vhoyon.bot.utilities.specifics.EnvironmentConfig;
+import io.github.vhoyon.vramework.Framework;
+import io.github.vhoyon.vramework.modules.Logger;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stops the bot in stages so that nothing in flight is lost :
+ * <ol>
+ * <li>the {@link MessageGate} is closed so that no new router is created;</li>
+ * <li>the routers already queued in the {@link RouterDispatcher} are run;</li>
+ * <li>the {@link io.github.vhoyon.vramework.interfaces.Stoppable Stoppable}
+ * commands still running (such as timers) are killed;</li>
+ * <li>the queues of the music players are logged in
+ * {@code music-queues.txt} and the players are closed (the cache of the
+ * resolved sources is also saved, if {@code TRACK_CACHE_FILE} is set);</li>
+ * <li>the entries already published to the audit log are written;</li>
+ * <li>JDA is closed.</li>
+ * </ol>
+ * The routers, the commands and the writing of the audit log all share the
+ * same {@code SHUTDOWN_TIMEOUT} seconds (environment variable,
+ * {@value #DEFAULT_TIMEOUT} by default) to finish.
+ * <p>
+ * The {@code music-queues.txt} file is only a log of what was playing : it is
+ * overwritten at each stop and never loaded back, as the players cannot be
+ * restored without the VoiceChannel and the command that started them.
+ * </p>
+ * <p>
+ * Stopping the bot this way can be undone by starting it again. When the
+ * process itself exits, the JVM shutdown hook (see {@link #installHook()})
+ * also stops the bot and then flushes the audit log, stops the metrics
+ * server, the confirmations and the {@link PlayerReaper} and shuts the router
+ * lanes down. A report of the time taken by each stage is logged, and then
+ * the listeners added by {@link #addShutdownListener(Runnable)} (such as the
+ * console waiting for the process to end) are run. This is the only shutdown
+ * hook of the bot.
+ * </p>
+ *
+ * @version 1.0
+ * @since v0.12.0
+ * @author V-ed (Guillaume Marcoux)
+ */
+public class ShutdownCoordinator {
+	
+	public static final int DEFAULT_TIMEOUT = 10;
+	
+	/**
+	 * The action that closes the connection of the bot to Discord.
+	 *
+	 * @since v0.12.0
+	 */
+	public interface BotCloser {
+		void close() throws Exception;
+	}
+	
+	private static ShutdownCoordinator shutdownCoordinator;
+	
+	private final long timeoutNanos;
+	
+	private BotCloser botCloser;
+	private boolean isHookInstalled;
+	private boolean isProcessShutDown;
+	
+	private final ArrayList<Runnable> shutdownListeners = new ArrayList<>();
+	
+	/**
+	 * Creates a coordinator that gives up to {@code timeoutSeconds} to the
+	 * routers, the commands and the audit log to finish.
+	 *
+	 * @param timeoutSeconds
+	 *            The time given to the routers, the commands and the audit
+	 *            log, in seconds.
+	 * @since v0.12.0
+	 */
+	public ShutdownCoordinator(int timeoutSeconds){
+		this.timeoutNanos = TimeUnit.SECONDS.toNanos(timeoutSeconds);
+	}
+	
+	/**
+	 * Gets the ShutdownCoordinator of the whole bot, configured using the
+	 * {@code SHUTDOWN_TIMEOUT} environment variable.
+	 *
+	 * @return The only instance of the coordinator.
+	 * @since v0.12.0
+	 */
+	public static synchronized ShutdownCoordinator get(){
+		
+		if(shutdownCoordinator == null){
+			shutdownCoordinator = new ShutdownCoordinator(
+					EnvironmentConfig.getInt("SHUTDOWN_TIMEOUT",
+							DEFAULT_TIMEOUT));
+		}
+		
+		return shutdownCoordinator;
+		
+	}
+	
+	/**
+	 * Installs the JVM shutdown hook that stops the bot (if it is running)
+	 * and then stops everything the process started. Installing the hook
+	 * more than once does nothing.
+	 *
+	 * @since v0.12.0
+	 */
+	public synchronized void installHook(){
+		
+		if(!isHookInstalled){
+			
+			Runtime.getRuntime().addShutdownHook(
+					new Thread(this::shutdownProcess, "shutdown-coordinator"));
+			
+			isHookInstalled = true;
+			
+		}
+		
+	}
+	
+	/**
+	 * Adds code to run at the very end of the shutdown of the process, once
+	 * the report of the shutdown was logged.
+	 *
+	 * @param listener
+	 *            The code to run, such as releasing the console that waits
+	 *            for the process to end.
+	 * @since v0.12.0
+	 */
+	public synchronized void addShutdownListener(Runnable listener){
+		shutdownListeners.add(listener);
+	}
+	
+	/**
+	 * Registers how to close the bot that was just started, and opens the
+	 * {@link MessageGate} if a previous stop closed it.
+	 *
+	 * @param botCloser
+	 *            The action that closes the connection to Discord (such as
+	 *            {@code FrameworkTemplate.stopBot(console)}).
+	 * @since v0.12.0
+	 */
+	public synchronized void onBotStarted(BotCloser botCloser){
+		
+		this.botCloser = botCloser;
+		
+		MessageGate.get().open();
+		
+	}
+	
+	/**
+	 * Stops the bot gracefully, if it is running.
+	 *
+	 * @throws Exception
+	 *             If closing the connection to Discord failed.
+	 * @since v0.12.0
+	 */
+	public synchronized void stopBot() throws Exception{
+		
+		if(botCloser == null)
+			return;
+		
+		Report report = new Report();
+		
+		try{
+			stopBot(report);
+		}
+		finally{
+			Logger.log(report.toString(), false);
+		}
+		
+	}
+	
+	/**
+	 * Stops the bot if it is running, then flushes the audit log and stops
+	 * every service of the process. This is what the JVM shutdown hook runs.
+	 *
+	 * @since v0.12.0
+	 */
+	public synchronized void shutdownProcess(){
+		
+		if(isProcessShutDown)
+			return;
+		
+		isProcessShutDown = true;
+		
+		Report report = new Report();
+		
+		try{
+			
+			if(botCloser != null)
+				stopBot(report);
+			
+			long start = System.nanoTime();
+			
+			AuditWriter auditWriter = AuditWriter.get();
+			
+			if(auditWriter != null){
+				auditWriter.close();
+				report.add("audit", start, auditWriter.getWrittenCount()
+						+ " entries written, " + auditWriter.getDroppedCount()
+						+ " dropped");
+			}
+			
+			start = System.nanoTime();
+			
+			// Does not start the ticker of a registry that was never used
+			if(ConfirmationRegistry.isCreated())
+				ConfirmationRegistry.get().shutdown();
+			
+			PlayerReaper playerReaper = PlayerReaper.get();
+			
+			if(playerReaper != null)
+				playerReaper.stop();
+			
+			MetricsServer metricsServer = MetricsServer.get();
+			
+			if(metricsServer != null)
+				metricsServer.stop();
+			
+			RouterDispatcher.get().shutdown();
+			
+			report.add("services", start,
+					"confirmations, reaper, metrics and lanes stopped");
+			
+		}
+		catch(Exception e){
+			Logger.log(e);
+		}
+		finally{
+			Logger.log(report.toString(), false);
+		}
+		
+		for(Runnable listener : shutdownListeners){
+			try{
+				listener.run();
+			}
+			catch(RuntimeException e){
+				Logger.log(e);
+			}
+		}
+		
+	}
+	
+	private void stopBot(Report report) throws Exception{
+		
+		long deadline = System.nanoTime() + timeoutNanos;
+		
+		long start = System.nanoTime();
+		
+		MessageGate.get().close();
+		
+		report.add("gate", start, "no longer accepting messages");
+		
+		start = System.nanoTime();
+		
+		boolean isIdle = RouterDispatcher.get().awaitIdle(deadline);
+		
+		report.add("routers", start, isIdle ? "drained"
+				: RouterDispatcher.get().getQueueDepth()
+						+ " still queued at the deadline");
+		
+		start = System.nanoTime();
+		
+		int runningCount = CommandRouter.getRunningStoppablesCount();
+		int stillRunning = CommandRouter.stopRunningCommands(deadline);
+		
+		report.add("commands", start, (runningCount - stillRunning)
+				+ " stopped, " + stillRunning + " still running");
+		
+		// Does not create the MusicManager if no music was ever played
+		if(MusicManager.isCreated())
+			stopMusic(report);
+		
+		start = System.nanoTime();
+		
+		AuditWriter auditWriter = AuditWriter.get();
+		
+		if(auditWriter != null){
+			
+			boolean isFlushed = auditWriter.flush(deadline);
+			
+			report.add("flush", start, isFlushed ? "audit log written"
+					: auditWriter.getPendingCount()
+							+ " audit entries still pending");
+			
+		}
+		
+		start = System.nanoTime();
+		
+		try{
+			botCloser.close();
+		}
+		finally{
+			
+			botCloser = null;
+			
+			report.add("jda", start, "closed");
+			
+		}
+		
+	}
+	
+	private void stopMusic(Report report){
+		
+		long start = System.nanoTime();
+		
+		MusicManager musicManager = MusicManager.get();
+		
+		try{
+			
+			File snapshot = new File(Framework.runnableSystemPath(),
+					"music-queues.txt");
+			
+			int tracksCount = musicManager.snapshotQueues(snapshot);
+			
+			report.add("music", start, musicManager.closeAll()
+					+ " players closed, " + tracksCount + " tracks saved to "
+					+ snapshot.getName());
+			
+		}
+		catch(Exception e){
+			
+			Logger.log(e);
+			
+			report.add("music", start, musicManager.closeAll()
+					+ " players closed, queues could not be saved");
+			
+		}
+		
+		start = System.nanoTime();
+		
+		try{
+			
+			int savedCount = musicManager.saveTrackCache();
+			
+			if(savedCount != -1)
+				report.add("sources", start, savedCount
+						+ " resolved sources saved");
+			
+		}
+		catch(Exception e){
+			
+			Logger.log(e);
+			
+			report.add("sources", start, "cache could not be saved");
+			
+		}
+		
+	}
+	
+	/**
+	 * Durations of the stages of a shutdown.
+	 */
+	private static final class Report {
+		
+		private final long start = System.nanoTime();
+		private final StringBuilder builder = new StringBuilder(
+				"Shutdown report :");
+		
+		private void add(String stage, long stageStart, String details){
+			builder.append(String.format("%n  %-10s %6d ms  %s", stage,
+					TimeUnit.NANOSECONDS.toMillis(System.nanoTime()
+							- stageStart), details));
+		}
+		
+		@Override
+		public String toString(){
+			return builder.toString()
+					+ String.format("%n  %-10s %6d ms", "total",
+							TimeUnit.NANOSECONDS.toMillis(System.nanoTime()
+									- start));
+		}
+		
+	}
+	
+}
@@ -2,14 +2,22 @@ package io.github.vhoyon.bot.commands;
 
 import io.github.vhoyon.bot.utilities.abstracts.MusicCommands;
 import io.github.vhoyon.bot.utilities.music.MusicManager;
+import io.github.vhoyon.bot.utilities.music.MusicPlayer;
 import io.github.vhoyon.bot.errorHandling.BotError;
 
 import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
 
+import java.util.List;
+
 /**
  * Command that sends a message containing a list of the tracks that are
  * currently in the playlist of the MusicPlayer of the VoiceChannel that is
  * currently connected to.
+ * <p>
+ * The playlist is shown {@value #PAGE_SIZE} tracks at a time : the content of
+ * this command is the number of the page to show, the first page being shown
+ * by default.
+ * </p>
  * 
  * @version 1.0
  * @since v0.5.0
@@ -17,6 +25,8 @@ import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
  */
 public class CommandMusicList extends MusicCommands {
 	
+	public static final int PAGE_SIZE = 20;
+	
 	@Override
 	public void action(){
 		
@@ -26,21 +36,53 @@ public class CommandMusicList extends MusicCommands {
 		}
 		else{
 			
+			MusicPlayer player = MusicManager.get().getPlayer(this);
+			
+			int tracksCount = player.getNumberOfTracks();
+			int pagesCount = Math.max(1, (tracksCount + PAGE_SIZE - 1)
+					/ PAGE_SIZE);
+			
+			int page = 1;
+			
+			if(hasContent()){
+				
+				try{
+					page = Integer.valueOf(getContent());
+				}
+				catch(NumberFormatException e){
+					new BotError(this, lang("NumberNotANumber"));
+					return;
+				}
+				
+				if(page < 1 || page > pagesCount){
+					new BotError(this, lang("NumberNotBetweenRange", 1,
+							pagesCount));
+					return;
+				}
+				
+			}
+			
 			StringBuilder sb = new StringBuilder();
 			
-			AudioTrack currentTrack = MusicManager.get().getPlayer(this)
-					.getAudioPlayer().getPlayingTrack();
+			AudioTrack currentTrack = player.getAudioPlayer().getPlayingTrack();
+			
+			if(currentTrack != null)
+				sb.append(lang("CurrentTrack",
+						code(currentTrack.getInfo().title)));
 			
-			sb.append(lang("CurrentTrack", code(currentTrack.getInfo().title)));
+			int from = (page - 1) * PAGE_SIZE;
 			
-			if(MusicManager.get().getPlayer(this).getListener().getTrackSize() != 0){
+			// Only the tracks of the page are copied, whatever the playlist size
+			List<AudioTrack> tracks = player.getListener().getTracks()
+					.getRange(from, from + PAGE_SIZE);
+			
+			if(!tracks.isEmpty()){
 				
 				sb.append("\n\n").append(lang("Header")).append("\n\n");
 				
-				int i = 1;
+				int i = from + 1;
 				
-				for(AudioTrack track : MusicManager.get().getPlayer(this)
-						.getListener().getTracks()){
+				for(AudioTrack track : tracks){
 					
 					sb.append(
 							lang("TrackInfo", code(i++),
@@ -48,6 +90,11 @@ public class CommandMusicList extends MusicCommands {
 					
 				}
 				
+				if(pagesCount > 1)
+					sb.append("\n").append(
+							lang("Page", page, pagesCount, tracksCount,
+									buildVCommand(MUSIC_LIST + " [page]")));
+				
 			}
 			
 			sendMessage(sb.toString());
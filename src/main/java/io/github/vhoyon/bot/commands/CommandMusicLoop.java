@@ -2,6 +2,9 @@ package io.github.vhoyon.bot.commands;
 
 import io.github.vhoyon.bot.errorHandling.BotError;
 import io.github.vhoyon.bot.utilities.abstracts.MusicCommands;
+import io.github.vhoyon.bot.utilities.music.MusicManager;
+import io.github.vhoyon.bot.utilities.music.PlaybackState;
+import io.github.vhoyon.bot.utilities.music.PlaybackState.LoopMode;
 import io.github.vhoyon.vramework.objects.ParametersHelp;
 
 /**
@@ -27,17 +30,12 @@ public class CommandMusicLoop extends MusicCommands {
 		}
 		else{
 			
-			if(this.hasMemory("MUSIC_LOOP")
-					&& (boolean)this.getMemory("MUSIC_LOOP")){
-				
-				forget("MUSIC_LOOP");
-				sendMessage("The loop has been stopped");
-				
-			}
-			else if(this.hasMemory("LOOP_ONCE")
-					&& (boolean)this.getMemory("LOOP_ONCE")){
+			PlaybackState playbackState = MusicManager.get().getPlayer(this)
+					.getPlaybackState();
+			
+			if(playbackState.isLooping()){
 				
-				forget("LOOP_ONCE");
+				playbackState.setLoopMode(LoopMode.OFF);
 				sendMessage("The loop has been stopped");
 				
 			}
@@ -45,13 +43,13 @@ public class CommandMusicLoop extends MusicCommands {
 				
 				if(hasParameter("o", "one")){
 					
-					remember(true, "LOOP_ONCE");
+					playbackState.setLoopMode(LoopMode.SINGLE);
 					sendMessage("A Loop on the current song has been started.");
 					
 				}
 				else{
 					
-					remember(true, "MUSIC_LOOP");
+					playbackState.setLoopMode(LoopMode.PLAYLIST);
 					sendMessage("A loop on all the songs of the playlist has been started.");
 					
 				}
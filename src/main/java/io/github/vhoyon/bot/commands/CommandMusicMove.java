@@ -0,0 +1,86 @@
+package io.github.vhoyon.bot.commands;
+
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import io.github.vhoyon.bot.errorHandling.BotError;
+import io.github.vhoyon.bot.utilities.abstracts.MusicCommands;
+import io.github.vhoyon.bot.utilities.music.MusicManager;
+import io.github.vhoyon.bot.utilities.music.MusicPlayer;
+
+/**
+ * Command that moves a track of the playlist of the MusicPlayer to another
+ * position of the list. The command's content is the number of the track in
+ * the list (as shown by the {@code list} command) followed by its new number,
+ * such as {@code move 5 1} to play the fifth track next.
+ * 
+ * @version 1.0
+ * @since v0.12.0
+ * @author V-ed (Guillaume Marcoux)
+ */
+public class CommandMusicMove extends MusicCommands {
+	
+	@Override
+	public void action(){
+		
+		if(!isPlaying()){
+			new BotError(this, lang("NotPlaying"));
+		}
+		else{
+			
+			String[] positions = hasContent() ? getContent().trim().split(
+					"\\s+") : new String[0];
+			
+			if(positions.length != 2){
+				new BotError(this, lang("Usage", buildVCommand(MUSIC_MOVE
+						+ " [from] [to]")));
+			}
+			else{
+				
+				MusicPlayer player = MusicManager.get().getPlayer(this);
+				
+				try{
+					
+					int from = Integer.valueOf(positions[0]);
+					int to = Integer.valueOf(positions[1]);
+					int tracksCount = player.getNumberOfTracks();
+					
+					if(from < 1 || from > tracksCount || to < 1
+							|| to > tracksCount){
+						new BotError(this, lang("NumberNotBetweenRange", 1,
+								tracksCount));
+					}
+					else{
+						
+						AudioTrack track = player.moveTrack(from, to);
+						
+						sendInfoMessage(lang("Moved",
+								code(track.getInfo().title), code(to)));
+						
+					}
+					
+				}
+				catch(NumberFormatException e){
+					new BotError(this, lang("NumberNotANumber"));
+				}
+				catch(IndexOutOfBoundsException e){
+					// The playlist changed since its size was checked
+					new BotError(this, lang("NumberNotBetweenRange", 1,
+							player.getNumberOfTracks()));
+				}
+				
+			}
+			
+		}
+		
+	}
+	
+	@Override
+	public Object getCalls(){
+		return MUSIC_MOVE;
+	}
+	
+	@Override
+	public String getCommandDescription(){
+		return "Move a song of the music list to another position of the list";
+	}
+	
+}
@@ -1,26 +1,21 @@
 package io.github.vhoyon.bot.commands;
 
-import com.google.api.client.http.HttpRequest;
-import com.google.api.client.http.HttpRequestInitializer;
-import com.google.api.client.http.javanet.NetHttpTransport;
-import com.google.api.client.json.jackson2.JacksonFactory;
-import com.google.api.services.youtube.YouTube;
-import com.google.api.services.youtube.model.SearchListResponse;
 import io.github.vhoyon.bot.errorHandling.BotError;
 import io.github.vhoyon.bot.utilities.abstracts.MusicCommands;
 import io.github.vhoyon.bot.utilities.music.MusicManager;
 import io.github.vhoyon.bot.utilities.music.MusicPlayer;
+import io.github.vhoyon.bot.utilities.music.YouTubeSearch;
 import io.github.vhoyon.vramework.exceptions.BadFormatException;
 import io.github.vhoyon.vramework.modules.Logger;
 import io.github.vhoyon.vramework.modules.Logger.LogType;
 import io.github.vhoyon.vramework.objects.ParametersHelp;
 import io.github.vhoyon.vramework.utilities.sanitizers.EnumSanitizer;
 
-import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Command to play a track into the VoiceChannel of the user that used this
@@ -40,6 +35,11 @@ import java.util.Random;
  * flag.</li>
  * </ul>
  * </p>
+ * <p>
+ * Searching YouTube can take a few seconds : the search runs in the
+ * background and its track is loaded once found, so that it does not delay
+ * the commands of the other guilds.
+ * </p>
  * 
  * @version 1.0
  * @since v0.5.0
@@ -99,15 +99,15 @@ public class CommandMusicPlay extends MusicCommands {
 							
 							try{
 								
-								String source;
-								
 								if(isUrl(getContent())){
 									
 									sendInfoMessage("Getting data from "
 											+ ital(code(getContent())) + "...",
 											true);
 									
-									source = getContent();
+									MusicManager.get().loadTrack(this,
+											getContent(),
+											this::connectIfNotPlaying);
 									
 								}
 								else{
@@ -116,16 +116,13 @@ public class CommandMusicPlay extends MusicCommands {
 											+ ital(code(getContent())) + "!",
 											true);
 									
-									source = getSourceFromYoutube(getContent());
+									MusicManager.get().loadTrack(this,
+											getSourceFromYoutube(getContent()),
+											this::connectIfNotPlaying,
+											error -> sendMessage(lang("SongByStringFail")));
 									
 								}
 								
-								MusicManager.get().loadTrack(this, source,
-										this::connectIfNotPlaying);
-								
-							}
-							catch(IOException e){
-								sendMessage(lang("SongByStringFail"));
 							}
 							catch(IllegalStateException e){
 								Logger.log(
@@ -244,42 +241,29 @@ public class CommandMusicPlay extends MusicCommands {
 	
 	/**
 	 * Finds the source of a video by searching YouTube using the query's text.
-	 * This would be like if a user searched in the search bar of YouTube.
+	 * This would be like if a user searched in the search bar of YouTube. The
+	 * search goes through the {@link YouTubeSearch} shared by the whole bot
+	 * and does not wait for YouTube to answer.
 	 * 
 	 * @param query
 	 *            The text query to search with.
-	 * @return The URL in a String form of the first video found from YouTube
-	 *         using the {@code query} parameter.
-	 * @throws IOException
-	 *             If any errors happened while searching for the video online.
+	 * @return A future completed with the URL in a String form of the first
+	 *         video found from YouTube using the {@code query} parameter, or
+	 *         completed exceptionally if any errors happened while searching
+	 *         for the video online.
 	 * @throws IllegalStateException
 	 *             If the environment variable {@code YOUTUBE_TOKEN} is not set
 	 * @since v0.9.0
 	 */
-	private String getSourceFromYoutube(String query) throws IOException,
-			IllegalStateException{
+	private CompletableFuture<String> getSourceFromYoutube(String query)
+			throws IllegalStateException{
 		
 		if(!hasEnv("YOUTUBE_TOKEN")){
 			throw new IllegalStateException("youtube");
 		}
 		
-		YouTube youtube = new YouTube.Builder(new NetHttpTransport(),
-				new JacksonFactory(), new HttpRequestInitializer(){
-					public void initialize(HttpRequest request)
-							throws IOException{}
-				}).setApplicationName("Discord Bot").build();
-		
-		YouTube.Search.List search = youtube.search().list("snippet");
-		
-		search.setMaxResults((long)1);
-		search.setQ(getContent());
-		search.setKey(env("YOUTUBE_TOKEN"));
-		
-		SearchListResponse response = search.execute();
-		
-		String id = response.getItems().get(0).getId().getVideoId();
-		
-		return "https://www.youtube.com/watch?v=" + id;
+		return YouTubeSearch.get().searchAsync(query)
+				.thenApply(id -> "https://www.youtube.com/watch?v=" + id);
 		
 	}
 	
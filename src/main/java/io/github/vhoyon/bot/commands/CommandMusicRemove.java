@@ -0,0 +1,72 @@
+package io.github.vhoyon.bot.commands;
+
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import io.github.vhoyon.bot.errorHandling.BotError;
+import io.github.vhoyon.bot.utilities.abstracts.MusicCommands;
+import io.github.vhoyon.bot.utilities.music.MusicManager;
+import io.github.vhoyon.bot.utilities.music.MusicPlayer;
+
+/**
+ * Command that removes a track from the playlist of the MusicPlayer, using its
+ * number in the list (as shown by the {@code list} command) as the command's
+ * content.
+ * 
+ * @version 1.0
+ * @since v0.12.0
+ * @author V-ed (Guillaume Marcoux)
+ */
+public class CommandMusicRemove extends MusicCommands {
+	
+	@Override
+	public void action(){
+		
+		if(!isPlaying()){
+			new BotError(this, lang("NotPlaying"));
+		}
+		else{
+			
+			MusicPlayer player = MusicManager.get().getPlayer(this);
+			
+			try{
+				
+				int position = Integer.valueOf(getContent());
+				int tracksCount = player.getNumberOfTracks();
+				
+				if(position < 1 || position > tracksCount){
+					new BotError(this, lang("NumberNotBetweenRange", 1,
+							tracksCount));
+				}
+				else{
+					
+					AudioTrack track = player.removeTrack(position);
+					
+					sendInfoMessage(lang("Removed", code(position),
+							code(track.getInfo().title)));
+					
+				}
+				
+			}
+			catch(NumberFormatException e){
+				new BotError(this, lang("NumberNotANumber"));
+			}
+			catch(IndexOutOfBoundsException e){
+				// The playlist changed since its size was checked
+				new BotError(this, lang("NumberNotBetweenRange", 1,
+						player.getNumberOfTracks()));
+			}
+			
+		}
+		
+	}
+	
+	@Override
+	public Object getCalls(){
+		return MUSIC_REMOVE;
+	}
+	
+	@Override
+	public String getCommandDescription(){
+		return "Remove a song from the music list using its number in the list";
+	}
+	
+}
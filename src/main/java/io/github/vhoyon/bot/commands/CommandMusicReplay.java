@@ -5,7 +5,9 @@ import io.github.vhoyon.bot.utilities.music.MusicManager;
 
 /**
  * Command that replays the latest track that was in the playlist for this
- * command's context.
+ * command's context, as found in the history of the
+ * {@link io.github.vhoyon.bot.utilities.music.PlaybackState PlaybackState} of
+ * the Guild.
  * 
  * @version 1.0
  * @since v0.9.0
@@ -16,13 +18,14 @@ public class CommandMusicReplay extends MusicCommands {
 	@Override
 	public void action(){
 		
-		if(!hasMemory("LATEST_SONG")){
+		String trackSource = MusicManager.get()
+				.getPlaybackState(getGuild().getIdLong()).getLatestSource();
+		
+		if(trackSource == null){
 			sendMessage(lang("NoPreviousSong"));
 		}
 		else{
 			
-			String trackSource = (String)getMemory("LATEST_SONG");
-			
 			MusicManager.get().loadTrack(this, trackSource,
 					this::connectIfNotPlaying);
 			
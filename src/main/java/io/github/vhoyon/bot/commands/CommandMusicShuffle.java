@@ -0,0 +1,54 @@
+package io.github.vhoyon.bot.commands;
+
+import io.github.vhoyon.bot.errorHandling.BotError;
+import io.github.vhoyon.bot.utilities.abstracts.MusicCommands;
+import io.github.vhoyon.bot.utilities.music.MusicManager;
+import io.github.vhoyon.bot.utilities.music.MusicPlayer;
+
+/**
+ * Command that shuffles the tracks of the playlist of the MusicPlayer. The
+ * track that is currently playing is not affected.
+ * 
+ * @version 1.0
+ * @since v0.12.0
+ * @author V-ed (Guillaume Marcoux)
+ */
+public class CommandMusicShuffle extends MusicCommands {
+	
+	@Override
+	public void action(){
+		
+		if(!isPlaying()){
+			new BotError(this, lang("NotPlaying"));
+		}
+		else{
+			
+			MusicPlayer player = MusicManager.get().getPlayer(this);
+			
+			if(player.getNumberOfTracks() < 2){
+				new BotError(this, lang("NotEnoughTracks"));
+			}
+			else{
+				
+				player.shuffle();
+				
+				sendInfoMessage(lang("Shuffled",
+						code(player.getNumberOfTracks())));
+				
+			}
+			
+		}
+		
+	}
+	
+	@Override
+	public Object getCalls(){
+		return MUSIC_SHUFFLE;
+	}
+	
+	@Override
+	public String getCommandDescription(){
+		return "Shuffle the songs of the music list";
+	}
+	
+}
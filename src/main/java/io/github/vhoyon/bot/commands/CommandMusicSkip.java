@@ -3,6 +3,8 @@ package io.github.vhoyon.bot.commands;
 import io.github.vhoyon.bot.utilities.abstracts.MusicCommands;
 import io.github.vhoyon.bot.utilities.music.MusicManager;
 import io.github.vhoyon.bot.utilities.music.MusicPlayer;
+import io.github.vhoyon.bot.utilities.music.PlaybackState;
+import io.github.vhoyon.bot.utilities.music.PlaybackState.LoopMode;
 import io.github.vhoyon.bot.utilities.specifics.CommandConfirmed;
 import io.github.vhoyon.bot.errorHandling.BotError;
 import io.github.vhoyon.vramework.exceptions.BadContentException;
@@ -19,7 +21,10 @@ import io.github.vhoyon.vramework.objects.ParametersHelp;
  * <p>
  * There is also the option to skip a number of tracks, and to do so, the user
  * can enter the number of tracks to skip as the command's content and bot will
- * skip this amount of tracks before playing the next track in the list. <br>
+ * skip this amount of tracks before playing the next track in the list. The
+ * tracks skipped are never started : the bot jumps straight to the track at
+ * this position of the list, which is why this command can also be called
+ * using {@code jump}. <br>
  * In the case where he tries to skip more than the number of tracks available
  * in the current playlist, a confirmation message will ask the user if he
  * confirms to skip through all tracks.
@@ -53,9 +58,10 @@ public class CommandMusicSkip extends MusicCommands {
 				
 				if(!hasContent()){
 					
-					if(this.hasMemory("MUSIC_LOOP")
-							&& (boolean)this.getMemory("MUSIC_LOOP")){
-						forget("MUSIC_LOOP");
+					PlaybackState playbackState = player.getPlaybackState();
+					
+					if(playbackState.getLoopMode() == LoopMode.PLAYLIST){
+						playbackState.setLoopMode(LoopMode.OFF);
 					}
 					if(player.skipTrack()){
 						sendInfoMessage(lang("SkippedNowPlaying",
@@ -82,9 +88,7 @@ public class CommandMusicSkip extends MusicCommands {
 							
 							if(skipAmount <= player.getNumberOfTracks()){
 								
-								for(int i = 0; i < skipAmount; i++){
-									player.skipTrack();
-								}
+								player.skipTo(skipAmount);
 								
 								sendInfoMessage(lang(
 										"SkippedNowPlaying",
@@ -137,7 +141,10 @@ public class CommandMusicSkip extends MusicCommands {
 	
 	@Override
 	public Object getCalls(){
-		return MUSIC_SKIP;
+		return new String[]
+		{
+			MUSIC_SKIP, MUSIC_JUMP
+		};
 	}
 	
 	@Override
@@ -7,6 +7,7 @@ import io.github.vhoyon.vramework.exceptions.BadFormatException;
 import io.github.vhoyon.vramework.modules.Logger;
 import io.github.vhoyon.vramework.objects.ParametersHelp;
 import io.github.vhoyon.vramework.objects.Request.Parameter;
+import io.github.vhoyon.vramework.utilities.settings.Setting;
 import io.github.vhoyon.vramework.utilities.settings.SettingField;
 
 import java.util.ArrayList;
@@ -95,6 +96,9 @@ public class CommandSetting extends BotCommand {
 			
 			if(parameterContent == null){
 				
+				if(CommandSetting.this.shouldSwitchToDefault)
+					getRouter().prepareSettingsChange();
+				
 				SettingField<Object> settingField = getSettings().getField(
 						this.settingName);
 				
@@ -104,6 +108,8 @@ public class CommandSetting extends BotCommand {
 					
 					settingField.setToDefaultValue(onSuccess);
 					
+					getRouter().onSettingChanged(settingName, null);
+					
 					this.setSendable(true);
 					
 					sendMessage("The setting " + code(settingName)
@@ -288,19 +294,22 @@ public class CommandSetting extends BotCommand {
 	
 	@Override
 	public ParametersHelp[] getParametersDescriptions(){
+		
+		Setting settings = getSettings();
+		
 		return new ParametersHelp[]
 		{
 			new ParametersHelp(
 					"Changes the prefix used for each command. Default is "
-							+ code(getSettings().getField("prefix")
+							+ code(settings.getField("prefix")
 									.getDefaultValue()) + ".", "prefix"),
 			new ParametersHelp(
 					"Changes the parameters prefix used for each command. Default is "
-							+ code(getSettings().getField("param_prefix")
+							+ code(settings.getField("param_prefix")
 									.getDefaultValue()) + ".", "param_prefix"),
 			new ParametersHelp(
 					"Changes the bot's nickname. His default name is "
-							+ code(getSettings().getField("nickname")
+							+ code(settings.getField("nickname")
 									.getDefaultValue()) + ".", "nickname"),
 			new ParametersHelp(
 					"Determine the behavior of stopping the most recent running command. "
@@ -308,16 +317,17 @@ public class CommandSetting extends BotCommand {
 							+ " to ask for a confirmation, "
 							+ code("false")
 							+ " to stop the most recent command without confirming. Default is set to "
-							+ code(getSettings().getField("nickname")
+							+ code(settings.getField("confirm_stop")
 									.getDefaultValue()) + ".", "confirm_stop"),
 			new ParametersHelp(
 					"Changes the bot's default volume when playing some music. The default value is "
-							+ code(getSettings().getField("volume")
+							+ code(settings.getField("volume")
 									.getDefaultValue()) + ".", "volume"),
 			new ParametersHelp(
 					"Switch to allow for putting back the default value for each settings as parameters quickly.",
 					false, "d", "default")
 		};
+		
 	}
 	
 }
@@ -0,0 +1,206 @@
+package io.github.vhoyon.bot.consoles;
+
+import io.github.vhoyon.vramework.Framework;
+import io.github.vhoyon.vramework.interfaces.Console;
+import io.github.vhoyon.vramework.interfaces.Loggable;
+import io.github.vhoyon.vramework.modules.Logger;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Console for running the bot as a daemon on a server : it starts the bot as
+ * soon as it is initialized, never reads the standard input, never loads any
+ * Swing / AWT class and logs in daily files of the {@code logs} directory of
+ * the bot (such as {@code logs/bot-2018-07-21.log}).
+ * <p>
+ * This console does not install any shutdown hook : the hook that stops the
+ * bot when the JVM is asked to terminate (such as when receiving a
+ * {@code SIGTERM} or a {@code SIGINT}) calls {@link #release()} once it is
+ * done, after which {@link #initialize()} returns.
+ * </p>
+ *
+ * @version 1.0
+ * @since v0.12.0
+ * @author V-ed (Guillaume Marcoux)
+ */
+public abstract class HeadlessConsole implements Console, Loggable {
+	
+	private static final DateTimeFormatter LINE_FORMAT = DateTimeFormatter
+			.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+	
+	private final File logsDirectory;
+	private final CountDownLatch stopped = new CountDownLatch(1);
+	
+	private Writer writer;
+	private LocalDate writerDate;
+	private boolean isReleased;
+	
+	/**
+	 * Creates the console, which logs in the {@code logs} directory next to
+	 * the bot.
+	 *
+	 * @since v0.12.0
+	 */
+	public HeadlessConsole(){
+		this(new File(Framework.runnableSystemPath(), "logs"));
+	}
+	
+	/**
+	 * Creates the console, which logs in the {@code logsDirectory}.
+	 *
+	 * @param logsDirectory
+	 *            The directory to create the log files in.
+	 * @since v0.12.0
+	 */
+	public HeadlessConsole(File logsDirectory){
+		this.logsDirectory = logsDirectory;
+	}
+	
+	/**
+	 * Starts the bot right away and then blocks until {@link #release()} is
+	 * called.
+	 */
+	@Override
+	public void initialize(){
+		
+		// Makes sure that nothing loaded by a dependency tries to use a display
+		System.setProperty("java.awt.headless", "true");
+		
+		Logger.setOutputs(this);
+		
+		onInitialized();
+		
+		try{
+			onStart();
+		}
+		catch(Exception e){
+			Logger.log(e);
+			
+			// Nothing else keeps the process alive : exiting is what tells
+			// the service manager that the bot could not start
+			System.exit(1);
+		}
+		
+		try{
+			stopped.await();
+		}
+		catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+		}
+		
+	}
+	
+	@Override
+	public void onExit(){
+		Logger.log("Bot stopped.", false);
+	}
+	
+	@Override
+	public synchronized void log(String logText, String logType,
+			boolean hasAppendedDate){
+		
+		if(isReleased){
+			// The log files are closed, nothing must open them again
+			System.err.println(logText);
+			return;
+		}
+		
+		try{
+			
+			Writer writer = getWriter();
+			
+			if(!hasAppendedDate)
+				writer.write("[" + LINE_FORMAT.format(LocalDateTime.now())
+						+ "] ");
+			
+			if(logType != null)
+				writer.write(logType + " ");
+			
+			writer.write(logText);
+			writer.write(System.lineSeparator());
+			writer.flush();
+			
+		}
+		catch(IOException e){
+			// The logs are unusable : stderr is the last place to report to
+			e.printStackTrace();
+		}
+		
+	}
+	
+	/**
+	 * Logs that the bot stopped, closes the log files and makes
+	 * {@link #initialize()} return. This is called once the bot was stopped,
+	 * at the end of the shutdown of the process. What is logged afterwards is
+	 * printed to the standard error.
+	 *
+	 * @since v0.12.0
+	 */
+	public void release(){
+		
+		onExit();
+		
+		synchronized(this){
+			isReleased = true;
+			closeWriter();
+		}
+		
+		stopped.countDown();
+		
+	}
+	
+	private Writer getWriter() throws IOException{
+		
+		LocalDate today = LocalDate.now();
+		
+		if(writer == null || !today.equals(writerDate)){
+			
+			closeWriter();
+			
+			if(!logsDirectory.exists() && !logsDirectory.mkdirs())
+				throw new IOException("Could not create the directory "
+						+ logsDirectory.getPath() + "!");
+			
+			File file = new File(logsDirectory, "bot-" + today + ".log");
+			
+			writer = new BufferedWriter(new OutputStreamWriter(
+					Files.newOutputStream(file.toPath(),
+							StandardOpenOption.CREATE,
+							StandardOpenOption.APPEND), StandardCharsets.UTF_8));
+			writerDate = today;
+			
+		}
+		
+		return writer;
+		
+	}
+	
+	private synchronized void closeWriter(){
+		
+		if(writer != null){
+			
+			try{
+				writer.close();
+			}
+			catch(IOException e){
+				e.printStackTrace();
+			}
+			
+			writer = null;
+			
+		}
+		
+	}
+	
+}
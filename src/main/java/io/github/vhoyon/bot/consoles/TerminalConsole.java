@@ -1,8 +1,12 @@
 package io.github.vhoyon.bot.consoles;
 
+import io.github.vhoyon.bot.utilities.metrics.CommandLatencies;
+import io.github.vhoyon.bot.utilities.settings.ChannelSettings;
+import io.github.vhoyon.vramework.Framework;
 import io.github.vhoyon.vramework.abstracts.AbstractTerminalConsole;
 import io.github.vhoyon.vramework.modules.Logger;
 
+import java.io.File;
 import java.io.IOException;
 
 /**
@@ -67,7 +71,10 @@ public abstract class TerminalConsole extends AbstractTerminalConsole {
 				
 				String input = getInput();
 				
-				shouldStop = handleInput(input);
+				if(handleMetricsInput(input))
+					shouldStop = false;
+				else
+					shouldStop = handleInput(input);
 				
 			}while(!shouldStop);
 			
@@ -85,6 +92,58 @@ public abstract class TerminalConsole extends AbstractTerminalConsole {
 		
 	}
 	
+	/**
+	 * Handles the inputs that query the metrics of the bot, which are :
+	 * <ul>
+	 * <li>{@code latency} : prints the latencies of each command;</li>
+	 * <li>{@code latency export} : exports a snapshot of the latencies in the
+	 * {@code metrics} directory of the bot;</li>
+	 * <li>{@code latency reset} : forgets all the latencies recorded;</li>
+	 * <li>{@code settings} : prints the memory used by the settings of the
+	 * channels.</li>
+	 * </ul>
+	 *
+	 * @param input
+	 *            The input of the user.
+	 * @return {@code true} if the input was a metrics query and was handled,
+	 *         {@code false} otherwise.
+	 * @since v0.12.0
+	 */
+	protected boolean handleMetricsInput(String input){
+		
+		if(input == null)
+			return false;
+		
+		CommandLatencies latencies = CommandLatencies.get();
+		
+		switch(input.trim().toLowerCase()){
+		case "latency":
+			Logger.log(latencies.getReport(), false);
+			return true;
+		case "latency export":
+			try{
+				File snapshot = latencies.exportSnapshot(new File(Framework
+						.runnableSystemPath(), "metrics"));
+				Logger.log("Latencies exported to " + snapshot.getPath()
+						+ ".", false);
+			}
+			catch(IOException e){
+				Logger.log(e);
+			}
+			return true;
+		case "latency reset":
+			latencies.reset();
+			Logger.log("Latencies reset.", false);
+			return true;
+		case "settings":
+			Logger.log(ChannelSettings.get().getMemoryReport(), false);
+			return true;
+		default:
+			return false;
+		}
+		
+	}
+	
 	@Override
 	public void onExit(){
 		Logger.log("\nThanks for using the bot!", false);
@@ -0,0 +1,240 @@
+package io.github.vhoyon.bot.processing;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Annotation processor that runs on every compilation of the bot and
+ * generates the {@value #INDEX_CLASS} class, which lists all of the concrete
+ * commands of the {@value #DEFAULT_COMMANDS_PACKAGE} package along with a
+ * constructor reference for each of them.
+ * <p>
+ * The generated class implements {@code io.github.vhoyon.bot.app.CommandsIndex}
+ * and is registered as a service so that the
+ * {@code io.github.vhoyon.bot.app.BotCommandsLinker} can load it directly
+ * instead of scanning the classpath at startup.
+ * </p>
+ * <p>
+ * The package to index can be changed using the {@code commands.package}
+ * processor option. The commands of the package that are not compiled again
+ * (such as during an incremental build) are read from the classpath, so that
+ * the index always lists every command of the package.
+ * </p>
+ *
+ * @version 1.0
+ * @since v0.12.0
+ * @author V-ed (Guillaume Marcoux)
+ */
+@SupportedAnnotationTypes("*")
+@SupportedOptions(CommandsIndexProcessor.PACKAGE_OPTION)
+public class CommandsIndexProcessor extends AbstractProcessor {
+	
+	/**
+	 * Name of the processor option that sets the package to index.
+	 * 
+	 * @since v0.12.0
+	 */
+	public static final String PACKAGE_OPTION = "commands.package";
+	
+	/**
+	 * Package indexed when the {@link #PACKAGE_OPTION} option is not given.
+	 * 
+	 * @since v0.12.0
+	 */
+	public static final String DEFAULT_COMMANDS_PACKAGE = "io.github.vhoyon.bot.commands";
+	
+	/**
+	 * Simple name of the class generated in the indexed package.
+	 * 
+	 * @since v0.12.0
+	 */
+	public static final String INDEX_CLASS = "GeneratedCommandsIndex";
+	
+	/**
+	 * Fully qualified name of the interface that the generated class
+	 * implements and is registered as a service of.
+	 * 
+	 * @since v0.12.0
+	 */
+	public static final String INDEX_INTERFACE = "io.github.vhoyon.bot.app.CommandsIndex";
+	
+	private static final String COMMAND_CLASS = "io.github.vhoyon.vramework.abstracts.AbstractBotCommand";
+	
+	private boolean isGenerated = false;
+	
+	@Override
+	public SourceVersion getSupportedSourceVersion(){
+		return SourceVersion.latestSupported();
+	}
+	
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations,
+			RoundEnvironment roundEnv){
+		
+		if(isGenerated || roundEnv.processingOver())
+			return false;
+		
+		TypeElement commandElement = processingEnv.getElementUtils()
+				.getTypeElement(COMMAND_CLASS);
+		
+		if(commandElement == null)
+			return false;
+		
+		String commandsPackage = getCommandsPackage();
+		
+		Types types = processingEnv.getTypeUtils();
+		TypeMirror commandType = types.erasure(commandElement.asType());
+		
+		SortedSet<String> commands = new TreeSet<>();
+		
+		Set<TypeElement> candidates = new LinkedHashSet<>(
+				ElementFilter.typesIn(roundEnv.getRootElements()));
+		
+		// Under incremental compilation (IDE or partial build), only the
+		// recompiled commands are root elements : the commands compiled
+		// before are found through their package so that they stay indexed
+		PackageElement packageElement = processingEnv.getElementUtils()
+				.getPackageElement(commandsPackage);
+		
+		if(packageElement != null)
+			candidates.addAll(ElementFilter.typesIn(packageElement
+					.getEnclosedElements()));
+		
+		for(TypeElement type : candidates){
+			
+			if(isIndexable(type, commandsPackage, commandType, types))
+				commands.add(type.getSimpleName().toString());
+			
+		}
+		
+		if(commands.isEmpty())
+			return false;
+		
+		try{
+			writeIndex(commandsPackage, commands);
+			writeService(commandsPackage);
+		}
+		catch(IOException e){
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+					"Could not generate the commands index : " + e.getMessage());
+		}
+		
+		isGenerated = true;
+		
+		return false;
+		
+	}
+	
+	private String getCommandsPackage(){
+		
+		String option = processingEnv.getOptions().get(PACKAGE_OPTION);
+		
+		return option == null ? DEFAULT_COMMANDS_PACKAGE : option;
+		
+	}
+	
+	private boolean isIndexable(TypeElement type, String commandsPackage,
+			TypeMirror commandType, Types types){
+		
+		if(type.getKind() != ElementKind.CLASS
+				|| type.getNestingKind() != NestingKind.TOP_LEVEL)
+			return false;
+		
+		Set<Modifier> modifiers = type.getModifiers();
+		
+		if(!modifiers.contains(Modifier.PUBLIC)
+				|| modifiers.contains(Modifier.ABSTRACT))
+			return false;
+		
+		String packageName = processingEnv.getElementUtils()
+				.getPackageOf(type).getQualifiedName().toString();
+		
+		if(!packageName.equals(commandsPackage))
+			return false;
+		
+		if(!types.isSubtype(types.erasure(type.asType()), commandType))
+			return false;
+		
+		List<ExecutableElement> constructors = ElementFilter
+				.constructorsIn(type.getEnclosedElements());
+		
+		for(ExecutableElement constructor : constructors){
+			if(constructor.getParameters().isEmpty()
+					&& constructor.getModifiers().contains(Modifier.PUBLIC))
+				return true;
+		}
+		
+		processingEnv.getMessager().printMessage(
+				Diagnostic.Kind.WARNING,
+				"The command " + type.getSimpleName()
+						+ " has no public constructor without parameters"
+						+ " and will not be indexed.", type);
+		
+		return false;
+		
+	}
+	
+	private void writeIndex(String commandsPackage, Set<String> commands)
+			throws IOException{
+		
+		Filer filer = processingEnv.getFiler();
+		
+		JavaFileObject file = filer.createSourceFile(commandsPackage + "."
+				+ INDEX_CLASS);
+		
+		try(Writer writer = file.openWriter()){
+			
+			writer.write("package " + commandsPackage + ";\n\n");
+			writer.write("import " + COMMAND_CLASS + ";\n\n");
+			writer.write("import java.util.LinkedHashMap;\n");
+			writer.write("import java.util.Map;\n");
+			writer.write("import java.util.function.Supplier;\n\n");
+			writer.write("/**\n * Generated by " + getClass().getName()
+					+ ", do not edit.\n */\n");
+			writer.write("public final class " + INDEX_CLASS + " implements "
+					+ INDEX_INTERFACE + " {\n\n");
+			writer.write("\t@Override\n");
+			writer.write("\tpublic Map<Class<? extends AbstractBotCommand>, Supplier<AbstractBotCommand>> getCommands(){\n\n");
+			writer.write("\t\tMap<Class<? extends AbstractBotCommand>, Supplier<AbstractBotCommand>> commands = new LinkedHashMap<>();\n\n");
+			
+			for(String command : commands){
+				writer.write("\t\tcommands.put(" + command + ".class, "
+						+ command + "::new);\n");
+			}
+			
+			writer.write("\n\t\treturn commands;\n\n");
+			writer.write("\t}\n\n");
+			writer.write("}\n");
+			
+		}
+		
+	}
+	
+	private void writeService(String commandsPackage) throws IOException{
+		
+		FileObject file = processingEnv.getFiler().createResource(
+				StandardLocation.CLASS_OUTPUT, "",
+				"META-INF/services/" + INDEX_INTERFACE);
+		
+		try(Writer writer = file.openWriter()){
+			writer.write(commandsPackage + "." + INDEX_CLASS + "\n");
+		}
+		
+	}
+	
+}
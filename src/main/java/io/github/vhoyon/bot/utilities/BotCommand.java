@@ -139,10 +139,14 @@ public abstract class BotCommand extends AbstractBotCommand implements
 	public void setSetting(String settingName, Object value,
 			Consumer<Object> onChange) throws BadFormatException{
 		
+		getRouter().prepareSettingsChange();
+		
 		Setting settings = this.getSettings();
 		
 		settings.save(settingName, value, onChange);
 		
+		getRouter().onSettingChanged(settingName, value);
+		
 	}
 	
 }
@@ -0,0 +1,728 @@
+package io.github.vhoyon.bot.utilities.audit;
+
+import io.github.vhoyon.bot.utilities.specifics.EnvironmentConfig;
+import io.github.vhoyon.vramework.modules.Environment;
+import io.github.vhoyon.vramework.modules.Logger;
+import io.github.vhoyon.vramework.modules.Logger.LogType;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Asynchronous writer of the audit log of the bot.
+ * <p>
+ * Routers publish their audit entries in a bounded, lock-free ring buffer and
+ * return immediately. A single writer thread drains the buffer and writes the
+ * entries by batch through a {@link FileChannel}, forcing them to the disk
+ * once per batch (group commit). The file is rolled over once it reaches a
+ * maximum size or age, and the rolled files are compressed in the background
+ * using gzip.
+ * </p>
+ * <p>
+ * When the ring buffer is full, the {@link OverflowPolicy} decides if the
+ * entry is dropped (and counted) or if the publisher waits for some space.
+ * The configuration is read from the environment variables
+ * {@code AUDIT_BUFFER_SIZE}, {@code AUDIT_MAX_FILE_SIZE} (in bytes),
+ * {@code AUDIT_ROTATION_HOURS} and {@code AUDIT_OVERFLOW_POLICY} ({@code drop}
+ * or {@code block}).
+ * </p>
+ *
+ * @version 1.0
+ * @since v0.12.0
+ * @author V-ed (Guillaume Marcoux)
+ */
+public class AuditWriter {
+	
+	/**
+	 * What to do with an entry published while the ring buffer is full.
+	 *
+	 * @since v0.12.0
+	 */
+	public enum OverflowPolicy {
+		/**
+		 * The entry is dropped and counted, the publisher never waits.
+		 */
+		DROP,
+		/**
+		 * The publisher waits until the writer frees some space.
+		 */
+		BLOCK
+	}
+	
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+	public static final long DEFAULT_MAX_FILE_SIZE = 10L * 1024 * 1024;
+	public static final long DEFAULT_ROTATION_HOURS = 24;
+	
+	private static final int MAX_BATCH = 512;
+	private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS
+			.toNanos(100);
+	private static final long BLOCKED_PARK_NANOS = TimeUnit.MICROSECONDS
+			.toNanos(50);
+	
+	private static final DateTimeFormatter ENTRY_FORMAT = DateTimeFormatter
+			.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+	private static final DateTimeFormatter ROLL_FORMAT = DateTimeFormatter
+			.ofPattern("yyyyMMdd-HHmmss");
+	
+	private static volatile AuditWriter auditWriter;
+	
+	private final File file;
+	private final long maxFileSize;
+	private final long rotationMillis;
+	private final OverflowPolicy policy;
+	
+	private final int mask;
+	private final AtomicReferenceArray<Entry> slots;
+	private final AtomicLongArray sequences;
+	private final AtomicLong tail = new AtomicLong();
+	private volatile long head;
+	private volatile long flushed;
+	
+	private final Thread writerThread;
+	private final ExecutorService compressor;
+	private volatile boolean isWriterParked;
+	private volatile boolean isClosed;
+	
+	private FileChannel channel;
+	private long fileSize;
+	private long fileOpenedAt;
+	private boolean isFileFailing;
+	private ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+	
+	private final LongAdder written = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+	private final LongAdder batches = new LongAdder();
+	private final LongAdder batchNanos = new LongAdder();
+	private final AtomicLong maxBatchNanos = new AtomicLong();
+	private final LongAdder entriesLatencyNanos = new LongAdder();
+	private final AtomicLong maxEntryLatencyNanos = new AtomicLong();
+	private final LongAdder rotations = new LongAdder();
+	
+	private static final class Entry {
+		
+		private final String message;
+		private final long timestamp;
+		private final long publishedNanos;
+		
+		private Entry(String message){
+			this.message = message;
+			this.timestamp = System.currentTimeMillis();
+			this.publishedNanos = System.nanoTime();
+		}
+		
+	}
+	
+	/**
+	 * Creates and starts a writer that appends to the {@code file}.
+	 *
+	 * @param file
+	 *            The file to write the audit log to.
+	 * @param bufferSize
+	 *            The capacity of the ring buffer, rounded up to the next power
+	 *            of two.
+	 * @param maxFileSize
+	 *            The size, in bytes, after which the file is rolled over.
+	 * @param rotationMillis
+	 *            The age, in milliseconds, after which the file is rolled
+	 *            over.
+	 * @param policy
+	 *            What to do when the ring buffer is full.
+	 * @throws IOException
+	 *             If the file cannot be opened.
+	 * @since v0.12.0
+	 */
+	public AuditWriter(File file, int bufferSize, long maxFileSize,
+			long rotationMillis, OverflowPolicy policy) throws IOException{
+		
+		this.file = file;
+		this.maxFileSize = maxFileSize;
+		this.rotationMillis = rotationMillis;
+		this.policy = policy;
+		
+		int capacity = Integer.highestOneBit(Math.max(2, bufferSize - 1)) << 1;
+		
+		this.mask = capacity - 1;
+		this.slots = new AtomicReferenceArray<>(capacity);
+		this.sequences = new AtomicLongArray(capacity);
+		
+		for(int i = 0; i < capacity; i++)
+			this.sequences.set(i, i);
+		
+		openFile();
+		
+		this.compressor = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "audit-compressor");
+			thread.setDaemon(true);
+			return thread;
+		});
+		
+		this.writerThread = new Thread(this::writeLoop, "audit-writer");
+		this.writerThread.setDaemon(true);
+		this.writerThread.start();
+		
+	}
+	
+	/**
+	 * Starts the AuditWriter for the whole bot, writing to the {@code file}
+	 * and configured using the environment variables. Any writer previously
+	 * started is closed.
+	 *
+	 * @param file
+	 *            The file to write the audit log to.
+	 * @return The writer started.
+	 * @throws IOException
+	 *             If the file cannot be opened.
+	 * @since v0.12.0
+	 */
+	public static synchronized AuditWriter start(File file) throws IOException{
+		
+		if(auditWriter != null)
+			auditWriter.close();
+		
+		int bufferSize = EnvironmentConfig.getInt("AUDIT_BUFFER_SIZE",
+				DEFAULT_BUFFER_SIZE);
+		long maxFileSize = EnvironmentConfig.getLong("AUDIT_MAX_FILE_SIZE",
+				DEFAULT_MAX_FILE_SIZE);
+		long rotationHours = EnvironmentConfig.getLong(
+				"AUDIT_ROTATION_HOURS", DEFAULT_ROTATION_HOURS);
+		
+		String policyName = Environment.getVar("AUDIT_OVERFLOW_POLICY", null);
+		
+		OverflowPolicy policy = OverflowPolicy.DROP;
+		
+		if(policyName != null){
+			try{
+				policy = OverflowPolicy.valueOf(policyName.trim()
+						.toUpperCase());
+			}
+			catch(IllegalArgumentException e){
+				Logger.log("The audit overflow policy " + policyName
+						+ " does not exist, dropping entries instead.",
+						LogType.WARNING);
+			}
+		}
+		
+		auditWriter = new AuditWriter(file, bufferSize, maxFileSize,
+				TimeUnit.HOURS.toMillis(rotationHours), policy);
+		
+		return auditWriter;
+		
+	}
+	
+	/**
+	 * @return The AuditWriter of the whole bot, or {@code null} if it was not
+	 *         started.
+	 * @since v0.12.0
+	 */
+	public static AuditWriter get(){
+		return auditWriter;
+	}
+	
+	/**
+	 * Publishes an entry to write in the audit log. This never does any I/O :
+	 * the entry is written later by the writer thread.
+	 *
+	 * @param message
+	 *            The message to audit.
+	 * @return {@code true} if the entry was published, {@code false} if it was
+	 *         dropped because the buffer is full or the writer is closed.
+	 * @since v0.12.0
+	 */
+	public boolean audit(String message){
+		
+		if(isClosed){
+			dropped.increment();
+			return false;
+		}
+		
+		Entry entry = new Entry(message);
+		
+		while(true){
+			
+			long position = tail.get();
+			int index = (int)(position & mask);
+			long difference = sequences.get(index) - position;
+			
+			if(difference == 0){
+				
+				if(tail.compareAndSet(position, position + 1)){
+					
+					slots.set(index, entry);
+					sequences.set(index, position + 1);
+					
+					if(isWriterParked)
+						LockSupport.unpark(writerThread);
+					
+					return true;
+					
+				}
+				
+			}
+			else if(difference < 0){
+				
+				if(policy == OverflowPolicy.DROP || isClosed){
+					dropped.increment();
+					return false;
+				}
+				
+				LockSupport.unpark(writerThread);
+				LockSupport.parkNanos(BLOCKED_PARK_NANOS);
+				
+			}
+			
+		}
+		
+	}
+	
+	/**
+	 * Waits for the writer thread to write the entries published before this
+	 * call, without closing the writer, such as when the bot is stopped but
+	 * the process keeps running.
+	 *
+	 * @param deadlineNanos
+	 *            The {@link System#nanoTime()} after which to stop waiting.
+	 * @return {@code true} if every entry published before this call was
+	 *         written (or dropped because the file failed), {@code false} if
+	 *         some were still pending at the deadline.
+	 * @since v0.12.0
+	 */
+	public boolean flush(long deadlineNanos){
+		
+		long target = tail.get();
+		
+		while(flushed < target){
+			
+			if(!writerThread.isAlive()
+					|| System.nanoTime() - deadlineNanos >= 0)
+				return false;
+			
+			LockSupport.unpark(writerThread);
+			LockSupport.parkNanos(BLOCKED_PARK_NANOS);
+			
+		}
+		
+		return true;
+		
+	}
+	
+	/**
+	 * Stops accepting entries, waits for the writer thread to write the
+	 * entries already published, closes the file and waits for the rolled
+	 * files to be compressed.
+	 *
+	 * @since v0.12.0
+	 */
+	public void close(){
+		
+		isClosed = true;
+		
+		LockSupport.unpark(writerThread);
+		
+		try{
+			writerThread.join(TimeUnit.SECONDS.toMillis(10));
+		}
+		catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+		}
+		
+		compressor.shutdown();
+		
+		try{
+			compressor.awaitTermination(10, TimeUnit.SECONDS);
+		}
+		catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+		}
+		
+	}
+	
+	/**
+	 * @return The amount of entries written to the disk.
+	 * @since v0.12.0
+	 */
+	public long getWrittenCount(){
+		return written.sum();
+	}
+	
+	/**
+	 * @return The amount of entries dropped because the buffer was full or
+	 *         the writer closed.
+	 * @since v0.12.0
+	 */
+	public long getDroppedCount(){
+		return dropped.sum();
+	}
+	
+	/**
+	 * @return The amount of entries currently waiting to be written.
+	 * @since v0.12.0
+	 */
+	public long getPendingCount(){
+		return Math.max(0, tail.get() - head);
+	}
+	
+	/**
+	 * @return The amount of times the file was rolled over.
+	 * @since v0.12.0
+	 */
+	public long getRotationsCount(){
+		return rotations.sum();
+	}
+	
+	/**
+	 * @return The average time, in nanoseconds, taken to write (and force) a
+	 *         batch of entries to the disk.
+	 * @since v0.12.0
+	 */
+	public long getAverageBatchNanos(){
+		
+		long count = batches.sum();
+		
+		return count == 0 ? 0 : batchNanos.sum() / count;
+		
+	}
+	
+	/**
+	 * @return The longest time, in nanoseconds, taken to write (and force) a
+	 *         batch of entries to the disk.
+	 * @since v0.12.0
+	 */
+	public long getMaxBatchNanos(){
+		return maxBatchNanos.get();
+	}
+	
+	/**
+	 * @return The average time, in nanoseconds, between the publication of an
+	 *         entry and its write to the disk.
+	 * @since v0.12.0
+	 */
+	public long getAverageLatencyNanos(){
+		
+		long count = written.sum();
+		
+		return count == 0 ? 0 : entriesLatencyNanos.sum() / count;
+		
+	}
+	
+	/**
+	 * @return The longest time, in nanoseconds, between the publication of an
+	 *         entry and its write to the disk.
+	 * @since v0.12.0
+	 */
+	public long getMaxLatencyNanos(){
+		return maxEntryLatencyNanos.get();
+	}
+	
+	/**
+	 * @return A short human readable summary of the metrics of this writer.
+	 * @since v0.12.0
+	 */
+	public String getReport(){
+		return "Audit : " + getWrittenCount() + " written, "
+				+ getDroppedCount() + " dropped, " + getPendingCount()
+				+ " pending, " + getRotationsCount() + " rotations, batch "
+				+ TimeUnit.NANOSECONDS.toMicros(getAverageBatchNanos())
+				+ "us avg / "
+				+ TimeUnit.NANOSECONDS.toMicros(getMaxBatchNanos())
+				+ "us max, latency "
+				+ TimeUnit.NANOSECONDS.toMicros(getAverageLatencyNanos())
+				+ "us avg / "
+				+ TimeUnit.NANOSECONDS.toMicros(getMaxLatencyNanos())
+				+ "us max.";
+	}
+	
+	private void writeLoop(){
+		
+		Entry[] batch = new Entry[MAX_BATCH];
+		
+		while(true){
+			
+			int count = drain(batch);
+			
+			if(count == 0){
+				
+				if(isClosed && head == tail.get())
+					break;
+				
+				isWriterParked = true;
+				
+				// Checked again after raising the flag to not miss an unpark
+				if(!hasPublished() && !isClosed)
+					LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+				
+				isWriterParked = false;
+				
+				rollOverIfNeeded();
+				
+				continue;
+				
+			}
+			
+			try{
+				writeBatch(batch, count);
+			}
+			catch(IOException e){
+				
+				// The entries that could not be written are lost : they are
+				// counted and the next batch retries from an empty buffer
+				Arrays.fill(batch, 0, count, null);
+				buffer.clear();
+				
+				dropped.add(count);
+				
+				if(!isFileFailing){
+					isFileFailing = true;
+					Logger.log(e);
+				}
+				
+			}
+			
+			flushed = head;
+			
+		}
+		
+		if(channel != null && channel.isOpen()){
+			try{
+				channel.close();
+			}
+			catch(IOException e){
+				Logger.log(e);
+			}
+		}
+		
+	}
+	
+	private boolean hasPublished(){
+		return sequences.get((int)(head & mask)) == head + 1;
+	}
+	
+	private int drain(Entry[] batch){
+		
+		int count = 0;
+		
+		while(count < batch.length && hasPublished()){
+			
+			int index = (int)(head & mask);
+			
+			batch[count++] = slots.get(index);
+			
+			slots.set(index, null);
+			sequences.lazySet(index, head + mask + 1);
+			
+			head++;
+			
+		}
+		
+		return count;
+		
+	}
+	
+	private void writeBatch(Entry[] batch, int count) throws IOException{
+		
+		long start = System.nanoTime();
+		
+		// Retries to open the file if it could not be after a roll over
+		if(channel == null || !channel.isOpen())
+			openFile();
+		
+		for(int i = 0; i < count; i++){
+			
+			Entry entry = batch[i];
+			batch[i] = null;
+			
+			String line = "["
+					+ ENTRY_FORMAT.format(LocalDateTime.ofInstant(
+							Instant.ofEpochMilli(entry.timestamp),
+							ZoneId.systemDefault())) + "] " + entry.message
+					+ System.lineSeparator();
+			
+			byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+			
+			if(bytes.length > buffer.remaining())
+				flushBuffer();
+			
+			if(bytes.length > buffer.capacity())
+				buffer = ByteBuffer.allocateDirect(bytes.length);
+			
+			buffer.put(bytes);
+			
+			long latency = start - entry.publishedNanos;
+			
+			entriesLatencyNanos.add(latency);
+			maxEntryLatencyNanos.accumulateAndGet(latency, Math::max);
+			
+		}
+		
+		flushBuffer();
+		
+		channel.force(false);
+		
+		long duration = System.nanoTime() - start;
+		
+		written.add(count);
+		batches.increment();
+		batchNanos.add(duration);
+		maxBatchNanos.accumulateAndGet(duration, Math::max);
+		
+		if(isFileFailing){
+			isFileFailing = false;
+			Logger.log("The audit log is written again.", LogType.WARNING);
+		}
+		
+		rollOverIfNeeded();
+		
+	}
+	
+	private void flushBuffer() throws IOException{
+		
+		buffer.flip();
+		
+		while(buffer.hasRemaining())
+			fileSize += channel.write(buffer);
+		
+		buffer.clear();
+		
+	}
+	
+	private void openFile() throws IOException{
+		
+		File parent = file.getAbsoluteFile().getParentFile();
+		
+		if(parent != null)
+			parent.mkdirs();
+		
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		
+		fileSize = channel.size();
+		fileOpenedAt = System.currentTimeMillis();
+		
+		// A file kept from a previous run is as old as its first entry
+		if(fileSize > 0){
+			
+			BasicFileAttributes attributes = Files.readAttributes(
+					file.toPath(), BasicFileAttributes.class);
+			
+			long created = attributes.creationTime().toMillis();
+			long modified = attributes.lastModifiedTime().toMillis();
+			
+			// Not every file system knows the creation time
+			if(created > 0)
+				fileOpenedAt = Math.min(fileOpenedAt, created);
+			
+			if(modified > 0)
+				fileOpenedAt = Math.min(fileOpenedAt, modified);
+			
+		}
+		
+	}
+	
+	private void rollOverIfNeeded(){
+		
+		// Waits for the next batch to retry opening the file
+		if(channel == null || !channel.isOpen())
+			return;
+		
+		if(fileSize == 0
+				|| (fileSize < maxFileSize && System.currentTimeMillis()
+						- fileOpenedAt < rotationMillis))
+			return;
+		
+		try{
+			
+			channel.close();
+			
+			String name = file.getName();
+			int extensionIndex = name.lastIndexOf('.');
+			
+			String baseName = extensionIndex == -1 ? name : name.substring(0,
+					extensionIndex);
+			String extension = extensionIndex == -1 ? "" : name
+					.substring(extensionIndex);
+			
+			File directory = file.getAbsoluteFile().getParentFile();
+			String rolledName = baseName + "-"
+					+ ROLL_FORMAT.format(LocalDateTime.now());
+			
+			File rolled = new File(directory, rolledName + extension);
+			
+			// Files rolled in the same second are numbered
+			for(int i = 1; rolled.exists()
+					|| new File(rolled.getPath() + ".gz").exists(); i++)
+				rolled = new File(directory, rolledName + "-" + i + extension);
+			
+			Files.move(file.toPath(), rolled.toPath());
+			
+			final File toCompress = rolled;
+			
+			rotations.increment();
+			
+			compressor.execute(() -> compress(toCompress));
+			
+		}
+		catch(IOException e){
+			Logger.log(e);
+		}
+		finally{
+			try{
+				openFile();
+			}
+			catch(IOException e){
+				
+				channel = null;
+				
+				isFileFailing = true;
+				Logger.log(e);
+				
+			}
+		}
+		
+	}
+	
+	private static void compress(File rolled){
+		
+		File compressed = new File(rolled.getPath() + ".gz");
+		
+		try(InputStream input = new FileInputStream(rolled);
+				OutputStream output = new GZIPOutputStream(
+						new FileOutputStream(compressed))){
+			
+			byte[] bytes = new byte[8192];
+			int read;
+			
+			while((read = input.read(bytes)) != -1)
+				output.write(bytes, 0, read);
+			
+		}
+		catch(IOException e){
+			Logger.log(e);
+			return;
+		}
+		
+		if(!rolled.delete())
+			Logger.log("Could not delete the rolled audit file "
+					+ rolled.getName() + " after compressing it.",
+					LogType.WARNING);
+		
+	}
+	
+}
@@ -0,0 +1,18 @@
+package io.github.vhoyon.bot.utilities.interfaces;
+
+/**
+ * Marker interface of the commands whose action can block for a long time,
+ * such as by waiting on a web service or on Discord's REST API.
+ * <p>
+ * The {@link io.github.vhoyon.bot.app.CommandRouter CommandRouter} runs the
+ * action of these commands on the pool of threads for blocking actions of the
+ * {@link io.github.vhoyon.bot.app.RouterDispatcher RouterDispatcher} instead
+ * of the lane of their guild, so that they do not delay the commands of the
+ * other guilds pinned to the same lane.
+ * </p>
+ *
+ * @version 1.0
+ * @since v0.12.0
+ * @author V-ed (Guillaume Marcoux)
+ */
+public interface BlockingCommand {}
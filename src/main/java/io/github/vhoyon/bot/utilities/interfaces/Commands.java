@@ -32,6 +32,10 @@ public interface Commands {
 	String MUSIC_PAUSE = "pause";
 	String MUSIC_REPLAY = "replay";
 	String MUSIC_SKIP = "skip";
+	String MUSIC_JUMP = "jump";
+	String MUSIC_REMOVE = "remove";
+	String MUSIC_MOVE = "move";
+	String MUSIC_SHUFFLE = "shuffle";
 	String MUSIC_LOOP = "loop";
 	String MUSIC_VOLUME = "volume";
 	String MUSIC_LIST = "list";
@@ -0,0 +1,283 @@
+package io.github.vhoyon.bot.utilities.metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registry of the {@link LatencyHistogram} of each command, split by the
+ * {@link Stage} of the routing of a command.
+ * <p>
+ * The histograms can be printed as a report (see {@link #getReport()}) or
+ * exported as a CSV snapshot (see {@link #exportSnapshot(File)}), which lists
+ * the p50, p99 and p999 of every command and stage so that they can be
+ * compared between releases.
+ * </p>
+ *
+ * @version 1.0
+ * @since v0.12.0
+ * @author V-ed (Guillaume Marcoux)
+ */
+public class CommandLatencies {
+	
+	/**
+	 * The stages of the routing of a command that are timed.
+	 *
+	 * @since v0.12.0
+	 */
+	public enum Stage {
+		/**
+		 * Parsing of the message into a request and linking of its
+		 * parameters.
+		 */
+		PARSE("parse"),
+		/**
+		 * Handling of the pending confirmations and of the request's errors.
+		 */
+		VALIDATION("validation"),
+		/**
+		 * Check that the same command is not already running.
+		 */
+		RUNNING_CHECK("running_check"),
+		/**
+		 * The action of the command itself.
+		 */
+		ACTION("action");
+		
+		private final String label;
+		
+		Stage(String label){
+			this.label = label;
+		}
+		
+		/**
+		 * @return The name of this stage used in the reports.
+		 * @since v0.12.0
+		 */
+		public String getLabel(){
+			return this.label;
+		}
+	}
+	
+	private static final DateTimeFormatter SNAPSHOT_FORMAT = DateTimeFormatter
+			.ofPattern("yyyyMMdd-HHmmss");
+	
+	private static final class Holder {
+		private static final CommandLatencies INSTANCE = new CommandLatencies();
+	}
+	
+	private final ConcurrentHashMap<String, LatencyHistogram[]> histograms = new ConcurrentHashMap<>();
+	
+	/**
+	 * Gets the CommandLatencies of the whole bot.
+	 *
+	 * @return The only instance of the CommandLatencies.
+	 * @since v0.12.0
+	 */
+	public static CommandLatencies get(){
+		return Holder.INSTANCE;
+	}
+	
+	/**
+	 * Records the duration of a stage of a command.
+	 *
+	 * @param commandName
+	 *            The name of the command.
+	 * @param stage
+	 *            The stage that was timed.
+	 * @param nanos
+	 *            The duration of the stage, in nanoseconds.
+	 * @since v0.12.0
+	 */
+	public void record(String commandName, Stage stage, long nanos){
+		getHistograms(commandName)[stage.ordinal()].record(nanos);
+	}
+	
+	/**
+	 * @param commandName
+	 *            The name of the command.
+	 * @param stage
+	 *            The stage of the command.
+	 * @return The histogram of this stage of the command, or {@code null} if
+	 *         the command never ran.
+	 * @since v0.12.0
+	 */
+	public LatencyHistogram getHistogram(String commandName, Stage stage){
+		
+		LatencyHistogram[] commandHistograms = histograms.get(commandName);
+		
+		return commandHistograms == null ? null
+				: commandHistograms[stage.ordinal()];
+		
+	}
+	
+	/**
+	 * @return The names of the commands that have recorded latencies, in
+	 *         alphabetical order.
+	 * @since v0.12.0
+	 */
+	public List<String> getCommandNames(){
+		
+		List<String> names = new ArrayList<>(histograms.keySet());
+		
+		Collections.sort(names);
+		
+		return names;
+		
+	}
+	
+	/**
+	 * Forgets the latencies of every command.
+	 *
+	 * @since v0.12.0
+	 */
+	public void reset(){
+		histograms.clear();
+	}
+	
+	/**
+	 * Builds a human readable table of the latencies of every command, with
+	 * the values in microseconds.
+	 *
+	 * @return The report of the latencies.
+	 * @since v0.12.0
+	 */
+	public String getReport(){
+		
+		Map<String, LatencyHistogram[]> commandsHistograms = getSortedHistograms();
+		
+		if(commandsHistograms.isEmpty())
+			return "No command latency recorded yet.";
+		
+		StringBuilder builder = new StringBuilder();
+		
+		builder.append(String.format("%-16s %-14s %8s %10s %10s %10s %10s %10s",
+				"command", "stage", "count", "mean(us)", "p50(us)",
+				"p99(us)", "p999(us)", "max(us)"));
+		
+		for(Map.Entry<String, LatencyHistogram[]> entry : commandsHistograms
+				.entrySet()){
+			for(Stage stage : Stage.values()){
+				
+				LatencyHistogram.Snapshot snapshot = entry.getValue()[stage
+						.ordinal()].getSnapshot();
+				
+				if(snapshot.getCount() == 0)
+					continue;
+				
+				builder.append(String.format(
+						"%n%-16s %-14s %8d %10d %10d %10d %10d %10d",
+						entry.getKey(),
+						stage.getLabel(), snapshot.getCount(),
+						toMicros(snapshot.getMean()),
+						toMicros(snapshot.getValueAtPercentile(50)),
+						toMicros(snapshot.getValueAtPercentile(99)),
+						toMicros(snapshot.getValueAtPercentile(99.9)),
+						toMicros(snapshot.getMax())));
+				
+			}
+		}
+		
+		return builder.toString();
+		
+	}
+	
+	/**
+	 * Exports a snapshot of the latencies of every command as a CSV file named
+	 * after the current time, with the values in microseconds.
+	 *
+	 * @param directory
+	 *            The directory to create the snapshot in.
+	 * @return The file of the snapshot.
+	 * @throws IOException
+	 *             If the file cannot be written.
+	 * @since v0.12.0
+	 */
+	public File exportSnapshot(File directory) throws IOException{
+		
+		if(!directory.exists() && !directory.mkdirs())
+			throw new IOException("Could not create the directory "
+					+ directory.getPath() + "!");
+		
+		File file = new File(directory, "latencies-"
+				+ SNAPSHOT_FORMAT.format(LocalDateTime.now()) + ".csv");
+		
+		String version = CommandLatencies.class.getPackage()
+				.getImplementationVersion();
+		
+		try(PrintWriter writer = new PrintWriter(file,
+				StandardCharsets.UTF_8.name())){
+			
+			writer.println("# version="
+					+ (version == null ? "unknown" : version));
+			writer.println("# time=" + LocalDateTime.now());
+			writer.println("command,stage,count,mean_us,p50_us,p99_us,p999_us,max_us");
+			
+			for(Map.Entry<String, LatencyHistogram[]> entry : getSortedHistograms()
+					.entrySet()){
+				for(Stage stage : Stage.values()){
+					
+					LatencyHistogram.Snapshot snapshot = entry.getValue()[stage
+							.ordinal()].getSnapshot();
+					
+					writer.println(entry.getKey() + "," + stage.getLabel() + ","
+							+ snapshot.getCount() + ","
+							+ toMicros(snapshot.getMean()) + ","
+							+ toMicros(snapshot.getValueAtPercentile(50)) + ","
+							+ toMicros(snapshot.getValueAtPercentile(99)) + ","
+							+ toMicros(snapshot.getValueAtPercentile(99.9))
+							+ "," + toMicros(snapshot.getMax()));
+					
+				}
+			}
+			
+		}
+		
+		return file;
+		
+	}
+	
+	// Copied once so that a concurrent reset() cannot remove a command while
+	// it is being reported
+	private Map<String, LatencyHistogram[]> getSortedHistograms(){
+		return new TreeMap<>(histograms);
+	}
+	
+	private LatencyHistogram[] getHistograms(String commandName){
+		
+		LatencyHistogram[] commandHistograms = histograms.get(commandName);
+		
+		if(commandHistograms == null){
+			
+			commandHistograms = new LatencyHistogram[Stage.values().length];
+			
+			for(int i = 0; i < commandHistograms.length; i++)
+				commandHistograms[i] = new LatencyHistogram();
+			
+			LatencyHistogram[] existing = histograms.putIfAbsent(commandName,
+					commandHistograms);
+			
+			if(existing != null)
+				commandHistograms = existing;
+			
+		}
+		
+		return commandHistograms;
+		
+	}
+	
+	private static long toMicros(long nanos){
+		return TimeUnit.NANOSECONDS.toMicros(nanos);
+	}
+	
+}
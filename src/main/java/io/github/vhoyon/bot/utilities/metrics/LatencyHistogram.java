@@ -0,0 +1,222 @@
+package io.github.vhoyon.bot.utilities.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent histogram of durations (in nanoseconds) using log-linear
+ * buckets, similar to an HDR histogram : each power of two is split in
+ * {@value #SUB_BUCKETS} buckets, which keeps the error of the percentiles
+ * under about 3% while using a fixed amount of memory.
+ * <p>
+ * Recording a value never allocates nor locks, so it can be used on the
+ * commands' hot path. Durations of 2<sup>37</sup> nanoseconds (about 137
+ * seconds) or more are all counted in the last bucket.
+ * </p>
+ *
+ * @version 1.0
+ * @since v0.12.0
+ * @author V-ed (Guillaume Marcoux)
+ */
+public class LatencyHistogram {
+	
+	public static final int SUB_BUCKETS = 32;
+	
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int MAX_EXPONENT = 36;
+	private static final int BUCKETS_COUNT = ((MAX_EXPONENT
+			- SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) + SUB_BUCKETS;
+	
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS_COUNT);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+	
+	/**
+	 * Immutable copy of the values of a histogram at a given time.
+	 *
+	 * @since v0.12.0
+	 */
+	public static final class Snapshot {
+		
+		private final long[] counts;
+		private final long count;
+		private final long sum;
+		private final long max;
+		
+		private Snapshot(long[] counts, long count, long sum, long max){
+			this.counts = counts;
+			this.count = count;
+			this.sum = sum;
+			this.max = max;
+		}
+		
+		/**
+		 * @return The amount of values recorded.
+		 * @since v0.12.0
+		 */
+		public long getCount(){
+			return count;
+		}
+		
+		/**
+		 * @return The sum of the values recorded, in nanoseconds.
+		 * @since v0.12.0
+		 */
+		public long getSum(){
+			return sum;
+		}
+		
+		/**
+		 * @return The mean of the values recorded, in nanoseconds.
+		 * @since v0.12.0
+		 */
+		public long getMean(){
+			return count == 0 ? 0 : sum / count;
+		}
+		
+		/**
+		 * @return The highest value recorded, in nanoseconds.
+		 * @since v0.12.0
+		 */
+		public long getMax(){
+			return max;
+		}
+		
+		/**
+		 * Gets the value under which {@code percentile} percent of the values
+		 * recorded are.
+		 *
+		 * @param percentile
+		 *            The percentile to get, between {@code 0} and {@code 100}
+		 *            (such as {@code 99.9}).
+		 * @return The value at this percentile, in nanoseconds, or {@code 0}
+		 *         if nothing was recorded.
+		 * @since v0.12.0
+		 */
+		public long getValueAtPercentile(double percentile){
+			
+			long total = 0;
+			
+			for(long bucketCount : counts)
+				total += bucketCount;
+			
+			if(total == 0)
+				return 0;
+			
+			long target = Math.max(1,
+					(long)Math.ceil(percentile / 100.0 * total));
+			
+			long seen = 0;
+			
+			for(int i = 0; i < counts.length; i++){
+				
+				seen += counts[i];
+				
+				if(seen >= target)
+					return Math.min(max, getHighestValue(i));
+				
+			}
+			
+			return max;
+			
+		}
+		
+	}
+	
+	/**
+	 * Records a duration.
+	 *
+	 * @param nanos
+	 *            The duration, in nanoseconds. Negative values are recorded
+	 *            as {@code 0}.
+	 * @since v0.12.0
+	 */
+	public void record(long nanos){
+		
+		long value = Math.max(0, nanos);
+		
+		counts.incrementAndGet(getIndex(value));
+		count.increment();
+		sum.add(value);
+		
+		long currentMax = max.get();
+		
+		while(value > currentMax && !max.compareAndSet(currentMax, value))
+			currentMax = max.get();
+		
+	}
+	
+	/**
+	 * @return The amount of values recorded.
+	 * @since v0.12.0
+	 */
+	public long getCount(){
+		return count.sum();
+	}
+	
+	/**
+	 * Copies the current values of this histogram. Values recorded while the
+	 * snapshot is taken may or may not be part of it.
+	 *
+	 * @return A snapshot of this histogram.
+	 * @since v0.12.0
+	 */
+	public Snapshot getSnapshot(){
+		
+		long[] copy = new long[BUCKETS_COUNT];
+		
+		for(int i = 0; i < BUCKETS_COUNT; i++)
+			copy[i] = counts.get(i);
+		
+		return new Snapshot(copy, count.sum(), sum.sum(), max.get());
+		
+	}
+	
+	/**
+	 * Forgets every value recorded.
+	 *
+	 * @since v0.12.0
+	 */
+	public void reset(){
+		
+		for(int i = 0; i < BUCKETS_COUNT; i++)
+			counts.set(i, 0);
+		
+		count.reset();
+		sum.reset();
+		max.set(0);
+		
+	}
+	
+	static int getIndex(long value){
+		
+		if(value < SUB_BUCKETS)
+			return (int)value;
+		
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		
+		if(exponent > MAX_EXPONENT)
+			return BUCKETS_COUNT - 1;
+		
+		int shift = exponent - SUB_BUCKET_BITS;
+		
+		return ((shift + 1) << SUB_BUCKET_BITS)
+				+ (int)((value >>> shift) - SUB_BUCKETS);
+		
+	}
+	
+	static long getHighestValue(int index){
+		
+		if(index < SUB_BUCKETS)
+			return index;
+		
+		int shift = (index >>> SUB_BUCKET_BITS) - 1;
+		long subBucket = SUB_BUCKETS + (index & (SUB_BUCKETS - 1));
+		
+		return ((subBucket + 1) << shift) - 1;
+		
+	}
+	
+}
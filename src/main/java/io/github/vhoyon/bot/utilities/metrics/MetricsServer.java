@@ -0,0 +1,401 @@
+package io.github.vhoyon.bot.utilities.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.github.vhoyon.bot.app.CommandRouter;
+import io.github.vhoyon.bot.app.MessageGate;
+import io.github.vhoyon.bot.app.RouterDispatcher;
+import io.github.vhoyon.bot.utilities.audit.AuditWriter;
+import io.github.vhoyon.bot.utilities.music.AudioHandler;
+import io.github.vhoyon.bot.utilities.music.MusicManager;
+import io.github.vhoyon.bot.utilities.music.PlayerReaper;
+import io.github.vhoyon.bot.utilities.music.TrackCache;
+import io.github.vhoyon.bot.utilities.settings.ChannelSettings;
+import io.github.vhoyon.bot.utilities.specifics.ConfirmationRegistry;
+import io.github.vhoyon.bot.utilities.specifics.EnvironmentConfig;
+import io.github.vhoyon.vramework.modules.Environment;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+/**
+ * Small embedded HTTP server that exposes the metrics of the bot in the
+ * Prometheus text format on {@code /metrics}.
+ * <p>
+ * The server only listens on the address given by the {@code METRICS_HOST}
+ * environment variable ({@code 127.0.0.1} by default) and the port given by
+ * {@code METRICS_PORT} ({@value #DEFAULT_PORT} by default). Scrapes are
+ * answered by a single low priority thread and only read counters that are
+ * already maintained by the bot, so scraping every few seconds does not slow
+ * down the routers nor the audio send loop.
+ * </p>
+ *
+ * @version 1.0
+ * @since v0.12.0
+ * @author V-ed (Guillaume Marcoux)
+ */
+public class MetricsServer {
+	
+	public static final int DEFAULT_PORT = 9464;
+	public static final String DEFAULT_HOST = "127.0.0.1";
+	
+	private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+	
+	private static final double[] QUANTILES = {50, 99, 99.9};
+	
+	private static MetricsServer metricsServer;
+	
+	private final HttpServer server;
+	
+	/**
+	 * Creates and starts a metrics server listening on the {@code host} and
+	 * {@code port} given.
+	 *
+	 * @param host
+	 *            The address to listen on.
+	 * @param port
+	 *            The port to listen on.
+	 * @throws IOException
+	 *             If the server cannot listen on this address.
+	 * @since v0.12.0
+	 */
+	public MetricsServer(String host, int port) throws IOException{
+		
+		this.server = HttpServer.create(new InetSocketAddress(host, port), 0);
+		
+		this.server.createContext("/metrics", this::handle);
+		
+		this.server.setExecutor(Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "metrics-server");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		}));
+		
+		this.server.start();
+		
+	}
+	
+	/**
+	 * Starts the MetricsServer of the whole bot, configured using the
+	 * {@code METRICS_HOST} and {@code METRICS_PORT} environment variables.
+	 *
+	 * @return The server started.
+	 * @throws IOException
+	 *             If the server cannot listen on the configured address.
+	 * @since v0.12.0
+	 */
+	public static synchronized MetricsServer start() throws IOException{
+		
+		if(metricsServer == null){
+			
+			String host = Environment.getVar("METRICS_HOST", DEFAULT_HOST);
+			int port = EnvironmentConfig.getInt("METRICS_PORT", DEFAULT_PORT);
+			
+			metricsServer = new MetricsServer(host, port);
+			
+		}
+		
+		return metricsServer;
+		
+	}
+	
+	/**
+	 * @return The MetricsServer of the whole bot, or {@code null} if it was
+	 *         not started.
+	 * @since v0.12.0
+	 */
+	public static synchronized MetricsServer get(){
+		return metricsServer;
+	}
+	
+	/**
+	 * @return The port this server listens on.
+	 * @since v0.12.0
+	 */
+	public int getPort(){
+		return server.getAddress().getPort();
+	}
+	
+	/**
+	 * Stops this server immediately.
+	 *
+	 * @since v0.12.0
+	 */
+	public void stop(){
+		server.stop(0);
+	}
+	
+	/**
+	 * Builds the text of the metrics of the bot, as served on
+	 * {@code /metrics}.
+	 *
+	 * @return The metrics in the Prometheus text format.
+	 * @since v0.12.0
+	 */
+	public String buildMetrics(){
+		
+		StringBuilder builder = new StringBuilder(4096);
+		
+		MessageGate gate = MessageGate.get();
+		
+		appendMetric(builder, "vhoyon_messages_forwarded_total", "counter",
+				"Messages forwarded to a router.", gate.getForwardedCount());
+		appendMetric(builder, "vhoyon_messages_dropped_total", "counter",
+				"Messages dropped before creating a router.",
+				gate.getDroppedCount());
+		
+		RouterDispatcher dispatcher = RouterDispatcher.get();
+		
+		appendMetric(builder, "vhoyon_routers_dispatched_total", "counter",
+				"Routers accepted by the dispatcher.",
+				dispatcher.getDispatchedCount());
+		appendMetric(builder, "vhoyon_routers_rejected_total", "counter",
+				"Routers dropped because their lane was full.",
+				dispatcher.getRejectedCount());
+		appendMetric(builder, "vhoyon_routers_completed_total", "counter",
+				"Routers fully run by the lanes.",
+				dispatcher.getCompletedCount());
+		appendMetric(builder, "vhoyon_routers_queued", "gauge",
+				"Routers waiting in the lanes and blocking actions waiting "
+						+ "for a thread.", dispatcher.getQueueDepth());
+		
+		appendMetric(builder, "vhoyon_active_commands", "gauge",
+				"Commands currently running their action.",
+				CommandRouter.getActiveCommandsCount());
+		
+		appendLatencies(builder);
+		
+		ChannelSettings channelSettings = ChannelSettings.get();
+		
+		appendMetric(builder, "vhoyon_channel_settings_overriding", "gauge",
+				"Channels that override at least one setting.",
+				channelSettings.getOverridingChannelsCount());
+		appendMetric(builder, "vhoyon_channel_settings_seen", "gauge",
+				"Estimated channels that used their settings.",
+				channelSettings.getEstimatedSeenChannelsCount());
+		
+		// Zeros until a confirmation was asked, to not start the registry
+		ConfirmationRegistry confirmations = ConfirmationRegistry.isCreated()
+				? ConfirmationRegistry.get() : null;
+		
+		appendMetric(builder, "vhoyon_confirmations_pending", "gauge",
+				"Confirmations waiting for an answer.",
+				confirmations == null ? 0 : confirmations.getPendingCount());
+		appendMetric(builder, "vhoyon_confirmations_expired_total", "counter",
+				"Confirmations cancelled because nobody answered them.",
+				confirmations == null ? 0 : confirmations.getExpiredCount());
+		
+		// Zeros until music was played, to not create the MusicManager
+		MusicManager musicManager = MusicManager.isCreated() ? MusicManager
+				.get() : null;
+		
+		appendMetric(builder, "vhoyon_music_players", "gauge",
+				"Guilds that have a music player.", musicManager == null ? 0
+						: musicManager.getPlayersCount());
+		appendMetric(builder, "vhoyon_music_queued_tracks", "gauge",
+				"Tracks waiting in the queues of all the players.",
+				musicManager == null ? 0 : musicManager
+						.getQueuedTracksCount());
+		appendSilences(builder, musicManager);
+		
+		PlayerReaper playerReaper = PlayerReaper.get();
+		
+		if(playerReaper != null){
+			
+			appendReaped(builder, playerReaper);
+			appendMetric(builder, "vhoyon_music_reclaimed_tracks_total",
+					"counter", "Queued tracks dropped with the players closed.",
+					playerReaper.getReclaimedTracksCount());
+			
+		}
+		
+		TrackCache trackCache = musicManager == null ? null : musicManager
+				.getTrackCache();
+		
+		appendMetric(builder, "vhoyon_track_cache_hits_total", "counter",
+				"Sources played again without being resolved.",
+				trackCache == null ? 0 : trackCache.getHitsCount());
+		appendMetric(builder, "vhoyon_track_cache_misses_total", "counter",
+				"Sources that had to be resolved.",
+				trackCache == null ? 0 : trackCache.getMissesCount());
+		appendMetric(builder, "vhoyon_track_cache_size", "gauge",
+				"Resolved sources kept in the cache.",
+				trackCache == null ? 0 : trackCache.size());
+		
+		appendMetric(builder, "vhoyon_audio_frames_total", "counter",
+				"Audio frames sent to Discord.",
+				AudioHandler.getProvidedFramesCount());
+		appendMetric(builder, "vhoyon_audio_underruns_total", "counter",
+				"Times a playing track had no audio frame ready.",
+				AudioHandler.getUnderrunsCount());
+		
+		AuditWriter auditWriter = AuditWriter.get();
+		
+		if(auditWriter != null){
+			
+			appendMetric(builder, "vhoyon_audit_pending", "gauge",
+					"Audit entries waiting to be written.",
+					auditWriter.getPendingCount());
+			appendMetric(builder, "vhoyon_audit_written_total", "counter",
+					"Audit entries written to the disk.",
+					auditWriter.getWrittenCount());
+			appendMetric(builder, "vhoyon_audit_dropped_total", "counter",
+					"Audit entries dropped.", auditWriter.getDroppedCount());
+			
+		}
+		
+		return builder.toString();
+		
+	}
+	
+	private void handle(HttpExchange exchange) throws IOException{
+		
+		try{
+			
+			if(!"GET".equals(exchange.getRequestMethod())){
+				exchange.sendResponseHeaders(405, -1);
+				return;
+			}
+			
+			byte[] body = buildMetrics().getBytes(StandardCharsets.UTF_8);
+			
+			exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+			exchange.sendResponseHeaders(200, body.length);
+			
+			try(OutputStream output = exchange.getResponseBody()){
+				output.write(body);
+			}
+			
+		}
+		finally{
+			exchange.close();
+		}
+		
+	}
+	
+	private static void appendLatencies(StringBuilder builder){
+		
+		String name = "vhoyon_command_latency_seconds";
+		
+		builder.append("# HELP ").append(name)
+				.append(" Latency of each stage of the commands.\n");
+		builder.append("# TYPE ").append(name).append(" summary\n");
+		
+		CommandLatencies latencies = CommandLatencies.get();
+		
+		for(String command : latencies.getCommandNames()){
+			for(CommandLatencies.Stage stage : CommandLatencies.Stage.values()){
+				
+				LatencyHistogram histogram = latencies.getHistogram(command,
+						stage);
+				
+				if(histogram == null || histogram.getCount() == 0)
+					continue;
+				
+				LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+				
+				String labels = "command=\"" + escape(command)
+						+ "\",stage=\"" + stage.getLabel() + "\"";
+				
+				for(double quantile : QUANTILES){
+					builder.append(name).append('{').append(labels)
+							.append(",quantile=\"").append(quantile / 100)
+							.append("\"} ")
+							.append(toSeconds(snapshot
+									.getValueAtPercentile(quantile)))
+							.append('\n');
+				}
+				
+				builder.append(name).append("_sum{").append(labels)
+						.append("} ").append(toSeconds(snapshot.getSum()))
+						.append('\n');
+				builder.append(name).append("_count{").append(labels)
+						.append("} ").append(snapshot.getCount()).append('\n');
+				
+			}
+		}
+		
+	}
+	
+	private static void appendSilences(StringBuilder builder,
+			MusicManager musicManager){
+		
+		String name = "vhoyon_music_track_gap_seconds";
+		String lastName = "vhoyon_music_last_track_gap_seconds";
+		
+		StringBuilder lastGaps = new StringBuilder();
+		
+		builder.append("# HELP ").append(name)
+				.append(" Silence between two tracks of each guild.\n");
+		builder.append("# TYPE ").append(name).append(" summary\n");
+		
+		if(musicManager != null){
+			musicManager.forEachPlayer((guildId, player) -> {
+				
+				if(player.getSilencesCount() == 0)
+					return;
+				
+				String labels = "{guild=\"" + guildId + "\"} ";
+				
+				builder.append(name).append("_sum").append(labels)
+						.append(toSeconds(player.getSilencesNanos()))
+						.append('\n');
+				builder.append(name).append("_count").append(labels)
+						.append(player.getSilencesCount()).append('\n');
+				
+				lastGaps.append(lastName).append(labels)
+						.append(toSeconds(player.getLastSilenceNanos()))
+						.append('\n');
+				
+			});
+		}
+		
+		builder.append("# HELP ").append(lastName)
+				.append(" Silence between the last two tracks of each guild.\n");
+		builder.append("# TYPE ").append(lastName).append(" gauge\n");
+		builder.append(lastGaps);
+		
+	}
+	
+	private static void appendReaped(StringBuilder builder,
+			PlayerReaper playerReaper){
+		
+		String name = "vhoyon_music_players_reaped_total";
+		
+		builder.append("# HELP ").append(name)
+				.append(" Music players closed because nobody listened.\n");
+		builder.append("# TYPE ").append(name).append(" counter\n");
+		
+		for(PlayerReaper.Reason reason : PlayerReaper.Reason.values()){
+			builder.append(name).append("{reason=\"")
+					.append(reason.name().toLowerCase()).append("\"} ")
+					.append(playerReaper.getReapedCount(reason)).append('\n');
+		}
+		
+	}
+	
+	private static void appendMetric(StringBuilder builder, String name,
+			String type, String help, long value){
+		
+		builder.append("# HELP ").append(name).append(' ').append(help)
+				.append('\n');
+		builder.append("# TYPE ").append(name).append(' ').append(type)
+				.append('\n');
+		builder.append(name).append(' ').append(value).append('\n');
+		
+	}
+	
+	private static double toSeconds(long nanos){
+		return nanos / 1_000_000_000.0;
+	}
+	
+	private static String escape(String labelValue){
+		return labelValue.replace("\\", "\\\\").replace("\"", "\\\"")
+				.replace("\n", "\\n");
+	}
+	
+}
@@ -1,12 +1,35 @@
 package io.github.vhoyon.bot.utilities.music;
 
+import com.sedmelluq.discord.lavaplayer.format.StandardAudioDataFormats;
 import com.sedmelluq.discord.lavaplayer.player.AudioPlayer;
-import com.sedmelluq.discord.lavaplayer.track.playback.AudioFrame;
+import com.sedmelluq.discord.lavaplayer.track.playback.AudioFrameProvider;
+import com.sedmelluq.discord.lavaplayer.track.playback.MutableAudioFrame;
 
 import net.dv8tion.jda.core.audio.AudioSendHandler;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
 /**
  * Handles individual tracks codec parameters.
+ * <p>
+ * The player copies each frame in a {@link MutableAudioFrame} backed by a
+ * buffer that this handler allocates once. JDA 3.5 however needs an array of
+ * the exact length of the Opus packet, so the frame is then copied in an
+ * array kept for that length, which this handler allocates the first time it
+ * sends a packet of that length.
+ * </p>
+ * <p>
+ * The arrays kept are bounded : they are all dropped when the track changes
+ * or when they would use more than {@value #MAX_KEPT_BYTES} bytes, so that a
+ * handler never keeps much more than 100 KiB. The send path therefore still
+ * allocates in steady state : a variable bitrate stream sends a few hundred
+ * different lengths, which can use more than the bound, and every track
+ * allocates its arrays again. This residual allocation comes from the
+ * exact-length {@code byte[]} of JDA and is the price of the bound.
+ * </p>
  * 
  * @version 1.0
  * @since v0.4.0
@@ -14,26 +37,97 @@ import net.dv8tion.jda.core.audio.AudioSendHandler;
  */
 public class AudioHandler implements AudioSendHandler {
 	
-	private final AudioPlayer audioPlayer;
-	private AudioFrame lastFrame;
+	private static final int MAXIMUM_PACKET_LENGTH = StandardAudioDataFormats.DISCORD_OPUS
+			.maximumChunkSize();
+	
+	/**
+	 * The maximum amount of bytes used by the arrays kept for the packets.
+	 * 
+	 * @since v0.12.0
+	 */
+	public static final int MAX_KEPT_BYTES = 96 * 1024;
+	
+	private static final LongAdder providedFrames = new LongAdder();
+	private static final LongAdder underruns = new LongAdder();
+	
+	private final AudioFrameProvider frameProvider;
+	private final BooleanSupplier isPlaying;
+	
+	private final MutableAudioFrame frame = new MutableAudioFrame();
+	private final byte[][] packets = new byte[MAXIMUM_PACKET_LENGTH + 1][];
+	private int keptBytes;
+	private boolean hasFrame;
+	private volatile boolean isTrackChanged;
 	
 	public AudioHandler(AudioPlayer audioPlayer){
-		this.audioPlayer = audioPlayer;
+		this(audioPlayer, () -> audioPlayer.getPlayingTrack() != null
+				&& !audioPlayer.isPaused());
+	}
+	
+	/**
+	 * Creates a handler that sends the frames of {@code frameProvider}.
+	 *
+	 * @param frameProvider
+	 *            The provider of the frames to send.
+	 * @param isPlaying
+	 *            Tells if a track is playing, in which case a missing frame is
+	 *            counted as an underrun.
+	 * @since v0.12.0
+	 */
+	AudioHandler(AudioFrameProvider frameProvider, BooleanSupplier isPlaying){
+		this.frameProvider = frameProvider;
+		this.isPlaying = isPlaying;
+		
+		this.frame.setBuffer(ByteBuffer.allocate(MAXIMUM_PACKET_LENGTH));
 	}
 	
 	@Override
 	public boolean canProvide(){
-		if(lastFrame == null)
-			lastFrame = audioPlayer.provide();
-		return lastFrame != null;
+		if(!hasFrame){
+			
+			hasFrame = frameProvider.provide(frame);
+			
+			if(!hasFrame && isPlaying.getAsBoolean())
+				underruns.increment();
+			
+		}
+		return hasFrame;
 	}
 	
 	@Override
 	public byte[] provide20MsAudio(){
-		byte[] data = canProvide() ? lastFrame.data : null;
-		lastFrame = null;
+		if(!canProvide())
+			return null;
+		
+		hasFrame = false;
+		
+		// Cleared by the sending thread, the only one using the arrays
+		if(isTrackChanged){
+			isTrackChanged = false;
+			clearPackets();
+		}
+		
+		int length = frame.getDataLength();
+		
+		byte[] packet = packets[length];
+		
+		if(packet == null){
+			
+			if(keptBytes + length > MAX_KEPT_BYTES)
+				clearPackets();
+			
+			packet = packets[length] = new byte[length];
+			keptBytes += length;
+			
+		}
+		
+		// JDA is done with the previous packet once it asks for the next one,
+		// so the arrays can be reused
+		frame.getData(packet, 0);
 		
-		return data;
+		providedFrames.increment();
+		
+		return packet;
 	}
 	
 	@Override
@@ -41,4 +135,51 @@ public class AudioHandler implements AudioSendHandler {
 		return true;
 	}
 	
+	/**
+	 * Tells this handler that another track started, so that the arrays kept
+	 * for the lengths of the packets of the previous track are dropped the
+	 * next time a frame is sent.
+	 * 
+	 * @since v0.12.0
+	 */
+	void onTrackChanged(){
+		isTrackChanged = true;
+	}
+	
+	/**
+	 * @return The amount of bytes currently used by the arrays kept for the
+	 *         packets.
+	 * @since v0.12.0
+	 */
+	int getKeptBytes(){
+		return keptBytes;
+	}
+	
+	private void clearPackets(){
+		
+		Arrays.fill(packets, null);
+		
+		keptBytes = 0;
+		
+	}
+	
+	/**
+	 * @return The amount of audio frames sent by every handler.
+	 * @since v0.12.0
+	 */
+	public static long getProvidedFramesCount(){
+		return providedFrames.sum();
+	}
+	
+	/**
+	 * Gets the amount of times a handler had no frame to send while its track
+	 * was playing, which is heard as a gap in the music.
+	 *
+	 * @return The amount of audio frame underruns of every handler.
+	 * @since v0.12.0
+	 */
+	public static long getUnderrunsCount(){
+		return underruns.sum();
+	}
+	
 }
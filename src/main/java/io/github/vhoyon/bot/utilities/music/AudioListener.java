@@ -4,9 +4,13 @@ import com.sedmelluq.discord.lavaplayer.player.AudioPlayer;
 import com.sedmelluq.discord.lavaplayer.player.event.AudioEventAdapter;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrackEndReason;
+import com.sedmelluq.discord.lavaplayer.track.TrackMarker;
+import com.sedmelluq.discord.lavaplayer.track.TrackMarkerHandler.MarkerState;
+import io.github.vhoyon.bot.utilities.music.PlaybackState.LoopMode;
+import io.github.vhoyon.bot.utilities.specifics.EnvironmentConfig;
 
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Handles all the tracks inside of a {@link MusicPlayer} and gives utility
@@ -14,7 +18,15 @@ import java.util.concurrent.LinkedBlockingQueue;
  * queue or even starting the next track.
  * <p>
  * This also handles the logic of what happens when a track ends, on which the
- * looping methods are determined in.
+ * looping methods are determined in, using the {@link PlaybackState} of the
+ * player.
+ * </p>
+ * <p>
+ * {@code MUSIC_PREFETCH_SECONDS} (environment variable,
+ * {@value #DEFAULT_PREFETCH_SECONDS} by default) seconds before the end of
+ * each track, the player starts prefetching the next track of the playlist
+ * (see {@link MusicPlayer#prefetch()}). This must stay below the minute after
+ * which lavaplayer cleans up the players that do not play.
  * </p>
  * 
  * @version 1.0
@@ -23,7 +35,12 @@ import java.util.concurrent.LinkedBlockingQueue;
  */
 public class AudioListener extends AudioEventAdapter {
 	
-	private final BlockingQueue<AudioTrack> tracks = new LinkedBlockingQueue<>();
+	public static final int DEFAULT_PREFETCH_SECONDS = 10;
+	
+	private static final long PREFETCH_WINDOW = EnvironmentConfig.getInt(
+			"MUSIC_PREFETCH_SECONDS", DEFAULT_PREFETCH_SECONDS) * 1000L;
+	
+	private final TrackQueue tracks = new TrackQueue();
 	private final MusicPlayer player;
 	
 	public AudioListener(MusicPlayer player){
@@ -31,10 +48,10 @@ public class AudioListener extends AudioEventAdapter {
 	}
 
 	/**
-	 * @return The current tracks as a {@link BlockingQueue} of {@link AudioTrack}. The track playing will not be in this list.
+	 * @return The current tracks as a {@link TrackQueue} of {@link AudioTrack}. The track playing will not be in this list.
 	 * @since v0.4.0
 	 */
-	public BlockingQueue<AudioTrack> getTracks(){
+	public TrackQueue getTracks(){
 		return tracks;
 	}
 
@@ -54,7 +71,9 @@ public class AudioListener extends AudioEventAdapter {
 	 */
 	public boolean nextTrack(){
 		
-		if(tracks.isEmpty()){
+		AudioTrack next = tracks.poll();
+		
+		if(next == null){
 			
 			if(player.getGuild().getAudioManager().getConnectedChannel() != null){
 				player.getGuild().getAudioManager().closeAudioConnection();
@@ -63,39 +82,185 @@ public class AudioListener extends AudioEventAdapter {
 			
 		}
 		
-		return player.getAudioPlayer().startTrack(tracks.poll(), false);
+		return player.startNext(next);
+		
+	}
+	
+	/**
+	 * Starts the track at the {@code index} of the playlist immediately. The
+	 * tracks before it are removed from the playlist without being started.
+	 * 
+	 * @param index
+	 *            The index of the track in the playlist, {@code 0} being the
+	 *            next track.
+	 * @return {@code false} if the track couldn't start for some reason, or
+	 *         {@code true} otherwise.
+	 * @throws IndexOutOfBoundsException
+	 *             If there is no track at this index.
+	 * @since v0.12.0
+	 */
+	public boolean skipTo(int index){
+		return player.startNext(tracks.skipTo(index));
+	}
+	
+	/**
+	 * Removes the track at the {@code index} of the playlist.
+	 * 
+	 * @param index
+	 *            The index of the track in the playlist, {@code 0} being the
+	 *            next track.
+	 * @return The track removed.
+	 * @throws IndexOutOfBoundsException
+	 *             If there is no track at this index.
+	 * @since v0.12.0
+	 */
+	public AudioTrack removeTrack(int index){
+		
+		AudioTrack track = tracks.removeAt(index);
+		
+		if(index == 0)
+			refreshPrefetch();
+		
+		return track;
+		
+	}
+	
+	/**
+	 * Moves the track at the index {@code from} of the playlist to the index
+	 * {@code to}.
+	 * 
+	 * @param from
+	 *            The index of the track to move, {@code 0} being the next
+	 *            track.
+	 * @param to
+	 *            The index the track must have once moved.
+	 * @return The track moved.
+	 * @throws IndexOutOfBoundsException
+	 *             If there is no track at one of these indexes.
+	 * @since v0.12.0
+	 */
+	public AudioTrack moveTrack(int from, int to){
+		
+		AudioTrack track = tracks.move(from, to);
+		
+		if(from == 0 || to == 0)
+			refreshPrefetch();
+		
+		return track;
+		
+	}
+	
+	/**
+	 * Shuffles the tracks of the playlist.
+	 * 
+	 * @since v0.12.0
+	 */
+	public void shuffle(){
+		
+		tracks.shuffle(ThreadLocalRandom.current());
+		
+		refreshPrefetch();
+		
+	}
+	
+	@Override
+	public void onTrackStart(AudioPlayer player, AudioTrack track){
+		
+		// The player on standby starts the tracks it prefetches
+		if(player == this.player.getAudioPlayer()){
+			
+			this.player.getAudioHandler().onTrackChanged();
+			
+			schedulePrefetch(track);
+			
+		}
+		
+	}
+	
+	/**
+	 * Called when the {@link MusicPlayer} went to the track it prefetched,
+	 * which did not trigger {@link #onTrackStart(AudioPlayer, AudioTrack)} as
+	 * it was started on standby.
+	 * 
+	 * @param track
+	 *            The track that is now playing.
+	 * @since v0.12.0
+	 */
+	void onHandoff(AudioTrack track){
+		
+		this.player.getAudioHandler().onTrackChanged();
+		
+		if(track != null)
+			schedulePrefetch(track);
 		
 	}
 	
 	@Override
 	public void onTrackEnd(AudioPlayer player, AudioTrack track,
 			AudioTrackEndReason endReason){
+		
+		if(player != this.player.getAudioPlayer())
+			return;
 
-			this.player.getCommand().remember(track.getInfo().uri, "LATEST_SONG");
-
-		if(this.player.getCommand().hasMemory("LOOP_ONCE") && (boolean) this.player.getCommand().getMemory("LOOP_ONCE") ){
+		PlaybackState playbackState = this.player.getPlaybackState();
+		
+		playbackState.addToHistory(track);
+		
+		LoopMode loopMode = playbackState.getLoopMode();
+		
+		// Only a track that played until its end is looped : a skipped track
+		// was already replaced by the next one
+		if(loopMode == LoopMode.SINGLE
+				&& endReason == AudioTrackEndReason.FINISHED){
 			player.playTrack(track.makeClone());
-		}else if(endReason.mayStartNext){
-			if((this.player.getCommand().hasMemory("MUSIC_LOOP") && (boolean) this.player.getCommand().getMemory("MUSIC_LOOP"))) {
+		}
+		else if(endReason.mayStartNext){
+			
+			if(loopMode == LoopMode.PLAYLIST)
 				tracks.add(track.makeClone());
+			
+			if(!tracks.isEmpty())
 				nextTrack();
-			}else{
-				if (!tracks.isEmpty()) {
-					nextTrack();
-				}
-			}
+			
 		}
-
+		
 	}
-
+	
 	/**
 	 * @param track {@link AudioTrack} to be queued for a future play. If nothing is playing, the track will start playing immediately.
 	 * @since v0.4.0
 	 */
 	public void queue(AudioTrack track){
 		
-		if(!player.getAudioPlayer().startTrack(track, true))
-			tracks.offer(track);
+		if(!player.getAudioPlayer().startTrack(track, true)){
+			
+			tracks.add(track);
+			
+			prefetchIfDue();
+			
+		}
+		
+	}
+	
+	/**
+	 * Queues all the {@code tracks} at once, in their order. If nothing is
+	 * playing, the first track starts playing immediately.
+	 * 
+	 * @param tracks
+	 *            The tracks to be queued, such as the tracks of a playlist.
+	 * @since v0.12.0
+	 */
+	public void queueAll(List<AudioTrack> tracks){
+		
+		if(tracks.isEmpty())
+			return;
+		
+		int firstQueued = player.getAudioPlayer().startTrack(tracks.get(0),
+				true) ? 1 : 0;
+		
+		this.tracks.addAll(tracks.subList(firstQueued, tracks.size()));
+		
+		prefetchIfDue();
 		
 	}
 	
@@ -106,6 +271,55 @@ public class AudioListener extends AudioEventAdapter {
 	 */
 	public void purgeQueue() {
         tracks.clear();
+        
+        player.cancelPrefetch();
     }
 	
+	/**
+	 * Prefetches the new first track of the playlist instead of the previous
+	 * one, if it was prefetched.
+	 */
+	private void refreshPrefetch(){
+		
+		player.cancelPrefetch();
+		
+		prefetchIfDue();
+		
+	}
+	
+	private void prefetchIfDue(){
+		
+		AudioTrack playingTrack = player.getAudioPlayer().getPlayingTrack();
+		
+		// Queued after the prefetch of the current track was due
+		if(playingTrack != null
+				&& !playingTrack.getInfo().isStream
+				&& playingTrack.getDuration()
+						- playingTrack.getPosition() <= PREFETCH_WINDOW)
+			player.prefetch();
+		
+	}
+	
+	private void schedulePrefetch(AudioTrack track){
+		
+		long duration = track.getDuration();
+		
+		if(track.getInfo().isStream || duration == Long.MAX_VALUE)
+			return;
+		
+		if(duration <= PREFETCH_WINDOW){
+			player.prefetch();
+		}
+		else{
+			track.setMarker(new TrackMarker(duration - PREFETCH_WINDOW,
+					state -> {
+						if(state == MarkerState.REACHED
+								|| state == MarkerState.LATE
+								|| state == MarkerState.BYPASSED)
+							player.prefetch();
+					}));
+		}
+		
+	}
+	
 }
@@ -5,18 +5,68 @@ import com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager;
 import com.sedmelluq.discord.lavaplayer.player.DefaultAudioPlayerManager;
 import com.sedmelluq.discord.lavaplayer.source.AudioSourceManagers;
 import com.sedmelluq.discord.lavaplayer.tools.FriendlyException;
+import com.sedmelluq.discord.lavaplayer.tools.io.MessageInput;
+import com.sedmelluq.discord.lavaplayer.tools.io.MessageOutput;
 import com.sedmelluq.discord.lavaplayer.track.AudioPlaylist;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
+import com.sedmelluq.discord.lavaplayer.track.BasicAudioPlaylist;
+import com.sedmelluq.discord.lavaplayer.track.DecodedTrackHolder;
+import com.sedmelluq.discord.lavaplayer.track.playback.NonAllocatingAudioFrameBuffer;
 import net.dv8tion.jda.core.entities.Guild;
 import io.github.vhoyon.bot.utilities.BotCommand;
+import io.github.vhoyon.bot.utilities.specifics.EnvironmentConfig;
+import io.github.vhoyon.bot.utilities.specifics.LongKeyedMap;
+import io.github.vhoyon.vramework.modules.Environment;
+import io.github.vhoyon.vramework.modules.Logger;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * Handles all the {@link MusicPlayer} players that this bot has opened so far
  * and implements the logic to load tracks from these players. This Manager only
  * deals with one player per server (Guild).
+ * <p>
+ * The players are stored by the ID of their Guild in a {@link LongKeyedMap},
+ * so that looking a player up never locks. A player is created outside of the
+ * lock of the map and only then published if its Guild still has none, so
+ * that creating the player of a Guild only blocks the other Guilds for the
+ * time of storing it. The
+ * {@link PlaybackState} of each Guild is stored the same way and outlives its
+ * players.
+ * </p>
+ * <p>
+ * The manager is only created the first time it is used, and the
+ * {@link PlayerReaper} is only started once the first player is created, so
+ * that a bot that never plays music pays for neither.
+ * </p>
+ * <p>
+ * The sources resolved by lavaplayer are kept in a {@link TrackCache} so that
+ * playing them again does not resolve them again. The sources loaded for a
+ * player are still handled in the order they were requested, whether they
+ * were cached or not. The cache is configured by the environment variables
+ * {@code TRACK_CACHE_SIZE} (results kept, {@value #DEFAULT_TRACK_CACHE_SIZE}
+ * by default), {@code TRACK_CACHE_TTL} (minutes,
+ * {@value #DEFAULT_TRACK_CACHE_TTL} by default) and
+ * {@code TRACK_CACHE_NO_MATCH_TTL} (minutes,
+ * {@value #DEFAULT_TRACK_CACHE_NO_MATCH_TTL} by default). When
+ * {@code TRACK_CACHE_FILE} is set, the cache is loaded from this file when
+ * the manager is created and saved to it when the bot stops.
+ * </p>
  * 
  * @version 1.0
  * @since v0.4.0
@@ -24,14 +74,64 @@ import java.util.Map;
  */
 public class MusicManager {
 	
-	private static MusicManager musicManager;
+	private static final class Holder {
+		private static final MusicManager INSTANCE = new MusicManager();
+	}
+	
+	/**
+	 * The amount of tracks of a playlist listed in the message sent when it
+	 * is loaded.
+	 * 
+	 * @since v0.12.0
+	 */
+	public static final int PLAYLIST_LISTED_TRACKS = 10;
+	
+	public static final int DEFAULT_TRACK_CACHE_SIZE = 2000;
+	public static final int DEFAULT_TRACK_CACHE_TTL = 360;
+	public static final int DEFAULT_TRACK_CACHE_NO_MATCH_TTL = 10;
 	
 	private final AudioPlayerManager manager = new DefaultAudioPlayerManager();
-	private final Map<String, MusicPlayer> players = new HashMap<>();
+	private final LongKeyedMap<MusicPlayer> players = new LongKeyedMap<>();
+	private final LongKeyedMap<PlaybackState> playbackStates = new LongKeyedMap<>();
+	
+	private final TrackCache trackCache = new TrackCache(
+			EnvironmentConfig.getInt("TRACK_CACHE_SIZE",
+					DEFAULT_TRACK_CACHE_SIZE),
+			TimeUnit.MINUTES.toMillis(EnvironmentConfig.getInt(
+					"TRACK_CACHE_TTL", DEFAULT_TRACK_CACHE_TTL)),
+			TimeUnit.MINUTES.toMillis(EnvironmentConfig.getInt(
+					"TRACK_CACHE_NO_MATCH_TTL",
+					DEFAULT_TRACK_CACHE_NO_MATCH_TTL)));
+	private final File trackCacheFile;
+	
+	private static volatile boolean isCreated;
 	
 	private MusicManager(){
+		// Buffers the frames of each player in one preallocated array instead
+		// of one array per frame, see AudioHandler
+		manager.getConfiguration().setFrameBufferFactory(
+				NonAllocatingAudioFrameBuffer::new);
+		
 		AudioSourceManagers.registerRemoteSources(manager);
 		AudioSourceManagers.registerLocalSource(manager);
+		
+		String trackCachePath = Environment.getVar("TRACK_CACHE_FILE", null);
+		
+		this.trackCacheFile = trackCachePath == null ? null : new File(
+				trackCachePath);
+		
+		if(trackCacheFile != null && trackCacheFile.exists()){
+			try{
+				Logger.log(trackCache.load(trackCacheFile)
+						+ " resolved sources loaded from "
+						+ trackCacheFile.getName() + ".", false);
+			}
+			catch(IOException e){
+				Logger.log(e);
+			}
+		}
+		
+		isCreated = true;
 	}
 	
 	/**
@@ -42,13 +142,16 @@ public class MusicManager {
 	 * @since v0.4.0
 	 */
 	public static MusicManager get(){
-		
-		if(musicManager == null){
-			musicManager = new MusicManager();
-		}
-		
-		return musicManager;
-		
+		return Holder.INSTANCE;
+	}
+	
+	/**
+	 * @return {@code true} if the MusicManager was already created by
+	 *         {@link #get()}, {@code false} otherwise.
+	 * @since v0.12.0
+	 */
+	public static boolean isCreated(){
+		return isCreated;
 	}
 	
 	/**
@@ -62,8 +165,22 @@ public class MusicManager {
 	 *         {@code false} otherwise.
 	 * @since v0.4.0
 	 */
-	public synchronized boolean hasPlayer(Guild guild){
-		return players.containsKey(guild.getId());
+	public boolean hasPlayer(Guild guild){
+		return hasPlayer(guild.getIdLong());
+	}
+	
+	/**
+	 * Determines if the MusicManager has a player for the Guild of the ID
+	 * given in the parameters.
+	 * 
+	 * @param guildId
+	 *            The ID of the Guild.
+	 * @return {@code true} if there is a player for the guild provided,
+	 *         {@code false} otherwise.
+	 * @since v0.12.0
+	 */
+	public boolean hasPlayer(long guildId){
+		return players.containsKey(guildId);
 	}
 	
 	/**
@@ -77,14 +194,62 @@ public class MusicManager {
 	 *         creates a new MusicPlayer, store this new player and return it.
 	 * @since v0.4.0
 	 */
-	public synchronized MusicPlayer getPlayer(BotCommand command){
+	public MusicPlayer getPlayer(BotCommand command){
+		
+		long guildId = command.getGuild().getIdLong();
+		
+		MusicPlayer player = players.get(guildId);
+		
+		if(player != null)
+			return player;
+		
+		MusicPlayer created = new MusicPlayer(manager.createPlayer(),
+				manager.createPlayer(), getPlaybackState(guildId), command);
+		
+		MusicPlayer existing = players.putIfAbsent(guildId, created);
+		
+		// Another command created the player of this Guild meanwhile
+		if(existing != null){
+			created.destroy();
+			return existing;
+		}
 		
-		if(!hasPlayer(command.getGuild()))
-			players.put(command.getGuild().getId(),
-					new MusicPlayer(manager.createPlayer(), command));
+		// Only the published player sends its audio, until it is closed
+		created.attach();
 		
-		return players.get(command.getGuild().getId());
+		// Does nothing once the reaper was started by the first player
+		PlayerReaper.start();
 		
+		return created;
+		
+	}
+	
+	/**
+	 * Gets the player of the Guild of the ID given without creating it.
+	 * 
+	 * @param guildId
+	 *            The ID of the Guild.
+	 * @return The {@link MusicPlayer} of the Guild, or {@code null} if it has
+	 *         none.
+	 * @since v0.12.0
+	 */
+	public MusicPlayer getPlayer(long guildId){
+		return players.get(guildId);
+	}
+	
+	/**
+	 * Gets the loop mode and the history of the tracks of the Guild of the ID
+	 * given, which are kept when its player is closed so that the next player
+	 * of the Guild starts with them.
+	 * 
+	 * @param guildId
+	 *            The ID of the Guild.
+	 * @return The {@link PlaybackState} of the Guild, created if it has none.
+	 * @since v0.12.0
+	 */
+	public PlaybackState getPlaybackState(long guildId){
+		return playbackStates.computeIfAbsent(guildId,
+				id -> new PlaybackState());
 	}
 	
 	/**
@@ -96,24 +261,175 @@ public class MusicManager {
 	 *            The command to get the context from.
 	 * @since v0.4.0
 	 */
-	public synchronized void emptyPlayer(BotCommand command){
+	public void emptyPlayer(BotCommand command){
 		
-		if(this.hasPlayer(command.getGuild())){
-			
-			MusicPlayer player = this.getPlayer(command);
+		// Removing first makes the caller the only one closing this player
+		MusicPlayer player = players.remove(command.getGuild().getIdLong());
+		
+		if(player != null){
 			
-			player.getAudioPlayer().destroy();
+			closePlayer(player);
 			
-			if(player.isConnectedToVoiceChannel()){
-				player.closeConnection();
-			}
+			command.disconnect();
 			
-			players.remove(command.getGuildId());
+		}
+		
+	}
+	
+	/**
+	 * Closes the {@code player} of the Guild of the ID given and disconnects
+	 * it from its VoiceChannel, if it is still the player of this Guild.
+	 * 
+	 * @param guildId
+	 *            The ID of the Guild.
+	 * @param player
+	 *            The player to close.
+	 * @return {@code true} if the player was closed, {@code false} if it was
+	 *         already closed or replaced.
+	 * @since v0.12.0
+	 */
+	public boolean reapPlayer(long guildId, MusicPlayer player){
+		
+		// Removing first makes the caller the only one closing this player
+		if(!players.remove(guildId, player))
+			return false;
+		
+		closePlayer(player);
+		
+		return true;
+		
+	}
+	
+	/**
+	 * Logs the queue of every player in the {@code file}, so that it can be
+	 * looked at after the bot is stopped. The file is not loaded back when the
+	 * bot is started again. Each line of the file contains the ID of the
+	 * guild, the position (in milliseconds) of the track or {@code -1} for
+	 * queued tracks, and the URI of the track, separated by tabulations.
+	 *
+	 * @param file
+	 *            The file to write the queues to.
+	 * @return The amount of tracks saved.
+	 * @throws IOException
+	 *             If the file cannot be written.
+	 * @since v0.12.0
+	 */
+	public int snapshotQueues(File file) throws IOException{
+		
+		AtomicInteger count = new AtomicInteger();
+		
+		try(PrintWriter writer = new PrintWriter(file,
+				StandardCharsets.UTF_8.name())){
 			
-			command.disconnect();
+			players.forEach((guildId, player) -> {
+				
+				AudioTrack playingTrack = player.getAudioPlayer()
+						.getPlayingTrack();
+				
+				if(playingTrack != null){
+					writer.println(guildId + "\t" + playingTrack.getPosition()
+							+ "\t" + playingTrack.getInfo().uri);
+					count.incrementAndGet();
+				}
+				
+				for(AudioTrack track : player.getListener().getTracks()){
+					writer.println(guildId + "\t-1\t" + track.getInfo().uri);
+					count.incrementAndGet();
+				}
+				
+			});
 			
 		}
 		
+		return count.get();
+		
+	}
+	
+	/**
+	 * Destroys every player and leaves their VoiceChannel, such as when the
+	 * bot is stopping.
+	 *
+	 * @return The amount of players closed.
+	 * @since v0.12.0
+	 */
+	public int closeAll(){
+		
+		AtomicInteger count = new AtomicInteger();
+		
+		players.forEach((guildId, player) -> {
+			
+			if(players.remove(guildId, player)){
+				closePlayer(player);
+				count.incrementAndGet();
+			}
+			
+		});
+		
+		return count.get();
+		
+	}
+	
+	/**
+	 * @return The amount of guilds that currently have a player.
+	 * @since v0.12.0
+	 */
+	public int getPlayersCount(){
+		return players.size();
+	}
+	
+	/**
+	 * Performs the {@code action} for the player of each Guild, without
+	 * locking the players.
+	 * 
+	 * @param action
+	 *            The action to perform with the ID of the Guild and its player.
+	 * @since v0.12.0
+	 */
+	public void forEachPlayer(LongKeyedMap.LongObjConsumer<MusicPlayer> action){
+		players.forEach(action);
+	}
+	
+	/**
+	 * @return The amount of tracks waiting in the playlists of every player.
+	 * @since v0.12.0
+	 */
+	public int getQueuedTracksCount(){
+		
+		AtomicInteger count = new AtomicInteger();
+		
+		// Read the queues directly so that the players are not locked
+		players.forEach((guildId, player) -> count.addAndGet(player
+				.getListener().getTracks().size()));
+		
+		return count.get();
+		
+	}
+	
+	/**
+	 * @return The cache of the sources resolved by this manager.
+	 * @since v0.12.0
+	 */
+	public TrackCache getTrackCache(){
+		return trackCache;
+	}
+	
+	/**
+	 * Saves the cache of the resolved sources in the file given by the
+	 * {@code TRACK_CACHE_FILE} environment variable, if it is set.
+	 * 
+	 * @return The amount of results saved, or {@code -1} if the cache is not
+	 *         saved.
+	 * @throws IOException
+	 *             If the file cannot be written.
+	 * @since v0.12.0
+	 */
+	public int saveTrackCache() throws IOException{
+		
+		if(trackCacheFile == null)
+			return -1;
+		
+		return trackCache.save(trackCacheFile);
+		
 	}
 	
 	/**
@@ -197,10 +513,59 @@ public class MusicManager {
 		
 		MusicPlayer player = getPlayer(command);
 		
-		command.getGuild().getAudioManager()
-				.setSendingHandler(player.getAudioHandler());
+		// The cache is only read once the previous loads of the player are
+		// done, so that a cached source never overtakes them
+		player.queueLoad(() -> load(player, command, source,
+				onSuccessLoadBeforePlay));
+		
+	}
+	
+	/**
+	 * Loads a track in the player associated with the context of the
+	 * {@code command} parameter once its {@code source} is known, such as
+	 * when it is still being searched on YouTube. The track is handled like
+	 * with {@link #loadTrack(BotCommand, String, Runnable)} and in the order
+	 * this method was called, even if the loads requested after it finish
+	 * before its source is known.
+	 * 
+	 * @param command
+	 *            The command to get the context from.
+	 * @param source
+	 *            The future source of the track to load.
+	 * @param onSuccessLoadBeforePlay
+	 *            Arbitrary code that runs before sending the success message
+	 *            and trying to play the loaded track. Can be {@code null}.
+	 * @param onSourceFailed
+	 *            Called with the error of the {@code source} if it fails, in
+	 *            which case nothing is loaded.
+	 * @since v0.12.0
+	 * @see #loadTrack(BotCommand, String, Runnable)
+	 */
+	public void loadTrack(final BotCommand command,
+			final CompletableFuture<String> source,
+			Runnable onSuccessLoadBeforePlay, Consumer<Throwable> onSourceFailed){
+		
+		MusicPlayer player = getPlayer(command);
+		
+		player.queueLoad(() -> source.handle((resolvedSource, error) -> {
+			
+			if(error == null)
+				return load(player, command, resolvedSource,
+						onSuccessLoadBeforePlay);
+			
+			onSourceFailed.accept(error instanceof CompletionException
+					&& error.getCause() != null ? error.getCause() : error);
+			
+			return CompletableFuture.<Void>completedFuture(null);
+			
+		}).thenCompose(Function.identity()));
 		
-		manager.loadItemOrdered(player, source, new AudioLoadResultHandler(){
+	}
+	
+	private CompletableFuture<Void> load(MusicPlayer player,
+			BotCommand command, String source, Runnable onSuccessLoadBeforePlay){
+		
+		AudioLoadResultHandler resultHandler = new AudioLoadResultHandler(){
 			
 			@Override
 			public void trackLoaded(AudioTrack track){
@@ -219,23 +584,35 @@ public class MusicManager {
 				if(onSuccessLoadBeforePlay != null)
 					onSuccessLoadBeforePlay.run();
 				
+				List<AudioTrack> tracks = playlist.getTracks();
+				
+				player.playTracks(tracks);
+				
 				StringBuilder builder = new StringBuilder();
 				
 				builder.append(
 						command.lang("MusicManagerPlaylistLoaded",
 								command.code(playlist.getName()))).append("\n");
 				
-				for(int i = 0; i < playlist.getTracks().size(); i++){
-					AudioTrack track = playlist.getTracks().get(i);
+				// Only the first tracks are listed so that the message stays
+				// short whatever the size of the playlist
+				int listedCount = Math.min(tracks.size(),
+						PLAYLIST_LISTED_TRACKS);
+				
+				for(int i = 0; i < listedCount; i++){
+					AudioTrack track = tracks.get(i);
 					
 					builder.append("\n").append(
 							command.lang("MusicManagerPlaylistAddedTrackInfo",
 									(i + 1),
 									command.code(track.getInfo().title)));
-					
-					player.playTrack(track);
 				}
 				
+				if(tracks.size() > listedCount)
+					builder.append("\n").append(
+							command.lang("MusicManagerPlaylistMoreTracks",
+									tracks.size() - listedCount, tracks.size()));
+				
 				command.sendMessage(builder.toString());
 				
 			}
@@ -252,7 +629,191 @@ public class MusicManager {
 						command.code(exception.getMessage())));
 			}
 			
-		});
+		};
+		
+		String key = TrackCache.normalize(source);
+		
+		if(loadCached(key, resultHandler))
+			return CompletableFuture.completedFuture(null);
+		
+		CompletableFuture<Void> loaded = new CompletableFuture<>();
+		
+		manager.loadItemOrdered(player, source, new CachingResultHandler(key,
+				resultHandler, loaded));
+		
+		return loaded;
+		
+	}
+	
+	private boolean loadCached(String key, AudioLoadResultHandler resultHandler){
+		
+		TrackCache.Result result = trackCache.get(key);
+		
+		if(result == null)
+			return false;
+		
+		if(result.isNoMatch()){
+			resultHandler.noMatches();
+			return true;
+		}
+		
+		List<AudioTrack> tracks = new ArrayList<>(result.getEncodedTracks()
+				.size());
+		
+		try{
+			
+			for(byte[] encodedTrack : result.getEncodedTracks()){
+				
+				DecodedTrackHolder holder = manager.decodeTrack(new MessageInput(
+						new ByteArrayInputStream(encodedTrack)));
+				
+				if(holder == null || holder.decodedTrack == null)
+					throw new IOException("The track could not be decoded!");
+				
+				tracks.add(holder.decodedTrack);
+				
+			}
+			
+		}
+		catch(IOException e){
+			
+			// Such as when a source manager changed its format : resolve the
+			// source again
+			trackCache.invalidate(key);
+			
+			return false;
+			
+		}
+		
+		if(result.isPlaylist())
+			resultHandler.playlistLoaded(new BasicAudioPlaylist(result
+					.getPlaylistName(), tracks, null, false));
+		else
+			resultHandler.trackLoaded(tracks.get(0));
+		
+		return true;
+		
+	}
+	
+	private void cacheTracks(String key, String playlistName,
+			List<AudioTrack> tracks){
+		
+		if(tracks.isEmpty())
+			return;
+		
+		List<byte[]> encodedTracks = new ArrayList<>(tracks.size());
+		List<AudioTrackInfo> infos = new ArrayList<>(tracks.size());
+		
+		try{
+			
+			for(AudioTrack track : tracks){
+				
+				ByteArrayOutputStream output = new ByteArrayOutputStream();
+				
+				manager.encodeTrack(new MessageOutput(output), track);
+				
+				encodedTracks.add(output.toByteArray());
+				infos.add(track.getInfo());
+				
+			}
+			
+			trackCache.putTracks(key, playlistName, encodedTracks, infos);
+			
+		}
+		catch(IOException e){
+			Logger.log(e);
+		}
+		
+	}
+	
+	/**
+	 * Caches the result of the resolution of a source before handling it,
+	 * then completes the {@code loaded} future so that the next load of the
+	 * player can run.
+	 */
+	private class CachingResultHandler implements AudioLoadResultHandler {
+		
+		private final String key;
+		private final AudioLoadResultHandler resultHandler;
+		private final CompletableFuture<Void> loaded;
+		
+		private CachingResultHandler(String key,
+				AudioLoadResultHandler resultHandler,
+				CompletableFuture<Void> loaded){
+			this.key = key;
+			this.resultHandler = resultHandler;
+			this.loaded = loaded;
+		}
+		
+		@Override
+		public void trackLoaded(AudioTrack track){
+			
+			try{
+				
+				// Encoded before being played, while it is still at its start
+				cacheTracks(key, null, Collections.singletonList(track));
+				
+				resultHandler.trackLoaded(track);
+				
+			}
+			finally{
+				loaded.complete(null);
+			}
+			
+		}
+		
+		@Override
+		public void playlistLoaded(AudioPlaylist playlist){
+			
+			try{
+				
+				cacheTracks(key, playlist.getName(), playlist.getTracks());
+				
+				resultHandler.playlistLoaded(playlist);
+				
+			}
+			finally{
+				loaded.complete(null);
+			}
+			
+		}
+		
+		@Override
+		public void noMatches(){
+			
+			try{
+				
+				trackCache.putNoMatch(key);
+				
+				resultHandler.noMatches();
+				
+			}
+			finally{
+				loaded.complete(null);
+			}
+			
+		}
+		
+		@Override
+		public void loadFailed(FriendlyException exception){
+			try{
+				resultHandler.loadFailed(exception);
+			}
+			finally{
+				loaded.complete(null);
+			}
+		}
+		
+	}
+	
+	private static void closePlayer(MusicPlayer player){
+		
+		player.detach();
+		
+		player.destroy();
+		
+		if(player.isConnectedToVoiceChannel())
+			player.closeConnection();
 		
 	}
 	
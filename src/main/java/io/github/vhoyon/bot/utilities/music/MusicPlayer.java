@@ -2,12 +2,31 @@ package io.github.vhoyon.bot.utilities.music;
 
 import com.sedmelluq.discord.lavaplayer.player.AudioPlayer;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.playback.AudioFrame;
+import com.sedmelluq.discord.lavaplayer.track.playback.AudioFrameProvider;
+import com.sedmelluq.discord.lavaplayer.track.playback.MutableAudioFrame;
 import net.dv8tion.jda.core.entities.Guild;
 import net.dv8tion.jda.core.entities.VoiceChannel;
+import net.dv8tion.jda.core.managers.AudioManager;
 import io.github.vhoyon.bot.utilities.BotCommand;
+import io.github.vhoyon.vramework.modules.Logger;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 /**
  * Handles the playback of tracks added to the {@link AudioListener} object.
+ * <p>
+ * To go from a track to the next without any gap, the player has a second
+ * AudioPlayer on standby : near the end of the current track, it starts
+ * (paused) the first track of the playlist so that it is resolved and
+ * buffered, and when the current track ends the two AudioPlayers swap (see
+ * {@link #prefetch()}).
+ * </p>
  *
  * @version 1.0
  * @since v0.4.0
@@ -22,9 +41,27 @@ public class MusicPlayer {
 	 */
 	public final static int MAX_VOLUME = 20;
 	
-	private final AudioPlayer audioPlayer;
 	private final AudioListener listener;
+	private final AudioHandler audioHandler;
 	private final BotCommand command;
+	private final PlaybackState playbackState;
+	
+	private volatile AudioPlayer audioPlayer;
+	private volatile AudioPlayer standbyPlayer;
+	
+	private final Object prefetchLock = new Object();
+	private AudioTrack prefetchedTrack;
+	private AudioTrack prefetchedClone;
+	private int startingCount;
+	
+	private final Object loadsLock = new Object();
+	private CompletableFuture<Void> lastLoad = CompletableFuture
+			.completedFuture(null);
+	
+	private volatile long handoffStartedAt;
+	private final AtomicLong silencesCount = new AtomicLong();
+	private final AtomicLong silencesNanos = new AtomicLong();
+	private volatile long lastSilenceNanos;
 	
 	/**
 	 * Creates a MusicPlayer that sets its initial volume to the setting "
@@ -39,22 +76,58 @@ public class MusicPlayer {
 	 * @since v0.4.0
 	 */
 	public MusicPlayer(AudioPlayer audioPlayer, BotCommand command){
+		this(audioPlayer, null, new PlaybackState(), command);
+	}
+	
+	/**
+	 * Creates a MusicPlayer that prefetches the next track of its playlist
+	 * in the {@code standbyPlayer} so that the tracks follow each other
+	 * without any gap.
+	 * 
+	 * @param audioPlayer
+	 *            The AudioPlayer to play music out of.
+	 * @param standbyPlayer
+	 *            The AudioPlayer to prefetch the next track in, created by the
+	 *            same manager as {@code audioPlayer}, or {@code null} to not
+	 *            prefetch anything.
+	 * @param playbackState
+	 *            The loop mode and history of the player, which can outlive
+	 *            it so that they are kept when the Guild plays music again.
+	 * @param command
+	 *            The command to get the context for handling different tasks
+	 *            such as connections management.
+	 * @since v0.12.0
+	 */
+	public MusicPlayer(AudioPlayer audioPlayer, AudioPlayer standbyPlayer,
+			PlaybackState playbackState, BotCommand command){
 		this.audioPlayer = audioPlayer;
+		this.standbyPlayer = standbyPlayer;
+		this.playbackState = playbackState;
 		this.command = command;
 		
 		int defaultVolume = command.setting("volume");
 		
 		this.setVolume(defaultVolume);
 		
+		// The listener ignores the events of the player on standby, so it
+		// can stay on both players when they swap
 		this.listener = new AudioListener(this);
 		this.audioPlayer.addListener(this.listener);
+		
+		if(standbyPlayer != null)
+			standbyPlayer.addListener(this.listener);
+		
+		this.audioHandler = new AudioHandler(new CurrentPlayerFrames(),
+				() -> this.getAudioPlayer().getPlayingTrack() != null
+						&& !this.getAudioPlayer().isPaused());
 	}
 	
 	/**
 	 * Gets LavaPlayer's AudioPlayer object of this player.
 	 *
 	 * @return The {@link com.sedmelluq.discord.lavaplayer.player.AudioPlayer
-	 *         AudioPlayer} object linked to this custom player.
+	 *         AudioPlayer} object linked to this custom player, which changes
+	 *         when the player goes to a prefetched track.
 	 * @since v0.4.0
 	 */
 	public AudioPlayer getAudioPlayer(){
@@ -94,14 +167,52 @@ public class MusicPlayer {
 		return this.command;
 	}
 	
+	/**
+	 * Gets the loop mode and the history of the tracks of this player.
+	 *
+	 * @return The {@link PlaybackState} of this player.
+	 * @since v0.12.0
+	 */
+	public PlaybackState getPlaybackState(){
+		return this.playbackState;
+	}
+	
 	/**
 	 * Gets the AudioHandler of this player.
 	 *
-	 * @return A new {@link AudioHandler} associated with this player.
+	 * @return The {@link AudioHandler} associated with this player, which is
+	 *         the same for the whole life of the player.
 	 * @since v0.4.0
 	 */
 	public AudioHandler getAudioHandler(){
-		return new AudioHandler(this.getAudioPlayer());
+		return this.audioHandler;
+	}
+	
+	/**
+	 * Makes the Guild of this player send the audio of this player. Attaching
+	 * a player that is already attached does nothing, so that the frame its
+	 * handler might have buffered is not lost.
+	 *
+	 * @since v0.12.0
+	 */
+	public void attach(){
+		AudioManager audioManager = this.getGuild().getAudioManager();
+		
+		if(audioManager.getSendingHandler() != this.getAudioHandler())
+			audioManager.setSendingHandler(this.getAudioHandler());
+	}
+	
+	/**
+	 * Stops the Guild of this player from sending the audio of this player, if
+	 * it was attached.
+	 *
+	 * @since v0.12.0
+	 */
+	public void detach(){
+		AudioManager audioManager = this.getGuild().getAudioManager();
+		
+		if(audioManager.getSendingHandler() == this.getAudioHandler())
+			audioManager.setSendingHandler(null);
 	}
 	
 	/**
@@ -117,6 +228,20 @@ public class MusicPlayer {
 		this.getListener().queue(track);
 	}
 	
+	/**
+	 * Plays the {@code tracks} in their order, all queued at once : the first
+	 * one starts immediately if nothing is playing, such as when loading a
+	 * playlist.
+	 *
+	 * @param tracks
+	 *            The {@link com.sedmelluq.discord.lavaplayer.track.AudioTrack
+	 *            AudioTrack} objects to play.
+	 * @since v0.12.0
+	 */
+	public synchronized void playTracks(List<AudioTrack> tracks){
+		this.getListener().queueAll(tracks);
+	}
+	
 	/**
 	 * Toggles the pause state of this player (will pause if playing and play if
 	 * paused).
@@ -164,6 +289,64 @@ public class MusicPlayer {
 		return this.getListener().nextTrack();
 	}
 	
+	/**
+	 * Skips to the track at the {@code position} of the playlist immediately,
+	 * without starting the tracks before it, which are removed.
+	 *
+	 * @param position
+	 *            The position of the track in the playlist, {@code 1} being
+	 *            the next track.
+	 * @return {@code true} if the skip was a success, {@code false} otherwise.
+	 * @throws IndexOutOfBoundsException
+	 *             If there is no track at this position.
+	 * @since v0.12.0
+	 */
+	public synchronized boolean skipTo(int position){
+		return this.getListener().skipTo(position - 1);
+	}
+	
+	/**
+	 * Removes the track at the {@code position} of the playlist.
+	 *
+	 * @param position
+	 *            The position of the track in the playlist, {@code 1} being
+	 *            the next track.
+	 * @return The track removed.
+	 * @throws IndexOutOfBoundsException
+	 *             If there is no track at this position.
+	 * @since v0.12.0
+	 */
+	public synchronized AudioTrack removeTrack(int position){
+		return this.getListener().removeTrack(position - 1);
+	}
+	
+	/**
+	 * Moves the track at the position {@code from} of the playlist to the
+	 * position {@code to}.
+	 *
+	 * @param from
+	 *            The position of the track to move, {@code 1} being the next
+	 *            track.
+	 * @param to
+	 *            The position the track must have once moved.
+	 * @return The track moved.
+	 * @throws IndexOutOfBoundsException
+	 *             If there is no track at one of these positions.
+	 * @since v0.12.0
+	 */
+	public synchronized AudioTrack moveTrack(int from, int to){
+		return this.getListener().moveTrack(from - 1, to - 1);
+	}
+	
+	/**
+	 * Shuffles the tracks of the playlist of this player.
+	 *
+	 * @since v0.12.0
+	 */
+	public synchronized void shuffle(){
+		this.getListener().shuffle();
+	}
+	
 	/**
 	 * Gets the amount of tracks remaining in the playlist of this player.
 	 *
@@ -208,6 +391,252 @@ public class MusicPlayer {
 		this.getGuild().getAudioManager().closeAudioConnection();
 	}
 	
+	/**
+	 * Starts the {@code track} of the playlist of this player right away. If
+	 * it is the track that this player prefetched, the AudioPlayers swap so
+	 * that it plays from what was already buffered ; otherwise it is started
+	 * in the current AudioPlayer.
+	 * 
+	 * @param track
+	 *            The track taken out of the playlist.
+	 * @return {@code true} if the track started, {@code false} otherwise.
+	 * @since v0.12.0
+	 */
+	boolean startNext(AudioTrack track){
+		
+		AudioPlayer previous;
+		AudioPlayer prefetcher = null;
+		AudioPlayer toStop = null;
+		
+		synchronized(prefetchLock){
+			
+			// Read under the lock : a concurrent call (such as a skip while the
+			// track ends) must see the players as swapped by the other call
+			previous = this.audioPlayer;
+			
+			if(prefetchedTrack != null){
+				
+				// Swapping while another call starts a track in the current
+				// player would leave that track playing on standby
+				if(track == prefetchedTrack && startingCount == 0
+						&& standbyPlayer.getPlayingTrack() == prefetchedClone){
+					
+					prefetcher = standbyPlayer;
+					
+					standbyPlayer = previous;
+					this.audioPlayer = prefetcher;
+					
+				}
+				else{
+					// The playlist changed or the prefetch failed
+					toStop = standbyPlayer;
+				}
+				
+				prefetchedTrack = null;
+				prefetchedClone = null;
+				
+			}
+			
+			if(prefetcher == null)
+				startingCount++;
+			
+		}
+		
+		// The AudioPlayers are only called outside of the lock, as this might
+		// run while lavaplayer dispatches an event of the previous player
+		if(toStop != null)
+			toStop.stopTrack();
+		
+		handoffStartedAt = System.nanoTime();
+		
+		if(prefetcher == null){
+			
+			try{
+				
+				boolean isStarted = previous.startTrack(track, false);
+				
+				if(!isStarted)
+					handoffStartedAt = 0;
+				
+				return isStarted;
+				
+			}
+			finally{
+				synchronized(prefetchLock){
+					startingCount--;
+				}
+			}
+			
+		}
+		
+		prefetcher.setVolume(previous.getVolume());
+		prefetcher.setPaused(previous.isPaused());
+		
+		// Null if the previous track ended, in which case the listener already
+		// added it to the history
+		AudioTrack outgoing = previous.getPlayingTrack();
+		
+		// Does nothing if the previous track ended, stops it if it is skipped
+		previous.stopTrack();
+		
+		// The listener ignores the events of the player now on standby, so a
+		// skipped track is added to the history here
+		if(outgoing != null)
+			playbackState.addToHistory(outgoing);
+		
+		this.getListener().onHandoff(prefetcher.getPlayingTrack());
+		
+		return true;
+		
+	}
+	
+	/**
+	 * Starts resolving and buffering the first track of the playlist in the
+	 * AudioPlayer on standby, paused, so that {@link #startNext(AudioTrack)}
+	 * can hand it off without any gap. This is called by the
+	 * {@link AudioListener} when the current track is near its end, and does
+	 * nothing if a track is already prefetched or if the playlist is empty.
+	 * <p>
+	 * A clone of the track is prefetched so that the track of the playlist
+	 * can still be started if the prefetch is cancelled.
+	 * </p>
+	 * 
+	 * @since v0.12.0
+	 */
+	void prefetch(){
+		
+		AudioTrack next = this.getListener().getTracks().peek();
+		
+		if(next == null || standbyPlayer == null)
+			return;
+		
+		synchronized(prefetchLock){
+			
+			if(prefetchedTrack != null)
+				return;
+			
+			prefetchedTrack = next;
+			prefetchedClone = next.makeClone();
+			
+			// Nothing locks this lock while holding the lock of the player on
+			// standby, as the listener ignores the events of that player
+			standbyPlayer.setPaused(true);
+			standbyPlayer.setVolume(this.audioPlayer.getVolume());
+			standbyPlayer.startTrack(prefetchedClone, false);
+			
+		}
+		
+	}
+	
+	/**
+	 * Stops the prefetch of the next track, if any, such as when the playlist
+	 * is emptied.
+	 * 
+	 * @since v0.12.0
+	 */
+	void cancelPrefetch(){
+		
+		AudioPlayer toStop = null;
+		
+		synchronized(prefetchLock){
+			
+			if(prefetchedTrack != null){
+				
+				toStop = standbyPlayer;
+				
+				prefetchedTrack = null;
+				prefetchedClone = null;
+				
+			}
+			
+		}
+		
+		if(toStop != null)
+			toStop.stopTrack();
+		
+	}
+	
+	/**
+	 * Runs the {@code load} of a source once all the loads previously queued
+	 * for this player are done, so that the tracks are added in the order
+	 * they were requested whether their source was cached or not. When no
+	 * load is in progress, the {@code load} runs right away in the calling
+	 * thread.
+	 * 
+	 * @param load
+	 *            Starts the load and returns a future completed once the
+	 *            result of the load was handled.
+	 * @since v0.12.0
+	 */
+	void queueLoad(Supplier<CompletableFuture<Void>> load){
+		
+		CompletableFuture<Void> previous;
+		CompletableFuture<Void> done = new CompletableFuture<>();
+		
+		synchronized(loadsLock){
+			previous = lastLoad;
+			lastLoad = done;
+		}
+		
+		// Completed whatever happens so that a failed load does not block
+		// the loads queued after it
+		previous.whenComplete((ignored, previousError) -> {
+			try{
+				load.get().whenComplete((result, error) -> done.complete(null));
+			}
+			catch(RuntimeException e){
+				Logger.log(e);
+				done.complete(null);
+			}
+		});
+		
+	}
+	
+	/**
+	 * Destroys the AudioPlayers of this player, which stops the music.
+	 * 
+	 * @since v0.12.0
+	 */
+	public void destroy(){
+		
+		cancelPrefetch();
+		
+		this.audioPlayer.destroy();
+		
+		if(standbyPlayer != null)
+			standbyPlayer.destroy();
+		
+	}
+	
+	/**
+	 * Gets the amount of times this player went from a track to another, and
+	 * was therefore silent for a moment.
+	 * 
+	 * @return The amount of silences between two tracks.
+	 * @since v0.12.0
+	 */
+	public long getSilencesCount(){
+		return silencesCount.get();
+	}
+	
+	/**
+	 * @return The total time this player was silent between two tracks, in
+	 *         nanoseconds.
+	 * @since v0.12.0
+	 */
+	public long getSilencesNanos(){
+		return silencesNanos.get();
+	}
+	
+	/**
+	 * @return The time this player was silent between the last two tracks, in
+	 *         nanoseconds.
+	 * @since v0.12.0
+	 */
+	public long getLastSilenceNanos(){
+		return lastSilenceNanos;
+	}
+	
 	/**
 	 * Sets the volume of this player. <br>
 	 * There is a formula applied to it where the volume is transformed to
@@ -226,4 +655,59 @@ public class MusicPlayer {
 						/ ((double)100 / (double)MAX_VOLUME)));
 	}
 	
+	/**
+	 * Provides the frames of the current AudioPlayer of this player. When the
+	 * current track ends while providing a frame, the AudioPlayers might have
+	 * swapped : the frame is then provided by the new AudioPlayer, which
+	 * already buffered its track.
+	 */
+	private class CurrentPlayerFrames implements AudioFrameProvider {
+		
+		@Override
+		public AudioFrame provide(){
+			return audioPlayer.provide();
+		}
+		
+		@Override
+		public AudioFrame provide(long timeout, TimeUnit unit)
+				throws TimeoutException, InterruptedException{
+			return audioPlayer.provide(timeout, unit);
+		}
+		
+		@Override
+		public boolean provide(MutableAudioFrame targetFrame){
+			
+			AudioPlayer current = audioPlayer;
+			
+			boolean hasProvided = current.provide(targetFrame);
+			
+			if(!hasProvided && current != audioPlayer)
+				hasProvided = audioPlayer.provide(targetFrame);
+			
+			if(hasProvided && handoffStartedAt != 0){
+				recordSilence(System.nanoTime() - handoffStartedAt);
+			}
+			
+			return hasProvided;
+			
+		}
+		
+		@Override
+		public boolean provide(MutableAudioFrame targetFrame, long timeout,
+				TimeUnit unit) throws TimeoutException, InterruptedException{
+			return audioPlayer.provide(targetFrame, timeout, unit);
+		}
+		
+		private void recordSilence(long silenceNanos){
+			
+			handoffStartedAt = 0;
+			
+			lastSilenceNanos = silenceNanos;
+			silencesNanos.addAndGet(silenceNanos);
+			silencesCount.incrementAndGet();
+			
+		}
+		
+	}
+	
 }
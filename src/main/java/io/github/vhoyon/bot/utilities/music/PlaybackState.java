@@ -0,0 +1,105 @@
+package io.github.vhoyon.bot.utilities.music;
+
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * State of the playback of a {@link MusicPlayer} that the music commands
+ * change : the loop mode and the history of the tracks that were played.
+ * <p>
+ * The loop mode is read by the {@link AudioListener} at the end of each
+ * track without locking. The history keeps the sources of the last
+ * {@value #HISTORY_SIZE} tracks played, the most recent first.
+ * </p>
+ *
+ * @version 1.0
+ * @since v0.12.0
+ * @author V-ed (Guillaume Marcoux)
+ */
+public class PlaybackState {
+	
+	public static final int HISTORY_SIZE = 20;
+	
+	/**
+	 * The ways a {@link MusicPlayer} can loop its tracks.
+	 *
+	 * @since v0.12.0
+	 */
+	public enum LoopMode {
+		/** Plays each track once. */
+		OFF,
+		/** Queues each track again once it ended. */
+		PLAYLIST,
+		/** Plays the current track over and over. */
+		SINGLE
+	}
+	
+	private volatile LoopMode loopMode = LoopMode.OFF;
+	
+	private final ArrayDeque<String> history = new ArrayDeque<>(
+			HISTORY_SIZE);
+	
+	/**
+	 * @return The current loop mode, {@link LoopMode#OFF} by default.
+	 * @since v0.12.0
+	 */
+	public LoopMode getLoopMode(){
+		return loopMode;
+	}
+	
+	/**
+	 * @param loopMode
+	 *            The loop mode to use from the end of the current track.
+	 * @since v0.12.0
+	 */
+	public void setLoopMode(LoopMode loopMode){
+		this.loopMode = loopMode == null ? LoopMode.OFF : loopMode;
+	}
+	
+	/**
+	 * @return {@code true} if the loop mode is not {@link LoopMode#OFF}.
+	 * @since v0.12.0
+	 */
+	public boolean isLooping(){
+		return loopMode != LoopMode.OFF;
+	}
+	
+	/**
+	 * Adds the source of a track that was played to the history, forgetting
+	 * the oldest source if the history is full.
+	 *
+	 * @param track
+	 *            The track that was played.
+	 * @since v0.12.0
+	 */
+	public synchronized void addToHistory(AudioTrack track){
+		
+		if(history.size() == HISTORY_SIZE)
+			history.removeLast();
+		
+		history.addFirst(track.getInfo().uri);
+		
+	}
+	
+	/**
+	 * @return The source of the last track played, or {@code null} if no
+	 *         track was played yet.
+	 * @since v0.12.0
+	 */
+	public synchronized String getLatestSource(){
+		return history.peekFirst();
+	}
+	
+	/**
+	 * @return A copy of the sources of the tracks played, the most recent
+	 *         first.
+	 * @since v0.12.0
+	 */
+	public synchronized List<String> getHistory(){
+		return new ArrayList<>(history);
+	}
+	
+}
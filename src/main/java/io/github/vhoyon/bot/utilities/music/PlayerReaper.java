@@ -0,0 +1,296 @@
+package io.github.vhoyon.bot.utilities.music;
+
+import io.github.vhoyon.bot.utilities.specifics.EnvironmentConfig;
+import io.github.vhoyon.vramework.modules.Logger;
+import net.dv8tion.jda.core.entities.Member;
+import net.dv8tion.jda.core.entities.VoiceChannel;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Closes the {@link MusicPlayer} players that nobody listens to anymore, so
+ * that their AudioPlayers, queues and voice connections do not stay open for
+ * the life of the bot.
+ * <p>
+ * Every {@value #SWEEP_PERIOD} seconds, each player is checked and closed
+ * (see {@link MusicManager#reapPlayer(long, MusicPlayer)}) if it stayed in
+ * the same {@link Reason} for too long :
+ * </p>
+ * <ul>
+ * <li>{@link Reason#IDLE} and {@link Reason#ALONE} for
+ * {@code MUSIC_IDLE_TIMEOUT} minutes (environment variable,
+ * {@value #DEFAULT_IDLE_TIMEOUT} by default);</li>
+ * <li>{@link Reason#PAUSED} for {@code MUSIC_PAUSED_TIMEOUT} minutes
+ * (environment variable, {@value #DEFAULT_PAUSED_TIMEOUT} by default).</li>
+ * </ul>
+ * <p>
+ * Each player closed is logged, and the amount of players closed for each
+ * reason is counted.
+ * </p>
+ *
+ * @version 1.0
+ * @since v0.12.0
+ * @author V-ed (Guillaume Marcoux)
+ */
+public class PlayerReaper {
+	
+	public static final int DEFAULT_IDLE_TIMEOUT = 5;
+	public static final int DEFAULT_PAUSED_TIMEOUT = 30;
+	public static final int SWEEP_PERIOD = 30;
+	
+	/**
+	 * Why a player is not listened to.
+	 *
+	 * @since v0.12.0
+	 */
+	public enum Reason {
+		/** The player has nothing to play, or is not in a VoiceChannel. */
+		IDLE,
+		/** Only bots are left in the VoiceChannel of the player. */
+		ALONE,
+		/** The player is paused. */
+		PAUSED
+	}
+	
+	private static PlayerReaper playerReaper;
+	
+	private final MusicManager musicManager;
+	private final long idleTimeoutMillis;
+	private final long pausedTimeoutMillis;
+	private final LongSupplier clock;
+	
+	private final ScheduledExecutorService sweeper;
+	
+	// Only used by the sweeper thread
+	private HashMap<MusicPlayer, Inactivity> inactivities = new HashMap<>();
+	
+	private final EnumMap<Reason, LongAdder> reaped = new EnumMap<>(
+			Reason.class);
+	private final LongAdder reclaimedTracks = new LongAdder();
+	
+	private static final class Inactivity {
+		
+		private final Reason reason;
+		private final long since;
+		
+		private Inactivity(Reason reason, long since){
+			this.reason = reason;
+			this.since = since;
+		}
+		
+	}
+	
+	/**
+	 * Creates a reaper that checks the players of the {@code musicManager}
+	 * every {@code periodMillis}.
+	 *
+	 * @param musicManager
+	 *            The manager of the players to check.
+	 * @param idleTimeoutMillis
+	 *            The time a player can stay {@link Reason#IDLE idle} or
+	 *            {@link Reason#ALONE alone}, in milliseconds.
+	 * @param pausedTimeoutMillis
+	 *            The time a player can stay {@link Reason#PAUSED paused}, in
+	 *            milliseconds.
+	 * @param periodMillis
+	 *            The time between two checks, in milliseconds.
+	 * @since v0.12.0
+	 */
+	public PlayerReaper(MusicManager musicManager, long idleTimeoutMillis,
+			long pausedTimeoutMillis, long periodMillis){
+		this(musicManager, idleTimeoutMillis, pausedTimeoutMillis,
+				periodMillis, System::currentTimeMillis);
+	}
+	
+	PlayerReaper(MusicManager musicManager, long idleTimeoutMillis,
+			long pausedTimeoutMillis, long periodMillis, LongSupplier clock){
+		
+		this.musicManager = musicManager;
+		this.idleTimeoutMillis = idleTimeoutMillis;
+		this.pausedTimeoutMillis = pausedTimeoutMillis;
+		this.clock = clock;
+		
+		for(Reason reason : Reason.values())
+			this.reaped.put(reason, new LongAdder());
+		
+		this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "music-player-reaper");
+			thread.setDaemon(true);
+			return thread;
+		});
+		
+		this.sweeper.scheduleWithFixedDelay(this::sweep, periodMillis,
+				periodMillis, TimeUnit.MILLISECONDS);
+		
+	}
+	
+	/**
+	 * Starts the PlayerReaper for the whole bot, configured using the
+	 * {@code MUSIC_IDLE_TIMEOUT} and {@code MUSIC_PAUSED_TIMEOUT} environment
+	 * variables. This is done by the {@link MusicManager} when it creates its
+	 * first player. Starting it more than once does nothing.
+	 *
+	 * @return The reaper started.
+	 * @since v0.12.0
+	 */
+	public static synchronized PlayerReaper start(){
+		
+		if(playerReaper == null){
+			
+			playerReaper = new PlayerReaper(MusicManager.get(),
+					TimeUnit.MINUTES.toMillis(EnvironmentConfig.getInt(
+							"MUSIC_IDLE_TIMEOUT", DEFAULT_IDLE_TIMEOUT)),
+					TimeUnit.MINUTES.toMillis(EnvironmentConfig.getInt(
+							"MUSIC_PAUSED_TIMEOUT", DEFAULT_PAUSED_TIMEOUT)),
+					TimeUnit.SECONDS.toMillis(SWEEP_PERIOD));
+			
+		}
+		
+		return playerReaper;
+		
+	}
+	
+	/**
+	 * @return The PlayerReaper of the whole bot, or {@code null} if it was
+	 *         not started.
+	 * @since v0.12.0
+	 */
+	public static synchronized PlayerReaper get(){
+		return playerReaper;
+	}
+	
+	/**
+	 * Stops checking the players. The players already closed stay closed.
+	 *
+	 * @since v0.12.0
+	 */
+	public void stop(){
+		sweeper.shutdownNow();
+	}
+	
+	/**
+	 * @param reason
+	 *            The reason the players were closed for.
+	 * @return The amount of players closed for this reason.
+	 * @since v0.12.0
+	 */
+	public long getReapedCount(Reason reason){
+		return reaped.get(reason).sum();
+	}
+	
+	/**
+	 * @return The amount of queued tracks dropped with the players closed.
+	 * @since v0.12.0
+	 */
+	public long getReclaimedTracksCount(){
+		return reclaimedTracks.sum();
+	}
+	
+	/**
+	 * Checks every player once, closing those that nobody listened to for too
+	 * long. This is run by the sweeper thread every {@value #SWEEP_PERIOD}
+	 * seconds.
+	 * 
+	 * @since v0.12.0
+	 */
+	void sweep(){
+		
+		try{
+			
+			long now = clock.getAsLong();
+			
+			// Players that are listened to again, or that were closed
+			// meanwhile, are simply not carried over
+			HashMap<MusicPlayer, Inactivity> stillInactive = new HashMap<>();
+			
+			musicManager.forEachPlayer((guildId, player) -> {
+				
+				Reason reason = getReason(player);
+				
+				if(reason == null)
+					return;
+				
+				Inactivity inactivity = inactivities.get(player);
+				
+				if(inactivity == null || inactivity.reason != reason)
+					inactivity = new Inactivity(reason, now);
+				
+				long timeout = reason == Reason.PAUSED ? pausedTimeoutMillis
+						: idleTimeoutMillis;
+				
+				if(now - inactivity.since < timeout){
+					stillInactive.put(player, inactivity);
+				}
+				else{
+					reap(guildId, player, inactivity, now);
+				}
+				
+			});
+			
+			inactivities = stillInactive;
+			
+		}
+		catch(Exception e){
+			// Keeps the sweeper scheduled for the next check
+			Logger.log(e);
+		}
+		
+	}
+	
+	private void reap(long guildId, MusicPlayer player,
+			Inactivity inactivity, long now){
+		
+		int tracksCount = player.getNumberOfTracks();
+		
+		// Does nothing if the player was closed or replaced meanwhile
+		if(!musicManager.reapPlayer(guildId, player))
+			return;
+		
+		reaped.get(inactivity.reason).increment();
+		reclaimedTracks.add(tracksCount);
+		
+		Logger.log("Closed the music player of the guild " + guildId + " ("
+				+ inactivity.reason.name().toLowerCase() + " for "
+				+ TimeUnit.MILLISECONDS.toMinutes(now - inactivity.since)
+				+ " minutes, " + tracksCount + " queued tracks dropped).", false);
+		
+	}
+	
+	private static Reason getReason(MusicPlayer player){
+		
+		VoiceChannel channel = player.getConnectedChannel();
+		
+		if(channel == null)
+			return Reason.IDLE;
+		
+		if(player.getAudioPlayer().getPlayingTrack() == null
+				&& player.getNumberOfTracks() == 0)
+			return Reason.IDLE;
+		
+		if(isAlone(channel))
+			return Reason.ALONE;
+		
+		if(player.isPaused())
+			return Reason.PAUSED;
+		
+		return null;
+		
+	}
+	
+	private static boolean isAlone(VoiceChannel channel){
+		
+		for(Member member : channel.getMembers())
+			if(!member.getUser().isBot())
+				return false;
+		
+		return true;
+		
+	}
+	
+}
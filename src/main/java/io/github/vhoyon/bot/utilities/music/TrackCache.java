@@ -0,0 +1,525 @@
+package io.github.vhoyon.bot.utilities.music;
+
+import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded cache of the results of the resolution of track sources by
+ * lavaplayer, so that playing the same source again does not go through the
+ * network. A result is kept as the encoded tracks (see
+ * {@link com.sedmelluq.discord.lavaplayer.player.AudioPlayerManager#encodeTrack
+ * AudioPlayerManager.encodeTrack}) and their {@link AudioTrackInfo}, by the
+ * normalized source (see {@link #normalize(String)}).
+ * <p>
+ * The least recently used result is evicted once the cache is full, and each
+ * result expires after a time to live. Sources that had no match are also
+ * cached, for a shorter time. The cache can be saved to a file and loaded
+ * back (see {@link #save(File)} and {@link #load(File)}) to survive a
+ * restart of the bot.
+ * </p>
+ *
+ * @version 1.0
+ * @since v0.12.0
+ * @author V-ed (Guillaume Marcoux)
+ */
+public class TrackCache {
+	
+	private static final int SNAPSHOT_VERSION = 1;
+	
+	private final int maximumSize;
+	private final long ttlMillis;
+	private final long negativeTtlMillis;
+	private final LongSupplier clock;
+	
+	private final LinkedHashMap<String, Result> results;
+	
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	
+	/**
+	 * Creates a cache of up to {@code maximumSize} results.
+	 *
+	 * @param maximumSize
+	 *            The amount of results kept before evicting the least recently
+	 *            used ones.
+	 * @param ttlMillis
+	 *            The time a resolved source is kept, in milliseconds.
+	 * @param negativeTtlMillis
+	 *            The time a source that had no match is kept, in milliseconds.
+	 * @since v0.12.0
+	 */
+	public TrackCache(int maximumSize, long ttlMillis, long negativeTtlMillis){
+		this(maximumSize, ttlMillis, negativeTtlMillis,
+				System::currentTimeMillis);
+	}
+	
+	TrackCache(int maximumSize, long ttlMillis, long negativeTtlMillis,
+			LongSupplier clock){
+		
+		if(maximumSize < 1)
+			throw new IllegalArgumentException(
+					"The cache must be able to hold at least one result!");
+		
+		this.maximumSize = maximumSize;
+		this.ttlMillis = ttlMillis;
+		this.negativeTtlMillis = negativeTtlMillis;
+		this.clock = clock;
+		
+		this.results = new LinkedHashMap<String, Result>(16, 0.75f, true){
+			@Override
+			protected boolean removeEldestEntry(
+					Map.Entry<String, Result> eldest){
+				return size() > TrackCache.this.maximumSize;
+			}
+		};
+		
+	}
+	
+	/**
+	 * Normalizes a source so that the different ways of writing the same
+	 * source share their result : the spaces around it are removed, the
+	 * scheme and the fragment of links are ignored, the host of links is
+	 * lower cased and the links of YouTube videos (such as
+	 * {@code https://youtu.be/ID} or
+	 * {@code https://www.youtube.com/watch?v=ID}) are reduced to
+	 * {@code youtube:ID}.
+	 *
+	 * @param source
+	 *            The source given to lavaplayer.
+	 * @return The key of the source in the cache.
+	 * @since v0.12.0
+	 */
+	public static String normalize(String source){
+		
+		String trimmed = source.trim();
+		
+		String lowerCased = trimmed.toLowerCase();
+		
+		if(!lowerCased.startsWith("http://")
+				&& !lowerCased.startsWith("https://")){
+			
+			// Searches do not depend on the case
+			if(lowerCased.startsWith("ytsearch:")
+					|| lowerCased.startsWith("scsearch:"))
+				return lowerCased;
+			
+			return trimmed;
+			
+		}
+		
+		URI uri;
+		
+		try{
+			uri = new URI(trimmed);
+		}
+		catch(URISyntaxException e){
+			return trimmed;
+		}
+		
+		if(uri.getHost() == null)
+			return trimmed;
+		
+		String host = uri.getHost().toLowerCase();
+		
+		if(host.startsWith("www."))
+			host = host.substring(4);
+		else if(host.startsWith("m."))
+			host = host.substring(2);
+		
+		String path = uri.getRawPath() == null ? "" : uri.getRawPath();
+		String query = uri.getRawQuery();
+		
+		if(host.equals("youtu.be") && path.length() > 1)
+			return "youtube:" + path.substring(1);
+		
+		if(host.equals("youtube.com") && path.equals("/watch") && query != null){
+			
+			String videoId = null;
+			boolean isInPlaylist = false;
+			
+			for(String parameter : query.split("&")){
+				if(parameter.startsWith("v="))
+					videoId = parameter.substring(2);
+				else if(parameter.startsWith("list="))
+					isInPlaylist = true;
+			}
+			
+			if(videoId != null && !isInPlaylist)
+				return "youtube:" + videoId;
+			
+		}
+		
+		return host + path + (query == null ? "" : "?" + query);
+		
+	}
+	
+	/**
+	 * Gets the result of the resolution of a source, if it is cached and did
+	 * not expire.
+	 *
+	 * @param key
+	 *            The normalized source.
+	 * @return The result of the resolution or {@code null} if the source must
+	 *         be resolved.
+	 * @since v0.12.0
+	 */
+	public synchronized Result get(String key){
+		
+		Result result = results.get(key);
+		
+		if(result != null && result.expiresAt <= clock.getAsLong()){
+			results.remove(key);
+			result = null;
+		}
+		
+		if(result == null)
+			misses.increment();
+		else
+			hits.increment();
+		
+		return result;
+		
+	}
+	
+	/**
+	 * Caches the tracks a source was resolved to.
+	 *
+	 * @param key
+	 *            The normalized source.
+	 * @param playlistName
+	 *            The name of the playlist the source was resolved to, or
+	 *            {@code null} if it was resolved to a single track.
+	 * @param encodedTracks
+	 *            The encoded tracks.
+	 * @param infos
+	 *            The informations of each track, in the same order.
+	 * @since v0.12.0
+	 */
+	public synchronized void putTracks(String key, String playlistName,
+			List<byte[]> encodedTracks, List<AudioTrackInfo> infos){
+		
+		if(encodedTracks.isEmpty())
+			throw new IllegalArgumentException(
+					"A source resolved to no track must be cached as no match!");
+		
+		if(encodedTracks.size() != infos.size())
+			throw new IllegalArgumentException(
+					"Each encoded track must have its informations!");
+		
+		results.put(key, new Result(playlistName, encodedTracks, infos,
+				clock.getAsLong() + ttlMillis));
+		
+	}
+	
+	/**
+	 * Caches that a source had no match.
+	 *
+	 * @param key
+	 *            The normalized source.
+	 * @since v0.12.0
+	 */
+	public synchronized void putNoMatch(String key){
+		results.put(key, new Result(null, Collections.emptyList(),
+				Collections.emptyList(), clock.getAsLong() + negativeTtlMillis));
+	}
+	
+	/**
+	 * Removes the result of a source, such as when its tracks could not be
+	 * decoded anymore.
+	 *
+	 * @param key
+	 *            The normalized source.
+	 * @since v0.12.0
+	 */
+	public synchronized void invalidate(String key){
+		results.remove(key);
+	}
+	
+	/**
+	 * @return The amount of results cached, including the expired ones that
+	 *         were not evicted yet.
+	 * @since v0.12.0
+	 */
+	public synchronized int size(){
+		return results.size();
+	}
+	
+	/**
+	 * @return The amount of lookups that found a result.
+	 * @since v0.12.0
+	 */
+	public long getHitsCount(){
+		return hits.sum();
+	}
+	
+	/**
+	 * @return The amount of lookups that found no result.
+	 * @since v0.12.0
+	 */
+	public long getMissesCount(){
+		return misses.sum();
+	}
+	
+	/**
+	 * Saves the results that did not expire in the {@code file}, from the
+	 * least to the most recently used.
+	 *
+	 * @param file
+	 *            The file to write.
+	 * @return The amount of results saved.
+	 * @throws IOException
+	 *             If the file cannot be written.
+	 * @since v0.12.0
+	 */
+	public int save(File file) throws IOException{
+		
+		List<Map.Entry<String, Result>> entries;
+		
+		synchronized(this){
+			entries = new ArrayList<>(results.entrySet());
+		}
+		
+		long now = clock.getAsLong();
+		
+		File temporary = new File(file.getPath() + ".tmp");
+		
+		int count = 0;
+		
+		try(DataOutputStream output = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(temporary)))){
+			
+			output.writeInt(SNAPSHOT_VERSION);
+			
+			for(Map.Entry<String, Result> entry : entries){
+				
+				Result result = entry.getValue();
+				
+				if(result.expiresAt <= now)
+					continue;
+				
+				output.writeBoolean(true);
+				output.writeUTF(entry.getKey());
+				output.writeLong(result.expiresAt);
+				
+				writeNullable(output, result.playlistName);
+				
+				output.writeInt(result.encodedTracks.size());
+				
+				for(int i = 0; i < result.encodedTracks.size(); i++){
+					
+					byte[] encodedTrack = result.encodedTracks.get(i);
+					AudioTrackInfo info = result.infos.get(i);
+					
+					output.writeInt(encodedTrack.length);
+					output.write(encodedTrack);
+					
+					writeNullable(output, info.title);
+					writeNullable(output, info.author);
+					output.writeLong(info.length);
+					writeNullable(output, info.identifier);
+					output.writeBoolean(info.isStream);
+					writeNullable(output, info.uri);
+					
+				}
+				
+				count++;
+				
+			}
+			
+			output.writeBoolean(false);
+			
+		}
+		
+		// Never leave a half written snapshot if the bot is killed meanwhile
+		Files.move(temporary.toPath(), file.toPath(),
+				StandardCopyOption.REPLACE_EXISTING);
+		
+		return count;
+		
+	}
+	
+	/**
+	 * Loads the results saved in the {@code file} by {@link #save(File)},
+	 * ignoring the ones that expired since.
+	 *
+	 * @param file
+	 *            The file to read.
+	 * @return The amount of results loaded.
+	 * @throws IOException
+	 *             If the file cannot be read or is not a snapshot of this
+	 *             cache.
+	 * @since v0.12.0
+	 */
+	public int load(File file) throws IOException{
+		
+		long now = clock.getAsLong();
+		
+		int count = 0;
+		
+		try(DataInputStream input = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(file)))){
+			
+			if(input.readInt() != SNAPSHOT_VERSION)
+				throw new IOException("The file " + file.getName()
+						+ " is not a snapshot of this version of the cache!");
+			
+			while(input.readBoolean()){
+				
+				String key = input.readUTF();
+				long expiresAt = input.readLong();
+				String playlistName = readNullable(input);
+				
+				int tracksCount = input.readInt();
+				
+				List<byte[]> encodedTracks = new ArrayList<>(tracksCount);
+				List<AudioTrackInfo> infos = new ArrayList<>(tracksCount);
+				
+				for(int i = 0; i < tracksCount; i++){
+					
+					byte[] encodedTrack = new byte[input.readInt()];
+					input.readFully(encodedTrack);
+					
+					encodedTracks.add(encodedTrack);
+					infos.add(new AudioTrackInfo(readNullable(input),
+							readNullable(input), input.readLong(),
+							readNullable(input), input.readBoolean(),
+							readNullable(input)));
+					
+				}
+				
+				if(expiresAt <= now)
+					continue;
+				
+				synchronized(this){
+					results.put(key, new Result(playlistName, encodedTracks,
+							infos, expiresAt));
+				}
+				
+				count++;
+				
+			}
+			
+		}
+		
+		return count;
+		
+	}
+	
+	/**
+	 * Removes the results that expired.
+	 *
+	 * @return The amount of results removed.
+	 * @since v0.12.0
+	 */
+	public synchronized int evictExpired(){
+		
+		long now = clock.getAsLong();
+		
+		int count = 0;
+		
+		for(Iterator<Result> iterator = results.values().iterator(); iterator
+				.hasNext();){
+			if(iterator.next().expiresAt <= now){
+				iterator.remove();
+				count++;
+			}
+		}
+		
+		return count;
+		
+	}
+	
+	private static void writeNullable(DataOutputStream output, String value)
+			throws IOException{
+		
+		output.writeBoolean(value != null);
+		
+		if(value != null)
+			output.writeUTF(value);
+		
+	}
+	
+	private static String readNullable(DataInputStream input)
+			throws IOException{
+		return input.readBoolean() ? input.readUTF() : null;
+	}
+	
+	/**
+	 * The tracks a source was resolved to, or the fact that it had no match.
+	 *
+	 * @since v0.12.0
+	 */
+	public static final class Result {
+		
+		private final String playlistName;
+		private final List<byte[]> encodedTracks;
+		private final List<AudioTrackInfo> infos;
+		private final long expiresAt;
+		
+		private Result(String playlistName, List<byte[]> encodedTracks,
+				List<AudioTrackInfo> infos, long expiresAt){
+			this.playlistName = playlistName;
+			this.encodedTracks = Collections.unmodifiableList(encodedTracks);
+			this.infos = Collections.unmodifiableList(infos);
+			this.expiresAt = expiresAt;
+		}
+		
+		/**
+		 * @return {@code true} if the source had no match.
+		 */
+		public boolean isNoMatch(){
+			return encodedTracks.isEmpty();
+		}
+		
+		/**
+		 * @return {@code true} if the source was resolved to a playlist.
+		 */
+		public boolean isPlaylist(){
+			return playlistName != null;
+		}
+		
+		/**
+		 * @return The name of the playlist, or {@code null} for a single
+		 *         track.
+		 */
+		public String getPlaylistName(){
+			return playlistName;
+		}
+		
+		/**
+		 * @return The encoded tracks.
+		 */
+		public List<byte[]> getEncodedTracks(){
+			return encodedTracks;
+		}
+		
+		/**
+		 * @return The informations of each track.
+		 */
+		public List<AudioTrackInfo> getInfos(){
+			return infos;
+		}
+		
+	}
+	
+}
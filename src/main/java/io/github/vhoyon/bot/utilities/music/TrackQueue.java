@@ -0,0 +1,391 @@
+package io.github.vhoyon.bot.utilities.music;
+
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Playlist of the tracks waiting to be played by a {@link MusicPlayer},
+ * stored in a ring buffer so that the tracks can be reached by their index.
+ * <p>
+ * Taking the first track, adding tracks at the end and skipping to an index
+ * only move the start or the end of the ring : no track in between is ever
+ * touched, let alone started. Removing and moving a track shift the tracks
+ * between the two positions with a single array copy. Every operation takes
+ * the lock of the queue once, whatever the amount of tracks it handles, and
+ * the size can be read without locking.
+ * </p>
+ *
+ * @version 1.0
+ * @since v0.12.0
+ * @author V-ed (Guillaume Marcoux)
+ */
+public class TrackQueue implements Iterable<AudioTrack> {
+	
+	private static final int INITIAL_CAPACITY = 16;
+	
+	private AudioTrack[] tracks = new AudioTrack[INITIAL_CAPACITY];
+	private int head;
+	private volatile int size;
+	
+	/**
+	 * @return The amount of tracks in the queue.
+	 * @since v0.12.0
+	 */
+	public int size(){
+		return size;
+	}
+	
+	/**
+	 * @return {@code true} if the queue has no track.
+	 * @since v0.12.0
+	 */
+	public boolean isEmpty(){
+		return size == 0;
+	}
+	
+	/**
+	 * Adds a track at the end of the queue.
+	 *
+	 * @param track
+	 *            The track to add.
+	 * @since v0.12.0
+	 */
+	public synchronized void add(AudioTrack track){
+		
+		ensureCapacity(size + 1);
+		
+		tracks[slot(size)] = track;
+		size++;
+		
+	}
+	
+	/**
+	 * Adds all the {@code tracks} at the end of the queue, in their order.
+	 *
+	 * @param tracks
+	 *            The tracks to add.
+	 * @since v0.12.0
+	 */
+	public synchronized void addAll(List<AudioTrack> tracks){
+		
+		ensureCapacity(size + tracks.size());
+		
+		int newSize = size;
+		
+		for(AudioTrack track : tracks)
+			this.tracks[slot(newSize++)] = track;
+		
+		size = newSize;
+		
+	}
+	
+	/**
+	 * @return The first track of the queue, or {@code null} if it is empty.
+	 * @since v0.12.0
+	 */
+	public synchronized AudioTrack peek(){
+		return size == 0 ? null : tracks[head];
+	}
+	
+	/**
+	 * Removes the first track of the queue.
+	 *
+	 * @return The first track, or {@code null} if the queue is empty.
+	 * @since v0.12.0
+	 */
+	public synchronized AudioTrack poll(){
+		
+		if(size == 0)
+			return null;
+		
+		AudioTrack track = tracks[head];
+		
+		tracks[head] = null;
+		head = slot(1);
+		size--;
+		
+		return track;
+		
+	}
+	
+	/**
+	 * Gets the track at the {@code index}.
+	 *
+	 * @param index
+	 *            The index of the track, {@code 0} being the first track.
+	 * @return The track at this index.
+	 * @throws IndexOutOfBoundsException
+	 *             If there is no track at this index.
+	 * @since v0.12.0
+	 */
+	public synchronized AudioTrack get(int index){
+		
+		checkIndex(index);
+		
+		return tracks[slot(index)];
+		
+	}
+	
+	/**
+	 * Removes the tracks before the {@code index} and takes the track at this
+	 * index out of the queue, such as to play it right away.
+	 *
+	 * @param index
+	 *            The index of the track, {@code 0} being the first track.
+	 * @return The track that was at this index.
+	 * @throws IndexOutOfBoundsException
+	 *             If there is no track at this index.
+	 * @since v0.12.0
+	 */
+	public synchronized AudioTrack skipTo(int index){
+		
+		checkIndex(index);
+		
+		AudioTrack track = tracks[slot(index)];
+		
+		clearSlots(0, index + 1);
+		
+		head = slot(index + 1);
+		size -= index + 1;
+		
+		return track;
+		
+	}
+	
+	/**
+	 * Removes the track at the {@code index}.
+	 *
+	 * @param index
+	 *            The index of the track, {@code 0} being the first track.
+	 * @return The track removed.
+	 * @throws IndexOutOfBoundsException
+	 *             If there is no track at this index.
+	 * @since v0.12.0
+	 */
+	public synchronized AudioTrack removeAt(int index){
+		
+		checkIndex(index);
+		
+		AudioTrack track = tracks[slot(index)];
+		
+		// Shift the shortest side of the ring over the removed track
+		if(index < size / 2){
+			shift(0, index, 1);
+			tracks[head] = null;
+			head = slot(1);
+		}
+		else{
+			shift(index + 1, size, -1);
+			tracks[slot(size - 1)] = null;
+		}
+		
+		size--;
+		
+		return track;
+		
+	}
+	
+	/**
+	 * Moves the track at the index {@code from} to the index {@code to},
+	 * shifting the tracks in between.
+	 *
+	 * @param from
+	 *            The index of the track to move.
+	 * @param to
+	 *            The index the track must have once moved.
+	 * @return The track moved.
+	 * @throws IndexOutOfBoundsException
+	 *             If there is no track at one of these indexes.
+	 * @since v0.12.0
+	 */
+	public synchronized AudioTrack move(int from, int to){
+		
+		checkIndex(from);
+		checkIndex(to);
+		
+		AudioTrack track = tracks[slot(from)];
+		
+		if(from < to)
+			shift(from + 1, to + 1, -1);
+		else if(from > to)
+			shift(to, from, 1);
+		
+		tracks[slot(to)] = track;
+		
+		return track;
+		
+	}
+	
+	/**
+	 * Gets a copy of the tracks from the index {@code from} (included) to
+	 * {@code to} (excluded), such as to show a page of the playlist.
+	 *
+	 * @param from
+	 *            The index of the first track.
+	 * @param to
+	 *            The index after the last track, lowered to the size of the
+	 *            queue if it is greater.
+	 * @return The tracks in this range, which is empty if {@code from} is not
+	 *         lower than the size of the queue.
+	 * @since v0.12.0
+	 */
+	public synchronized List<AudioTrack> getRange(int from, int to){
+		
+		if(from < 0)
+			throw new IndexOutOfBoundsException("Index: " + from);
+		
+		int end = Math.min(to, size);
+		
+		if(from >= end)
+			return Collections.emptyList();
+		
+		List<AudioTrack> range = new ArrayList<>(end - from);
+		
+		for(int i = from; i < end; i++)
+			range.add(tracks[slot(i)]);
+		
+		return range;
+		
+	}
+	
+	/**
+	 * Shuffles the tracks of the queue in place.
+	 *
+	 * @param random
+	 *            The source of randomness.
+	 * @since v0.12.0
+	 */
+	public synchronized void shuffle(Random random){
+		
+		for(int i = size - 1; i > 0; i--){
+			
+			int j = random.nextInt(i + 1);
+			
+			AudioTrack track = tracks[slot(i)];
+			tracks[slot(i)] = tracks[slot(j)];
+			tracks[slot(j)] = track;
+			
+		}
+		
+	}
+	
+	/**
+	 * Removes all the tracks of the queue.
+	 *
+	 * @since v0.12.0
+	 */
+	public synchronized void clear(){
+		
+		clearSlots(0, size);
+		
+		head = 0;
+		size = 0;
+		
+	}
+	
+	/**
+	 * @return A copy of the tracks of the queue, in their order.
+	 * @since v0.12.0
+	 */
+	public synchronized List<AudioTrack> toList(){
+		return getRange(0, size);
+	}
+	
+	/**
+	 * Iterates over a copy of the tracks, so that the queue can be changed
+	 * meanwhile.
+	 */
+	@Override
+	public Iterator<AudioTrack> iterator(){
+		return toList().iterator();
+	}
+	
+	private int slot(int index){
+		
+		int slot = head + index;
+		
+		return slot >= tracks.length ? slot - tracks.length : slot;
+		
+	}
+	
+	private void checkIndex(int index){
+		if(index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: "
+					+ size);
+	}
+	
+	private void ensureCapacity(int capacity){
+		
+		if(capacity <= tracks.length)
+			return;
+		
+		int newLength = tracks.length;
+		
+		while(newLength < capacity)
+			newLength *= 2;
+		
+		AudioTrack[] newTracks = new AudioTrack[newLength];
+		
+		int firstPart = Math.min(size, tracks.length - head);
+		
+		System.arraycopy(tracks, head, newTracks, 0, firstPart);
+		System.arraycopy(tracks, 0, newTracks, firstPart, size - firstPart);
+		
+		tracks = newTracks;
+		head = 0;
+		
+	}
+	
+	/**
+	 * Moves the tracks from the index {@code from} (included) to {@code to}
+	 * (excluded) by {@code offset} indexes, with a single array copy unless
+	 * the tracks wrap around the end of the array.
+	 */
+	private void shift(int from, int to, int offset){
+		
+		if(from >= to)
+			return;
+		
+		int start = slot(from);
+		int end = slot(to - 1);
+		
+		if(start <= end && start + offset >= 0
+				&& end + offset < tracks.length){
+			System.arraycopy(tracks, start, tracks, start + offset, to - from);
+			return;
+		}
+		
+		// The range wraps around the end of the array
+		if(offset > 0){
+			for(int i = to - 1; i >= from; i--)
+				tracks[slot(i + offset)] = tracks[slot(i)];
+		}
+		else{
+			for(int i = from; i < to; i++)
+				tracks[slot(i + offset)] = tracks[slot(i)];
+		}
+		
+	}
+	
+	private void clearSlots(int from, int to){
+		
+		int count = to - from;
+		
+		if(count <= 0)
+			return;
+		
+		int start = slot(from);
+		int firstPart = Math.min(count, tracks.length - start);
+		
+		Arrays.fill(tracks, start, start + firstPart, null);
+		Arrays.fill(tracks, 0, count - firstPart, null);
+		
+	}
+	
+}
@@ -0,0 +1,373 @@
+package io.github.vhoyon.bot.utilities.music;
+
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.services.youtube.YouTube;
+import com.google.api.services.youtube.model.SearchListResponse;
+import com.google.api.services.youtube.model.SearchResult;
+import io.github.vhoyon.bot.utilities.specifics.EnvironmentConfig;
+import io.github.vhoyon.vramework.modules.Environment;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Searches videos on YouTube using the YouTube Data API, with a single client
+ * for the whole bot so that its connections are reused.
+ * <p>
+ * The ID of the video found for a query is cached for
+ * {@code YOUTUBE_SEARCH_TTL} minutes (environment variable,
+ * {@value #DEFAULT_TTL} by default), and searching a query that is already
+ * being searched waits for that search instead of calling YouTube again : ten
+ * users searching the same song at once make a single call.
+ * </p>
+ * <p>
+ * The calls to YouTube are made by a small pool of threads of this client
+ * (see {@link #searchAsync(String)}), so that a slow search never holds the
+ * thread of the command that asked for it.
+ * </p>
+ *
+ * @version 1.0
+ * @since v0.12.0
+ * @author V-ed (Guillaume Marcoux)
+ */
+public class YouTubeSearch {
+	
+	public static final String DEFAULT_ROOT_URL = "https://www.googleapis.com/";
+	public static final int DEFAULT_TTL = 60;
+	public static final int DEFAULT_CACHE_SIZE = 1000;
+	
+	private static final int CONNECT_TIMEOUT = 5000;
+	private static final int READ_TIMEOUT = 10000;
+	private static final int SEARCH_THREADS = 4;
+	private static final int MAX_PENDING_SEARCHES = 256;
+	
+	private static YouTubeSearch youTubeSearch;
+	
+	private final YouTube youtube;
+	private final String apiKey;
+	private final long ttlMillis;
+	private final LongSupplier clock;
+	private final ExecutorService executor;
+	
+	private final LinkedHashMap<String, CachedVideo> videos;
+	private final ConcurrentHashMap<String, CompletableFuture<String>> searches = new ConcurrentHashMap<>();
+	
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder calls = new LongAdder();
+	private final LongAdder coalesced = new LongAdder();
+	
+	/**
+	 * Creates a search client for the YouTube API at {@code rootUrl}.
+	 *
+	 * @param apiKey
+	 *            The key of the YouTube Data API.
+	 * @param rootUrl
+	 *            The root URL of the API, such as {@value #DEFAULT_ROOT_URL}.
+	 * @param ttlMillis
+	 *            The time the result of a query is kept, in milliseconds.
+	 * @param cacheSize
+	 *            The amount of queries kept before evicting the least recently
+	 *            used ones.
+	 * @since v0.12.0
+	 */
+	public YouTubeSearch(String apiKey, String rootUrl, long ttlMillis,
+			int cacheSize){
+		this(apiKey, rootUrl, ttlMillis, cacheSize, System::currentTimeMillis);
+	}
+	
+	YouTubeSearch(String apiKey, String rootUrl, long ttlMillis,
+			int cacheSize, LongSupplier clock){
+		
+		this.youtube = new YouTube.Builder(new NetHttpTransport(),
+				JacksonFactory.getDefaultInstance(), request -> {
+					request.setConnectTimeout(CONNECT_TIMEOUT);
+					request.setReadTimeout(READ_TIMEOUT);
+				}).setRootUrl(rootUrl).setApplicationName("Discord Bot")
+				.build();
+		
+		this.apiKey = apiKey;
+		this.ttlMillis = ttlMillis;
+		this.clock = clock;
+		
+		AtomicInteger threadsCount = new AtomicInteger();
+		
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(SEARCH_THREADS,
+				SEARCH_THREADS, 60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(MAX_PENDING_SEARCHES), runnable -> {
+					Thread thread = new Thread(runnable, "youtube-search-"
+							+ threadsCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		
+		pool.allowCoreThreadTimeOut(true);
+		
+		this.executor = pool;
+		
+		this.videos = new LinkedHashMap<String, CachedVideo>(16, 0.75f, true){
+			@Override
+			protected boolean removeEldestEntry(
+					Map.Entry<String, CachedVideo> eldest){
+				return size() > cacheSize;
+			}
+		};
+		
+	}
+	
+	/**
+	 * Gets the search client of the whole bot, which uses the key of the
+	 * {@code YOUTUBE_TOKEN} environment variable.
+	 *
+	 * @return The only instance of the search client.
+	 * @throws IllegalStateException
+	 *             If the environment variable {@code YOUTUBE_TOKEN} is not set.
+	 * @since v0.12.0
+	 */
+	public static synchronized YouTubeSearch get() throws IllegalStateException{
+		
+		if(youTubeSearch == null){
+			
+			String apiKey = Environment.getVar("YOUTUBE_TOKEN", null);
+			
+			if(apiKey == null)
+				throw new IllegalStateException("youtube");
+			
+			youTubeSearch = new YouTubeSearch(apiKey, DEFAULT_ROOT_URL,
+					TimeUnit.MINUTES.toMillis(EnvironmentConfig.getInt(
+							"YOUTUBE_SEARCH_TTL", DEFAULT_TTL)),
+					DEFAULT_CACHE_SIZE);
+			
+		}
+		
+		return youTubeSearch;
+		
+	}
+	
+	/**
+	 * Normalizes a query so that queries that only differ by their case or
+	 * their spaces share their result.
+	 *
+	 * @param query
+	 *            The text searched.
+	 * @return The key of the query in the cache.
+	 * @since v0.12.0
+	 */
+	public static String normalize(String query){
+		return query.trim().replaceAll("\\s+", " ").toLowerCase();
+	}
+	
+	/**
+	 * Finds the ID of the first video that YouTube finds for the
+	 * {@code query}, like if a user searched in the search bar of YouTube,
+	 * waiting for the search to end.
+	 *
+	 * @param query
+	 *            The text to search.
+	 * @return The ID of the video found.
+	 * @throws IOException
+	 *             If the search failed or if no video was found.
+	 * @since v0.12.0
+	 * @see #searchAsync(String)
+	 */
+	public String search(String query) throws IOException{
+		return await(searchAsync(query));
+	}
+	
+	/**
+	 * Starts to search the first video that YouTube finds for the
+	 * {@code query} without waiting for it. A cached result is returned right
+	 * away, and a query that is already being searched returns the future of
+	 * that search.
+	 *
+	 * @param query
+	 *            The text to search.
+	 * @return A future completed with the ID of the video found, or
+	 *         completed exceptionally with an {@link IOException} if the
+	 *         search failed or if no video was found.
+	 * @since v0.12.0
+	 */
+	public CompletableFuture<String> searchAsync(String query){
+		
+		String key = normalize(query);
+		
+		String videoId = getCached(key);
+		
+		if(videoId != null){
+			hits.increment();
+			return CompletableFuture.completedFuture(videoId);
+		}
+		
+		CompletableFuture<String> search = new CompletableFuture<>();
+		CompletableFuture<String> runningSearch = searches.putIfAbsent(key,
+				search);
+		
+		if(runningSearch != null){
+			coalesced.increment();
+			return runningSearch;
+		}
+		
+		try{
+			executor.execute(() -> runSearch(key, query, search));
+		}
+		catch(RejectedExecutionException e){
+			
+			searches.remove(key, search);
+			
+			search.completeExceptionally(new IOException(
+					"Too many searches are waiting for YouTube!", e));
+			
+		}
+		
+		return search;
+		
+	}
+	
+	/**
+	 * @return The amount of searches answered from the cache.
+	 * @since v0.12.0
+	 */
+	public long getHitsCount(){
+		return hits.sum();
+	}
+	
+	/**
+	 * @return The amount of searches sent to YouTube.
+	 * @since v0.12.0
+	 */
+	public long getCallsCount(){
+		return calls.sum();
+	}
+	
+	/**
+	 * @return The amount of searches that waited for the same query already
+	 *         being searched instead of calling YouTube.
+	 * @since v0.12.0
+	 */
+	public long getCoalescedCount(){
+		return coalesced.sum();
+	}
+	
+	private void runSearch(String key, String query,
+			CompletableFuture<String> search){
+		
+		try{
+			
+			// Another search of this query might have ended meanwhile
+			String videoId = getCached(key);
+			
+			if(videoId == null)
+				videoId = searchYouTube(query);
+			
+			synchronized(videos){
+				videos.put(key, new CachedVideo(videoId, clock.getAsLong()
+						+ ttlMillis));
+			}
+			
+			search.complete(videoId);
+			
+		}
+		catch(IOException | RuntimeException e){
+			search.completeExceptionally(e);
+		}
+		finally{
+			searches.remove(key, search);
+		}
+		
+	}
+	
+	private String getCached(String key){
+		
+		synchronized(videos){
+			
+			CachedVideo video = videos.get(key);
+			
+			if(video == null)
+				return null;
+			
+			if(video.expiresAt <= clock.getAsLong()){
+				videos.remove(key);
+				return null;
+			}
+			
+			return video.videoId;
+			
+		}
+		
+	}
+	
+	private String searchYouTube(String query) throws IOException{
+		
+		calls.increment();
+		
+		YouTube.Search.List search = youtube.search().list("snippet");
+		
+		search.setMaxResults(1L);
+		search.setType("video");
+		search.setQ(query);
+		search.setKey(apiKey);
+		
+		SearchListResponse response = search.execute();
+		
+		List<SearchResult> items = response.getItems();
+		
+		if(items == null || items.isEmpty() || items.get(0).getId() == null
+				|| items.get(0).getId().getVideoId() == null)
+			throw new IOException("No video found for \"" + query + "\"!");
+		
+		return items.get(0).getId().getVideoId();
+		
+	}
+	
+	private static String await(CompletableFuture<String> search)
+			throws IOException{
+		
+		try{
+			return search.get();
+		}
+		catch(InterruptedException e){
+			
+			Thread.currentThread().interrupt();
+			
+			throw new InterruptedIOException(
+					"Interrupted while waiting for the search!");
+			
+		}
+		catch(ExecutionException e){
+			
+			if(e.getCause() instanceof IOException)
+				throw (IOException)e.getCause();
+			
+			throw new IOException(e.getCause());
+			
+		}
+		
+	}
+	
+	private static final class CachedVideo {
+		
+		private final String videoId;
+		private final long expiresAt;
+		
+		private CachedVideo(String videoId, long expiresAt){
+			this.videoId = videoId;
+			this.expiresAt = expiresAt;
+		}
+		
+	}
+	
+}
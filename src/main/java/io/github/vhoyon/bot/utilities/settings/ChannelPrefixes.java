@@ -0,0 +1,152 @@
+package io.github.vhoyon.bot.utilities.settings;
+
+import io.github.vhoyon.bot.utilities.specifics.LongKeyedMap;
+
+/**
+ * Cache of the {@code prefix} and {@code param_prefix} settings of every
+ * TextChannel, which are read for every message received.
+ * <p>
+ * The prefixes are kept in a {@link LongKeyedMap} keyed by the channel's ID
+ * and only for the channels that changed one of them, so that reading them
+ * is a lock-free lookup that does not build any key, box any value nor create
+ * any {@link io.github.vhoyon.vramework.utilities.settings.Setting Setting}
+ * object. The cache of a channel must be refreshed using
+ * {@link #invalidate(long)} whenever one of its prefixes changes in the
+ * {@link ChannelSettings}.
+ * </p>
+ *
+ * @version 1.0
+ * @since v0.12.0
+ * @author V-ed (Guillaume Marcoux)
+ */
+public class ChannelPrefixes {
+	
+	public static final String PREFIX = "prefix";
+	public static final String PARAMETER_PREFIX = "param_prefix";
+	
+	private final ChannelSettings channelSettings;
+	private final Prefixes defaults;
+	private final LongKeyedMap<Prefixes> customPrefixes = new LongKeyedMap<>();
+	
+	private static final class Holder {
+		private static final ChannelPrefixes INSTANCE = new ChannelPrefixes(
+				ChannelSettings.get());
+	}
+	
+	private static final class Prefixes {
+		
+		private final String commandPrefix;
+		private final char parameterPrefix;
+		
+		private Prefixes(String commandPrefix, char parameterPrefix){
+			this.commandPrefix = commandPrefix;
+			this.parameterPrefix = parameterPrefix;
+		}
+		
+		private boolean isSame(Prefixes other){
+			return this.parameterPrefix == other.parameterPrefix
+					&& this.commandPrefix.equals(other.commandPrefix);
+		}
+		
+	}
+	
+	/**
+	 * Creates a cache of the prefixes stored in the {@code channelSettings}.
+	 *
+	 * @param channelSettings
+	 *            The settings of the channels to read the prefixes from.
+	 * @since v0.12.0
+	 */
+	public ChannelPrefixes(ChannelSettings channelSettings){
+		
+		this.channelSettings = channelSettings;
+		
+		String commandPrefix = channelSettings.getDefaults().getFieldValue(
+				PREFIX);
+		char parameterPrefix = channelSettings.getDefaults().getFieldValue(
+				PARAMETER_PREFIX);
+		
+		this.defaults = new Prefixes(commandPrefix, parameterPrefix);
+		
+	}
+	
+	/**
+	 * Gets the ChannelPrefixes for the whole bot, which reads the prefixes of
+	 * {@link ChannelSettings#get()}.
+	 *
+	 * @return The only instance of the ChannelPrefixes.
+	 * @since v0.12.0
+	 */
+	public static ChannelPrefixes get(){
+		return Holder.INSTANCE;
+	}
+	
+	/**
+	 * @param channelId
+	 *            The ID of the channel.
+	 * @return The prefix of the commands in the channel.
+	 * @since v0.12.0
+	 */
+	public String getCommandPrefix(long channelId){
+		return getPrefixes(channelId).commandPrefix;
+	}
+	
+	/**
+	 * @param channelId
+	 *            The ID of the channel.
+	 * @return The prefix of the parameters of the commands in the channel.
+	 * @since v0.12.0
+	 */
+	public char getParameterPrefix(long channelId){
+		return getPrefixes(channelId).parameterPrefix;
+	}
+	
+	/**
+	 * @return The prefix of the commands of the channels that did not change
+	 *         theirs.
+	 * @since v0.12.0
+	 */
+	public String getDefaultCommandPrefix(){
+		return defaults.commandPrefix;
+	}
+	
+	/**
+	 * Reloads the prefixes of a channel from the {@link ChannelSettings}. The
+	 * channel is forgotten if it uses the default prefixes.
+	 *
+	 * @param channelId
+	 *            The ID of the channel whose settings changed.
+	 * @since v0.12.0
+	 */
+	public synchronized void invalidate(long channelId){
+		
+		String commandPrefix = channelSettings.getValue(channelId, PREFIX);
+		char parameterPrefix = channelSettings.getValue(channelId,
+				PARAMETER_PREFIX);
+		
+		Prefixes prefixes = new Prefixes(commandPrefix, parameterPrefix);
+		
+		if(prefixes.isSame(defaults))
+			customPrefixes.remove(channelId);
+		else
+			customPrefixes.put(channelId, prefixes);
+		
+	}
+	
+	/**
+	 * @return The amount of channels that use custom prefixes.
+	 * @since v0.12.0
+	 */
+	public int getCustomPrefixesCount(){
+		return customPrefixes.size();
+	}
+	
+	private Prefixes getPrefixes(long channelId){
+		
+		Prefixes prefixes = customPrefixes.get(channelId);
+		
+		return prefixes == null ? defaults : prefixes;
+		
+	}
+	
+}
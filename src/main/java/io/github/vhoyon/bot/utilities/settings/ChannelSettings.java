@@ -0,0 +1,351 @@
+package io.github.vhoyon.bot.utilities.settings;
+
+import io.github.vhoyon.bot.utilities.interfaces.Resources;
+import io.github.vhoyon.bot.utilities.specifics.LongKeyedMap;
+import io.github.vhoyon.vramework.exceptions.BadFormatException;
+import io.github.vhoyon.vramework.modules.Logger;
+import io.github.vhoyon.vramework.objects.Dictionary;
+import io.github.vhoyon.vramework.utilities.settings.Setting;
+import io.github.vhoyon.vramework.utilities.settings.SettingField;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Flyweight storage of the settings of every TextChannel.
+ * <p>
+ * All the channels share a single {@link Setting} object holding the default
+ * values, which must never be changed. Only the settings that a channel
+ * overrides are stored for it, in a compact array indexed by the position of
+ * the setting in {@link Resources#SETTINGS} and kept in a
+ * {@link LongKeyedMap} keyed by the channel's ID. A full {@link Setting}
+ * object is only created for a channel when one of its settings is about to
+ * change or when it has overrides to apply.
+ * </p>
+ *
+ * @version 1.0
+ * @since v0.12.0
+ * @author V-ed (Guillaume Marcoux)
+ */
+public class ChannelSettings implements Resources {
+	
+	/**
+	 * Rough estimate of the memory used by a full {@link Setting} object,
+	 * per setting field, which is used to build the memory report.
+	 *
+	 * @since v0.12.0
+	 */
+	public static final int ESTIMATED_BYTES_PER_FIELD = 96;
+	
+	private static final int SEEN_BITS = 1 << 17;
+	
+	private static final class Holder {
+		private static final ChannelSettings INSTANCE = new ChannelSettings(
+				SETTINGS);
+	}
+	
+	private final SettingField[] fields;
+	private final String[] names;
+	private final Object[] defaultValues;
+	private final Setting defaults;
+	
+	// Each value holds the typed values first, then the raw values given to
+	// Setting#save() (used to recreate the overrides on a new Setting object)
+	private final LongKeyedMap<Object[]> overrides = new LongKeyedMap<>();
+	
+	private final AtomicLongArray seenChannels = new AtomicLongArray(
+			SEEN_BITS / 64);
+	
+	/**
+	 * Creates the storage for the settings defined by the {@code fields}.
+	 *
+	 * @param fields
+	 *            The definitions of the settings to store.
+	 * @since v0.12.0
+	 */
+	public ChannelSettings(SettingField... fields){
+		
+		this.fields = fields;
+		this.defaults = new Setting(fields);
+		
+		this.names = new String[fields.length];
+		this.defaultValues = new Object[fields.length];
+		
+		for(int i = 0; i < fields.length; i++){
+			this.names[i] = fields[i].getName();
+			this.defaultValues[i] = this.defaults.getFieldValue(this.names[i]);
+		}
+		
+	}
+	
+	/**
+	 * Gets the ChannelSettings for the whole bot, which stores the settings
+	 * defined in {@link Resources#SETTINGS}.
+	 *
+	 * @return The only instance of the ChannelSettings.
+	 * @since v0.12.0
+	 */
+	public static ChannelSettings get(){
+		return Holder.INSTANCE;
+	}
+	
+	/**
+	 * Gets the {@link Setting} object that holds the default values shared by
+	 * every channel. <b>This object must never be modified.</b>
+	 *
+	 * @return The shared default settings.
+	 * @since v0.12.0
+	 */
+	public Setting getDefaults(){
+		return this.defaults;
+	}
+	
+	/**
+	 * Gets the {@link Setting} object to use for a channel. Channels that did
+	 * not override anything get the shared defaults, while the others get a
+	 * new {@link Setting} object with their overrides applied.
+	 *
+	 * @param channelId
+	 *            The ID of the channel.
+	 * @param dictionary
+	 *            The dictionary of the channel, used if a new {@link Setting}
+	 *            object needs to be created.
+	 * @return The settings of the channel.
+	 * @since v0.12.0
+	 */
+	public Setting getSettings(long channelId, Dictionary dictionary){
+		
+		markSeen(channelId);
+		
+		if(!hasOverrides(channelId))
+			return this.defaults;
+		
+		return createSettings(channelId, dictionary);
+		
+	}
+	
+	/**
+	 * Creates a new {@link Setting} object for a channel with its overrides
+	 * applied, which can be modified safely.
+	 *
+	 * @param channelId
+	 *            The ID of the channel.
+	 * @param dictionary
+	 *            The dictionary of the channel.
+	 * @return A new {@link Setting} object for the channel.
+	 * @since v0.12.0
+	 */
+	public Setting createSettings(long channelId, Dictionary dictionary){
+		
+		Setting settings = new Setting(dictionary, fields);
+		
+		Object[] channelOverrides = overrides.get(channelId);
+		
+		if(channelOverrides != null){
+			
+			for(int i = 0; i < names.length; i++){
+				
+				if(channelOverrides[i] == null)
+					continue;
+				
+				Object rawValue = channelOverrides[names.length + i];
+				
+				try{
+					settings.save(names[i], rawValue == null ? channelOverrides[i]
+							: rawValue, null);
+				}
+				catch(BadFormatException e){
+					Logger.log(e);
+				}
+				
+			}
+			
+		}
+		
+		return settings;
+		
+	}
+	
+	/**
+	 * Gets the current value of a setting for a channel without creating any
+	 * {@link Setting} object.
+	 *
+	 * @param channelId
+	 *            The ID of the channel.
+	 * @param settingName
+	 *            The name of the setting.
+	 * @param <SettingValue>
+	 *            The type of the setting's value.
+	 * @return The value overridden by the channel or the default value.
+	 * @throws IllegalArgumentException
+	 *             If there is no setting named {@code settingName}.
+	 * @since v0.12.0
+	 */
+	@SuppressWarnings("unchecked")
+	public <SettingValue> SettingValue getValue(long channelId,
+			String settingName){
+		
+		int index = indexOf(settingName);
+		
+		Object[] channelOverrides = overrides.get(channelId);
+		
+		if(channelOverrides != null && channelOverrides[index] != null)
+			return (SettingValue)channelOverrides[index];
+		
+		return (SettingValue)defaultValues[index];
+		
+	}
+	
+	/**
+	 * @param channelId
+	 *            The ID of the channel.
+	 * @return {@code true} if the channel overrides at least one setting,
+	 *         {@code false} otherwise.
+	 * @since v0.12.0
+	 */
+	public boolean hasOverrides(long channelId){
+		return overrides.containsKey(channelId);
+	}
+	
+	/**
+	 * Stores the new value of a setting of a channel. If the value is the
+	 * default one, the override is forgotten, and so is the channel if it has
+	 * no other override.
+	 *
+	 * @param channelId
+	 *            The ID of the channel.
+	 * @param settingName
+	 *            The name of the setting that changed.
+	 * @param rawValue
+	 *            The value given to {@link Setting#save(String, Object,
+	 *            java.util.function.Consumer) Setting.save()}, or {@code null}
+	 *            if the setting was changed otherwise.
+	 * @param value
+	 *            The typed value of the setting after the change.
+	 * @throws IllegalArgumentException
+	 *             If there is no setting named {@code settingName}.
+	 * @since v0.12.0
+	 */
+	public synchronized void update(long channelId, String settingName,
+			Object rawValue, Object value){
+		
+		int index = indexOf(settingName);
+		
+		Object[] current = overrides.get(channelId);
+		
+		boolean isDefault = value == null
+				|| value.equals(defaultValues[index]);
+		
+		if(current == null && isDefault)
+			return;
+		
+		// Copied so that lock-free readers never see a half updated array
+		Object[] updated = current == null ? new Object[names.length * 2]
+				: Arrays.copyOf(current, current.length);
+		
+		updated[index] = isDefault ? null : value;
+		updated[names.length + index] = isDefault ? null : rawValue;
+		
+		boolean hasAnyOverride = false;
+		
+		for(int i = 0; i < names.length && !hasAnyOverride; i++)
+			hasAnyOverride = updated[i] != null;
+		
+		if(hasAnyOverride)
+			overrides.put(channelId, updated);
+		else
+			overrides.remove(channelId);
+		
+	}
+	
+	/**
+	 * @return The amount of channels that override at least one setting.
+	 * @since v0.12.0
+	 */
+	public int getOverridingChannelsCount(){
+		return overrides.size();
+	}
+	
+	/**
+	 * Estimates the amount of distinct channels that used their settings so
+	 * far, using a linear counting of the channels IDs (which uses a fixed
+	 * amount of memory).
+	 *
+	 * @return The estimated amount of channels seen.
+	 * @since v0.12.0
+	 */
+	public long getEstimatedSeenChannelsCount(){
+		
+		int emptyBits = 0;
+		
+		for(int i = 0; i < seenChannels.length(); i++)
+			emptyBits += Long.bitCount(~seenChannels.get(i));
+		
+		if(emptyBits == 0)
+			return SEEN_BITS;
+		
+		return Math.round(-SEEN_BITS
+				* Math.log((double)emptyBits / SEEN_BITS));
+		
+	}
+	
+	/**
+	 * Builds a report of the memory used by the channels settings, compared
+	 * to the memory that one full {@link Setting} object per channel would
+	 * use.
+	 *
+	 * @return A human readable report of the memory saved.
+	 * @since v0.12.0
+	 */
+	public String getMemoryReport(){
+		
+		long channels = Math.max(getEstimatedSeenChannelsCount(),
+				getOverridingChannelsCount());
+		
+		long bytesPerSetting = 16 + (long)ESTIMATED_BYTES_PER_FIELD
+				* names.length;
+		
+		long fullBytes = channels * bytesPerSetting;
+		
+		// Table slot (key and reference) plus the array of overrides
+		long usedBytes = (long)overrides.capacity() * 12
+				+ (long)getOverridingChannelsCount()
+				* (16 + 4 * names.length * 2) + bytesPerSetting
+				+ seenChannels.length() * 8;
+		
+		return "Settings of ~" + channels + " channels, "
+				+ getOverridingChannelsCount() + " with overrides : ~"
+				+ usedBytes + " bytes used instead of ~" + fullBytes
+				+ " bytes (~" + Math.max(0, fullBytes - usedBytes)
+				+ " bytes saved).";
+		
+	}
+	
+	private void markSeen(long channelId){
+		
+		long mixed = channelId * 0x9E3779B97F4A7C15L;
+		
+		int bit = (int)(mixed >>> 47);
+		
+		int index = bit >>> 6;
+		long mask = 1L << (bit & 63);
+		
+		long current = seenChannels.get(index);
+		
+		if((current & mask) == 0)
+			seenChannels.getAndAccumulate(index, mask, (a, b) -> a | b);
+		
+	}
+	
+	private int indexOf(String settingName){
+		
+		for(int i = 0; i < names.length; i++)
+			if(names[i].equals(settingName))
+				return i;
+		
+		throw new IllegalArgumentException("There is no setting named "
+				+ settingName + "!");
+		
+	}
+	
+}
@@ -1,5 +1,6 @@
 package io.github.vhoyon.bot.utilities.specifics;
 
+import io.github.vhoyon.bot.app.CommandRouter;
 import io.github.vhoyon.bot.utilities.BotCommand;
 import io.github.vhoyon.bot.utilities.interfaces.Commands;
 import io.github.vhoyon.bot.utilities.interfaces.Resources;
@@ -53,14 +54,24 @@ public abstract class CommandConfirmed extends AbstractCommandConfirmed
 		super(commandToConfirm);
 	}
 	
+	/**
+	 * Asks for the confirmation and registers this object in the
+	 * {@link ConfirmationRegistry} so that the next command of the user in
+	 * this TextChannel answers it. Unanswered confirmations are cancelled
+	 * automatically once they expire.
+	 */
 	@Override
 	protected void actionIfConfirmable(){
+		
+		((CommandRouter)getRouter()).registerConfirmation(this);
+		
 		sendInfoMessage(
 				getConfMessage()
 						+ "\n\n"
 						+ lang("CommandConfirmedCustomAndConfirmMessage",
 								buildVCommand(CONFIRM), buildVCommand(CANCEL)),
 				false);
+		
 	}
 	
 	@Override
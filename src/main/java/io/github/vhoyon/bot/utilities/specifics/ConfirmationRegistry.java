@@ -0,0 +1,367 @@
+package io.github.vhoyon.bot.utilities.specifics;
+
+import io.github.vhoyon.vramework.modules.Logger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registry of the {@link CommandConfirmed} waiting for an answer, keyed by the
+ * channel and the user that requested them.
+ * <p>
+ * Looking up a channel that has no pending confirmation (which is the case of
+ * almost every command) is a single lock-free read that does not throw
+ * anything. Each confirmation expires after a timeout (configurable using the
+ * {@code CONFIRMATION_TIMEOUT} environment variable, in seconds) : expired
+ * confirmations are cancelled and forgotten by a timer wheel which ticks every
+ * second, so that a confirmation nobody answers does not stay in memory.
+ * </p>
+ *
+ * @version 1.0
+ * @since v0.12.0
+ * @author V-ed (Guillaume Marcoux)
+ */
+public class ConfirmationRegistry {
+	
+	/**
+	 * Default time, in seconds, that a confirmation waits for an answer when
+	 * the {@code CONFIRMATION_TIMEOUT} environment variable is not set.
+	 *
+	 * @since v0.12.0
+	 */
+	public static final int DEFAULT_TIMEOUT = 60;
+	
+	private static final int WHEEL_SIZE = 64;
+	
+	private static final class Holder {
+		private static final ConfirmationRegistry INSTANCE = create();
+	}
+	
+	private static volatile boolean isCreated;
+	
+	private final LongKeyedMap<Pending[]> pendings = new LongKeyedMap<>();
+	
+	private final ArrayList<Pending>[] wheel;
+	private final int timeoutTicks;
+	private int cursor;
+	
+	private final ScheduledExecutorService ticker;
+	
+	private final LongAdder resolved = new LongAdder();
+	private final LongAdder expired = new LongAdder();
+	
+	private static final class Pending {
+		
+		private final long channelId;
+		private final long userId;
+		private final CommandConfirmed confirmation;
+		private final Runnable onForget;
+		
+		private int slot;
+		private int remainingRounds;
+		
+		private Pending(long channelId, long userId,
+				CommandConfirmed confirmation, Runnable onForget){
+			this.channelId = channelId;
+			this.userId = userId;
+			this.confirmation = confirmation;
+			this.onForget = onForget;
+		}
+		
+	}
+	
+	/**
+	 * Creates a registry whose confirmations expire after the
+	 * {@code timeout}, checked every {@code tick}.
+	 *
+	 * @param timeout
+	 *            The time a confirmation waits for an answer.
+	 * @param tick
+	 *            The precision of the expiration.
+	 * @param unit
+	 *            The unit of both {@code timeout} and {@code tick}.
+	 * @since v0.12.0
+	 */
+	@SuppressWarnings("unchecked")
+	public ConfirmationRegistry(long timeout, long tick, TimeUnit unit){
+		
+		this.timeoutTicks = (int)Math.max(1, (timeout + tick - 1) / tick);
+		
+		this.wheel = new ArrayList[WHEEL_SIZE];
+		
+		for(int i = 0; i < WHEEL_SIZE; i++)
+			this.wheel[i] = new ArrayList<>();
+		
+		this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "confirmations-wheel");
+			thread.setDaemon(true);
+			return thread;
+		});
+		
+		this.ticker.scheduleAtFixedRate(this::tick, tick, tick, unit);
+		
+	}
+	
+	/**
+	 * Gets the ConfirmationRegistry for the whole bot, using the timeout from
+	 * the {@code CONFIRMATION_TIMEOUT} environment variable.
+	 *
+	 * @return The only instance of the registry.
+	 * @since v0.12.0
+	 */
+	public static ConfirmationRegistry get(){
+		return Holder.INSTANCE;
+	}
+	
+	/**
+	 * @return {@code true} if the ConfirmationRegistry of the whole bot was
+	 *         already created by {@link #get()}, {@code false} otherwise.
+	 * @since v0.12.0
+	 */
+	public static boolean isCreated(){
+		return isCreated;
+	}
+	
+	private static ConfirmationRegistry create(){
+		
+		int timeout = EnvironmentConfig.getInt("CONFIRMATION_TIMEOUT",
+				DEFAULT_TIMEOUT);
+		
+		ConfirmationRegistry registry = new ConfirmationRegistry(timeout, 1,
+				TimeUnit.SECONDS);
+		
+		isCreated = true;
+		
+		return registry;
+		
+	}
+	
+	/**
+	 * Registers a confirmation waiting for an answer of the user in the
+	 * channel. Any other confirmation of this user in this channel is
+	 * forgotten.
+	 *
+	 * @param channelId
+	 *            The ID of the channel where the confirmation was asked.
+	 * @param userId
+	 *            The ID of the user that has to answer.
+	 * @param confirmation
+	 *            The confirmation waiting.
+	 * @param onForget
+	 *            Code to run when the confirmation is forgotten (answered or
+	 *            expired), such as freeing other references to it. Can be
+	 *            {@code null}.
+	 * @since v0.12.0
+	 */
+	public synchronized void register(long channelId, long userId,
+			CommandConfirmed confirmation, Runnable onForget){
+		
+		Pending replaced = removePending(channelId, userId);
+		
+		if(replaced != null)
+			forget(replaced);
+		
+		Pending pending = new Pending(channelId, userId, confirmation,
+				onForget);
+		
+		pending.slot = (cursor + timeoutTicks) % WHEEL_SIZE;
+		pending.remainingRounds = (timeoutTicks - 1) / WHEEL_SIZE;
+		
+		wheel[pending.slot].add(pending);
+		
+		Pending[] channelPendings = pendings.get(channelId);
+		
+		if(channelPendings == null){
+			channelPendings = new Pending[]{pending};
+		}
+		else{
+			channelPendings = Arrays.copyOf(channelPendings,
+					channelPendings.length + 1);
+			channelPendings[channelPendings.length - 1] = pending;
+		}
+		
+		pendings.put(channelId, channelPendings);
+		
+	}
+	
+	/**
+	 * Removes the confirmation waiting for an answer of the user in the
+	 * channel, if there is one.
+	 *
+	 * @param channelId
+	 *            The ID of the channel.
+	 * @param userId
+	 *            The ID of the user.
+	 * @return The confirmation waiting for this user, or {@code null} if
+	 *         there is none.
+	 * @since v0.12.0
+	 */
+	public CommandConfirmed take(long channelId, long userId){
+		
+		if(!pendings.containsKey(channelId))
+			return null;
+		
+		Pending pending;
+		
+		synchronized(this){
+			pending = removePending(channelId, userId);
+		}
+		
+		if(pending == null)
+			return null;
+		
+		forget(pending);
+		
+		resolved.increment();
+		
+		return pending.confirmation;
+		
+	}
+	
+	/**
+	 * @return The amount of confirmations currently waiting for an answer.
+	 * @since v0.12.0
+	 */
+	public synchronized int getPendingCount(){
+		
+		int count = 0;
+		
+		for(ArrayList<Pending> slot : wheel)
+			count += slot.size();
+		
+		return count;
+		
+	}
+	
+	/**
+	 * @return The amount of confirmations that were answered.
+	 * @since v0.12.0
+	 */
+	public long getResolvedCount(){
+		return resolved.sum();
+	}
+	
+	/**
+	 * @return The amount of confirmations that were cancelled because nobody
+	 *         answered them in time.
+	 * @since v0.12.0
+	 */
+	public long getExpiredCount(){
+		return expired.sum();
+	}
+	
+	/**
+	 * Stops the expiration of the confirmations.
+	 *
+	 * @since v0.12.0
+	 */
+	public void shutdown(){
+		ticker.shutdownNow();
+	}
+	
+	private void tick(){
+		
+		ArrayList<Pending> expiredPendings = new ArrayList<>();
+		
+		synchronized(this){
+			
+			cursor = (cursor + 1) % WHEEL_SIZE;
+			
+			ArrayList<Pending> slot = wheel[cursor];
+			
+			for(int i = slot.size() - 1; i >= 0; i--){
+				
+				Pending pending = slot.get(i);
+				
+				if(pending.remainingRounds > 0){
+					pending.remainingRounds--;
+				}
+				else{
+					removePending(pending.channelId, pending.userId);
+					expiredPendings.add(pending);
+				}
+				
+			}
+			
+		}
+		
+		for(Pending pending : expiredPendings){
+			
+			forget(pending);
+			
+			expired.increment();
+			
+			try{
+				pending.confirmation.cancelled();
+			}
+			catch(Exception e){
+				Logger.log(e);
+			}
+			
+		}
+		
+	}
+	
+	/**
+	 * Removes the pending confirmation of the user from both the channel's
+	 * pendings and the wheel. Must be called while holding this registry's
+	 * lock.
+	 */
+	private Pending removePending(long channelId, long userId){
+		
+		Pending[] channelPendings = pendings.get(channelId);
+		
+		if(channelPendings == null)
+			return null;
+		
+		for(int i = 0; i < channelPendings.length; i++){
+			
+			Pending pending = channelPendings[i];
+			
+			if(pending.userId != userId)
+				continue;
+			
+			if(channelPendings.length == 1){
+				pendings.remove(channelId);
+			}
+			else{
+				
+				Pending[] remaining = new Pending[channelPendings.length - 1];
+				
+				System.arraycopy(channelPendings, 0, remaining, 0, i);
+				System.arraycopy(channelPendings, i + 1, remaining, i,
+						remaining.length - i);
+				
+				pendings.put(channelId, remaining);
+				
+			}
+			
+			wheel[pending.slot].remove(pending);
+			
+			return pending;
+			
+		}
+		
+		return null;
+		
+	}
+	
+	private static void forget(Pending pending){
+		
+		if(pending.onForget == null)
+			return;
+		
+		try{
+			pending.onForget.run();
+		}
+		catch(Exception e){
+			Logger.log(e);
+		}
+		
+	}
+	
+}
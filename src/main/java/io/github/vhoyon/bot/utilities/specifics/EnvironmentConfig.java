@@ -0,0 +1,74 @@
+package io.github.vhoyon.bot.utilities.specifics;
+
+import io.github.vhoyon.vramework.modules.Environment;
+import io.github.vhoyon.vramework.modules.Logger;
+import io.github.vhoyon.vramework.modules.Logger.LogType;
+
+/**
+ * Utility class that reads the numeric configurations of the bot from the
+ * environment variables, falling back to a default value when a variable is
+ * not set or is not valid.
+ *
+ * @version 1.0
+ * @since v0.12.0
+ * @author V-ed (Guillaume Marcoux)
+ */
+public final class EnvironmentConfig {
+	
+	private EnvironmentConfig(){}
+	
+	/**
+	 * Gets the value of the environment variable {@code key} as a strictly
+	 * positive number.
+	 *
+	 * @param key
+	 *            The name of the environment variable.
+	 * @param defaultValue
+	 *            The value to use when the variable is not set, is not a
+	 *            number or is lower than {@code 1}.
+	 * @return The value of the variable or the {@code defaultValue}.
+	 * @since v0.12.0
+	 */
+	public static int getInt(String key, int defaultValue){
+		return (int)Math.min(Integer.MAX_VALUE, getLong(key, defaultValue));
+	}
+	
+	/**
+	 * Gets the value of the environment variable {@code key} as a strictly
+	 * positive number.
+	 *
+	 * @param key
+	 *            The name of the environment variable.
+	 * @param defaultValue
+	 *            The value to use when the variable is not set, is not a
+	 *            number or is lower than {@code 1}.
+	 * @return The value of the variable or the {@code defaultValue}.
+	 * @since v0.12.0
+	 */
+	public static long getLong(String key, long defaultValue){
+		
+		String value = Environment.getVar(key, null);
+		
+		if(value == null)
+			return defaultValue;
+		
+		try{
+			
+			long parsed = Long.parseLong(value.trim());
+			
+			return parsed < 1 ? defaultValue : parsed;
+			
+		}
+		catch(NumberFormatException e){
+			
+			Logger.log("The environment variable " + key
+					+ " is not a valid number, using the default value ("
+					+ defaultValue + ") instead.", LogType.WARNING);
+			
+			return defaultValue;
+			
+		}
+		
+	}
+	
+}
@@ -0,0 +1,435 @@
+package io.github.vhoyon.bot.utilities.specifics;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongFunction;
+
+/**
+ * Map that uses primitive {@code long} keys (such as Discord's snowflakes) to
+ * avoid boxing and hashing objects on every lookup.
+ * <p>
+ * Reads are lock-free and never allocate, which makes this map suitable for
+ * the message hot path, while writes are synchronized and expected to be much
+ * rarer than reads. The keys are stored in an open addressing table that is
+ * swapped as a whole when it needs to grow.
+ * </p>
+ *
+ * @param <V>
+ *            The type of the values stored in this map.
+ * @version 1.0
+ * @since v0.12.0
+ * @author V-ed (Guillaume Marcoux)
+ */
+public class LongKeyedMap<V> {
+	
+	private static final Object REMOVED = new Object();
+	private static final int DEFAULT_CAPACITY = 64;
+	
+	private static final class Table {
+		
+		final long[] keys;
+		final AtomicReferenceArray<Object> values;
+		final int mask;
+		
+		volatile int size;
+		int used;
+		
+		Table(int capacity){
+			this.keys = new long[capacity];
+			this.values = new AtomicReferenceArray<>(capacity);
+			this.mask = capacity - 1;
+		}
+		
+	}
+	
+	private volatile Table table;
+	
+	/**
+	 * Creates an empty map with a default initial capacity.
+	 *
+	 * @since v0.12.0
+	 */
+	public LongKeyedMap(){
+		this(DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * Creates an empty map that can hold {@code expectedSize} values before
+	 * having to grow.
+	 *
+	 * @param expectedSize
+	 *            The amount of values this map is expected to hold.
+	 * @since v0.12.0
+	 */
+	public LongKeyedMap(int expectedSize){
+		this.table = new Table(tableSizeFor(expectedSize));
+	}
+	
+	/**
+	 * Gets the value associated with the {@code key}.
+	 *
+	 * @param key
+	 *            The key to search for.
+	 * @return The value associated with the key, or {@code null} if there is
+	 *         none.
+	 * @since v0.12.0
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(long key){
+		
+		Table current = this.table;
+		
+		int index = indexFor(key, current.mask);
+		
+		for(int probes = 0; probes <= current.mask; probes++){
+			
+			Object value = current.values.get(index);
+			
+			if(value == null)
+				return null;
+			
+			if(current.keys[index] == key)
+				return value == REMOVED ? null : (V)value;
+			
+			index = (index + 1) & current.mask;
+			
+		}
+		
+		return null;
+		
+	}
+	
+	/**
+	 * Determines if there is a value associated to the {@code key}.
+	 *
+	 * @param key
+	 *            The key to search for.
+	 * @return {@code true} if this map contains the key, {@code false}
+	 *         otherwise.
+	 * @since v0.12.0
+	 */
+	public boolean containsKey(long key){
+		return get(key) != null;
+	}
+	
+	/**
+	 * Associates the {@code value} to the {@code key}, replacing any previous
+	 * value.
+	 *
+	 * @param key
+	 *            The key of the value.
+	 * @param value
+	 *            The value to store, which cannot be {@code null}.
+	 * @return The previous value associated to the key, or {@code null} if
+	 *         there was none.
+	 * @throws NullPointerException
+	 *             If the {@code value} is {@code null}.
+	 * @since v0.12.0
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized V put(long key, V value){
+		
+		if(value == null)
+			throw new NullPointerException("LongKeyedMap does not accept null values!");
+		
+		Table current = this.table;
+		
+		int index = indexFor(key, current.mask);
+		
+		while(true){
+			
+			Object existing = current.values.get(index);
+			
+			if(existing == null)
+				break;
+			
+			if(current.keys[index] == key){
+				
+				current.values.set(index, value);
+				
+				if(existing == REMOVED){
+					current.size++;
+					return null;
+				}
+				
+				return (V)existing;
+				
+			}
+			
+			index = (index + 1) & current.mask;
+			
+		}
+		
+		if((current.used + 1) * 4 > (current.mask + 1) * 3){
+			current = resize(current);
+			index = indexFor(key, current.mask);
+			
+			while(current.values.get(index) != null)
+				index = (index + 1) & current.mask;
+		}
+		
+		// The key must be written before the value is published
+		current.keys[index] = key;
+		current.values.set(index, value);
+		
+		current.size++;
+		current.used++;
+		
+		return null;
+		
+	}
+	
+	/**
+	 * Associates the {@code value} to the {@code key} only if there is no
+	 * value for this key yet, atomically. This lets a value that is costly to
+	 * create be created outside of the lock of this map.
+	 *
+	 * @param key
+	 *            The key of the value.
+	 * @param value
+	 *            The value to store, which cannot be {@code null}.
+	 * @return The value already associated to the key, in which case the
+	 *         {@code value} was not stored, or {@code null} if the
+	 *         {@code value} was stored.
+	 * @throws NullPointerException
+	 *             If the {@code value} is {@code null}.
+	 * @since v0.12.0
+	 */
+	public synchronized V putIfAbsent(long key, V value){
+		
+		V existing = get(key);
+		
+		if(existing != null)
+			return existing;
+		
+		put(key, value);
+		
+		return null;
+		
+	}
+	
+	/**
+	 * Gets the value associated with the {@code key} or creates it using the
+	 * {@code creator} if there is none, atomically.
+	 *
+	 * @param key
+	 *            The key of the value.
+	 * @param creator
+	 *            Function that creates the value when it is absent.
+	 * @return The value associated to the key after this call.
+	 * @since v0.12.0
+	 */
+	public V computeIfAbsent(long key, LongFunction<V> creator){
+		
+		V value = get(key);
+		
+		if(value != null)
+			return value;
+		
+		synchronized(this){
+			
+			value = get(key);
+			
+			if(value == null){
+				value = creator.apply(key);
+				
+				if(value != null)
+					put(key, value);
+			}
+			
+			return value;
+			
+		}
+		
+	}
+	
+	/**
+	 * Removes the value associated with the {@code key}.
+	 *
+	 * @param key
+	 *            The key of the value to remove.
+	 * @return The value that was removed, or {@code null} if there was none.
+	 * @since v0.12.0
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized V remove(long key){
+		
+		Table current = this.table;
+		
+		int index = indexFor(key, current.mask);
+		
+		for(int probes = 0; probes <= current.mask; probes++){
+			
+			Object existing = current.values.get(index);
+			
+			if(existing == null)
+				return null;
+			
+			if(current.keys[index] == key){
+				
+				if(existing == REMOVED)
+					return null;
+				
+				current.values.set(index, REMOVED);
+				current.size--;
+				
+				return (V)existing;
+				
+			}
+			
+			index = (index + 1) & current.mask;
+			
+		}
+		
+		return null;
+		
+	}
+	
+	/**
+	 * Removes the value associated with the {@code key} only if it is the
+	 * {@code expected} one (compared by identity), so that a value replaced in
+	 * the meantime is not removed by mistake.
+	 *
+	 * @param key
+	 *            The key of the value to remove.
+	 * @param expected
+	 *            The value that must currently be associated to the key.
+	 * @return {@code true} if the value was removed, {@code false} otherwise.
+	 * @since v0.12.0
+	 */
+	public synchronized boolean remove(long key, V expected){
+		
+		if(expected == null || get(key) != expected)
+			return false;
+		
+		remove(key);
+		
+		return true;
+		
+	}
+	
+	/**
+	 * Removes all the values of this map.
+	 *
+	 * @since v0.12.0
+	 */
+	public synchronized void clear(){
+		this.table = new Table(DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * @return The amount of values stored in this map.
+	 * @since v0.12.0
+	 */
+	public int size(){
+		return this.table.size;
+	}
+	
+	/**
+	 * @return {@code true} if this map has no value, {@code false} otherwise.
+	 * @since v0.12.0
+	 */
+	public boolean isEmpty(){
+		return size() == 0;
+	}
+	
+	/**
+	 * @return The amount of slots of the current table, useful to estimate the
+	 *         memory used by this map.
+	 * @since v0.12.0
+	 */
+	public int capacity(){
+		return this.table.mask + 1;
+	}
+	
+	/**
+	 * Runs the {@code action} for each key and value of this map. Values added
+	 * or removed while iterating may or may not be visited.
+	 *
+	 * @param action
+	 *            The code to run for each entry.
+	 * @since v0.12.0
+	 */
+	@SuppressWarnings("unchecked")
+	public void forEach(LongObjConsumer<V> action){
+		
+		Table current = this.table;
+		
+		for(int i = 0; i <= current.mask; i++){
+			
+			Object value = current.values.get(i);
+			
+			if(value != null && value != REMOVED)
+				action.accept(current.keys[i], (V)value);
+			
+		}
+		
+	}
+	
+	/**
+	 * Consumer of a primitive {@code long} key and its value.
+	 *
+	 * @param <V>
+	 *            The type of the value.
+	 * @since v0.12.0
+	 */
+	@FunctionalInterface
+	public interface LongObjConsumer<V> {
+		void accept(long key, V value);
+	}
+	
+	private Table resize(Table current){
+		
+		int capacity = current.mask + 1;
+		
+		// Only grow if the table is really full and not just full of removals
+		if(current.size * 2 >= capacity)
+			capacity *= 2;
+		
+		Table resized = new Table(capacity);
+		
+		for(int i = 0; i <= current.mask; i++){
+			
+			Object value = current.values.get(i);
+			
+			if(value != null && value != REMOVED){
+				
+				int index = indexFor(current.keys[i], resized.mask);
+				
+				while(resized.values.get(index) != null)
+					index = (index + 1) & resized.mask;
+				
+				resized.keys[index] = current.keys[i];
+				resized.values.set(index, value);
+				resized.size++;
+				resized.used++;
+				
+			}
+			
+		}
+		
+		this.table = resized;
+		
+		return resized;
+		
+	}
+	
+	private static int indexFor(long key, int mask){
+		
+		long mixed = key * 0x9E3779B97F4A7C15L;
+		
+		return (int)(mixed ^ (mixed >>> 32)) & mask;
+		
+	}
+	
+	private static int tableSizeFor(int expectedSize){
+		
+		int capacity = DEFAULT_CAPACITY;
+		
+		while(capacity * 3 < expectedSize * 4)
+			capacity <<= 1;
+		
+		return capacity;
+		
+	}
+	
+}
@@ -0,0 +1,147 @@
+package io.github.vhoyon.bot.app;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouterDispatcherTest {
+	
+	RouterDispatcher dispatcher;
+	
+	@BeforeEach
+	void setUp(){
+		dispatcher = new RouterDispatcher(4, 100);
+	}
+	
+	@AfterEach
+	void tearDown(){
+		dispatcher.shutdown();
+		dispatcher = null;
+	}
+	
+	@Test
+	void testInvalidConfigurationThrows(){
+		assertThrows(IllegalArgumentException.class,
+				() -> new RouterDispatcher(0, 10));
+		assertThrows(IllegalArgumentException.class,
+				() -> new RouterDispatcher(2, 0));
+	}
+	
+	@Test
+	void testSameKeyIsPinnedToSameLane(){
+		long guildId = 123456789012345678L;
+		
+		int lane = dispatcher.getLaneIndex(guildId);
+		
+		for(int i = 0; i < 10; i++){
+			assertEquals(lane, dispatcher.getLaneIndex(guildId));
+		}
+		
+		assertTrue(lane >= 0 && lane < dispatcher.getLanesCount());
+	}
+	
+	@Test
+	void testSameKeyRunsInOrder() throws InterruptedException{
+		long guildId = 987654321098765432L;
+		int amount = 50;
+		
+		List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+		CountDownLatch latch = new CountDownLatch(amount);
+		
+		for(int i = 0; i < amount; i++){
+			final int index = i;
+			
+			assertTrue(dispatcher.dispatch(guildId, () -> {
+				order.add(index);
+				latch.countDown();
+			}));
+		}
+		
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		
+		for(int i = 0; i < amount; i++){
+			assertEquals(i, (int)order.get(i));
+		}
+		
+		assertEquals(amount, dispatcher.getDispatchedCount());
+		assertEquals(0, dispatcher.getRejectedCount());
+	}
+	
+	@Test
+	void testRoutersRunOnLaneThreads() throws InterruptedException{
+		CountDownLatch latch = new CountDownLatch(1);
+		boolean[] wasLane = new boolean[1];
+		
+		dispatcher.dispatch(42L, () -> {
+			wasLane[0] = RouterDispatcher.isLaneThread();
+			latch.countDown();
+		});
+		
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		assertTrue(wasLane[0]);
+		assertFalse(RouterDispatcher.isLaneThread());
+	}
+	
+	@Test
+	void testBlockingActionDoesNotStallItsLane()
+			throws InterruptedException{
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch laneRan = new CountDownLatch(1);
+		boolean[] wasLane = new boolean[1];
+		
+		dispatcher.dispatch(42L, () -> dispatcher.dispatchBlocking(() -> {
+			wasLane[0] = RouterDispatcher.isLaneThread();
+			
+			try{
+				release.await(5, TimeUnit.SECONDS);
+			}
+			catch(InterruptedException e){}
+		}));
+		
+		dispatcher.dispatch(42L, laneRan::countDown);
+		
+		assertTrue(laneRan.await(5, TimeUnit.SECONDS));
+		assertFalse(dispatcher.isIdle());
+		
+		release.countDown();
+		
+		assertTrue(dispatcher.awaitIdle(System.nanoTime()
+				+ TimeUnit.SECONDS.toNanos(5)));
+		assertFalse(wasLane[0]);
+	}
+	
+	@Test
+	void testFullBlockingPoolRejects() throws InterruptedException{
+		RouterDispatcher small = new RouterDispatcher(1, 1, 1);
+		CountDownLatch release = new CountDownLatch(1);
+		
+		try{
+			Runnable waiting = () -> {
+				try{
+					release.await(5, TimeUnit.SECONDS);
+				}
+				catch(InterruptedException e){}
+			};
+			
+			// One action runs on the only thread and one waits in the queue
+			assertTrue(small.dispatchBlocking(waiting));
+			assertTrue(small.dispatchBlocking(waiting));
+			
+			assertFalse(small.dispatchBlocking(waiting));
+			assertEquals(1, small.getRejectedCount());
+		}
+		finally{
+			release.countDown();
+			small.shutdown();
+		}
+	}
+	
+}
@@ -0,0 +1,154 @@
+package io.github.vhoyon.bot.utilities.audit;
+
+import io.github.vhoyon.bot.utilities.audit.AuditWriter.OverflowPolicy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AuditWriterTest {
+	
+	File directory;
+	File file;
+	
+	@BeforeEach
+	void setUp() throws IOException{
+		directory = Files.createTempDirectory("audit").toFile();
+		file = new File(directory, "audit.txt");
+	}
+	
+	@AfterEach
+	void tearDown(){
+		File[] files = directory.listFiles();
+		
+		if(files != null)
+			for(File child : files)
+				child.delete();
+		
+		directory.delete();
+	}
+	
+	@Test
+	void testBlockingPolicyWritesEveryEntry() throws Exception{
+		AuditWriter writer = new AuditWriter(file, 16, Long.MAX_VALUE,
+				Long.MAX_VALUE, OverflowPolicy.BLOCK);
+		
+		Thread[] threads = new Thread[4];
+		
+		for(int t = 0; t < threads.length; t++){
+			final int id = t;
+			threads[t] = new Thread(() -> {
+				for(int i = 0; i < 500; i++)
+					assertTrue(writer.audit("thread " + id + " entry " + i));
+			});
+			threads[t].start();
+		}
+		
+		for(Thread thread : threads)
+			thread.join();
+		
+		writer.close();
+		
+		assertEquals(2000, writer.getWrittenCount());
+		assertEquals(0, writer.getDroppedCount());
+		assertEquals(2000, readLines(file).size());
+	}
+	
+	@Test
+	void testFlushWritesEntriesWithoutClosing() throws Exception{
+		AuditWriter writer = new AuditWriter(file, 16, Long.MAX_VALUE,
+				Long.MAX_VALUE, OverflowPolicy.BLOCK);
+		
+		for(int i = 0; i < 100; i++)
+			writer.audit("entry " + i);
+		
+		assertTrue(writer.flush(System.nanoTime()
+				+ TimeUnit.SECONDS.toNanos(10)));
+		
+		assertEquals(100, writer.getWrittenCount());
+		assertEquals(100, readLines(file).size());
+		
+		assertTrue(writer.audit("after the flush"));
+		
+		writer.close();
+		
+		assertEquals(101, readLines(file).size());
+	}
+	
+	@Test
+	void testClosedWriterDropsEntries() throws Exception{
+		AuditWriter writer = new AuditWriter(file, 16, Long.MAX_VALUE,
+				Long.MAX_VALUE, OverflowPolicy.DROP);
+		
+		writer.close();
+		
+		assertFalse(writer.audit("too late"));
+		assertEquals(1, writer.getDroppedCount());
+	}
+	
+	@Test
+	void testRolledFilesAreCompressed() throws Exception{
+		AuditWriter writer = new AuditWriter(file, 16, 1, Long.MAX_VALUE,
+				OverflowPolicy.BLOCK);
+		
+		for(int i = 0; i < 20; i++)
+			writer.audit("entry " + i);
+		
+		writer.close();
+		
+		List<String> lines = new ArrayList<>(readLines(file));
+		
+		File[] rolledFiles = directory.listFiles((dir, name) -> name
+				.endsWith(".gz"));
+		
+		assertNotNull(rolledFiles);
+		assertTrue(rolledFiles.length > 0);
+		assertEquals(rolledFiles.length, writer.getRotationsCount());
+		
+		for(File rolled : rolledFiles){
+			try(BufferedReader reader = new BufferedReader(
+					new InputStreamReader(new GZIPInputStream(
+							new FileInputStream(rolled)),
+							StandardCharsets.UTF_8))){
+				String line;
+				while((line = reader.readLine()) != null)
+					lines.add(line);
+			}
+		}
+		
+		assertEquals(20, lines.size());
+	}
+	
+	@Test
+	void testExistingFileKeepsItsAge() throws Exception{
+		Files.write(file.toPath(), "[old] entry\n".getBytes(StandardCharsets.UTF_8));
+		
+		long twoHoursAgo = System.currentTimeMillis() - 2 * 60 * 60 * 1000;
+		Files.setLastModifiedTime(file.toPath(),
+				FileTime.fromMillis(twoHoursAgo));
+		
+		AuditWriter writer = new AuditWriter(file, 16, Long.MAX_VALUE,
+				60 * 60 * 1000, OverflowPolicy.BLOCK);
+		
+		writer.audit("new entry");
+		writer.close();
+		
+		assertEquals(1, writer.getRotationsCount());
+		assertEquals(0, writer.getDroppedCount());
+	}
+	
+	private static List<String> readLines(File file) throws IOException{
+		return Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+	}
+	
+}
@@ -0,0 +1,73 @@
+package io.github.vhoyon.bot.utilities.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+	
+	@Test
+	void testEmptyHistogram(){
+		LatencyHistogram.Snapshot snapshot = new LatencyHistogram()
+				.getSnapshot();
+		
+		assertEquals(0, snapshot.getCount());
+		assertEquals(0, snapshot.getMean());
+		assertEquals(0, snapshot.getValueAtPercentile(99));
+	}
+	
+	@Test
+	void testIndexesAreContiguousAndCoverTheirValues(){
+		for(long value = 0; value < 1_000_000; value += 7){
+			int index = LatencyHistogram.getIndex(value);
+			
+			assertTrue(value <= LatencyHistogram.getHighestValue(index));
+			
+			if(index > 0)
+				assertTrue(value > LatencyHistogram.getHighestValue(index - 1));
+		}
+	}
+	
+	@Test
+	void testLongestDurationsShareTheLastBucket(){
+		int lastIndex = LatencyHistogram.getIndex(Long.MAX_VALUE);
+		
+		assertEquals(lastIndex, LatencyHistogram.getIndex(1L << 37));
+		assertTrue(LatencyHistogram.getIndex(1L << 36) < lastIndex);
+	}
+	
+	@Test
+	void testPercentilesAreWithinPrecision(){
+		LatencyHistogram histogram = new LatencyHistogram();
+		
+		for(long value = 1; value <= 100_000; value++)
+			histogram.record(value * 1000);
+		
+		LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+		
+		assertEquals(100_000, snapshot.getCount());
+		assertEquals(100_000_000L, snapshot.getMax());
+		
+		assertWithinPrecision(50_000_000L, snapshot.getValueAtPercentile(50));
+		assertWithinPrecision(99_000_000L, snapshot.getValueAtPercentile(99));
+		assertWithinPrecision(99_900_000L,
+				snapshot.getValueAtPercentile(99.9));
+	}
+	
+	@Test
+	void testResetForgetsValues(){
+		LatencyHistogram histogram = new LatencyHistogram();
+		
+		histogram.record(42);
+		histogram.reset();
+		
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getSnapshot().getMax());
+	}
+	
+	private static void assertWithinPrecision(long expected, long actual){
+		assertTrue(Math.abs(actual - expected) <= expected * 0.04, "Expected "
+				+ expected + " but was " + actual);
+	}
+	
+}
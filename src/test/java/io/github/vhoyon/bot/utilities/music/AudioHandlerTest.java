@@ -0,0 +1,74 @@
+package io.github.vhoyon.bot.utilities.music;
+
+import com.sedmelluq.discord.lavaplayer.track.playback.AudioFrameProvider;
+import com.sedmelluq.discord.lavaplayer.track.playback.MutableAudioFrame;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class AudioHandlerTest {
+	
+	AudioHandler handler;
+	int nextLength;
+	
+	@BeforeEach
+	void setUp(){
+		
+		AudioFrameProvider provider = mock(AudioFrameProvider.class);
+		
+		when(provider.provide(any(MutableAudioFrame.class))).thenAnswer(
+				invocation -> {
+					MutableAudioFrame frame = invocation.getArgument(0);
+					frame.store(new byte[nextLength], 0, nextLength);
+					return true;
+				});
+		
+		handler = new AudioHandler(provider, () -> true);
+		
+	}
+	
+	@Test
+	void testPacketOfSameLengthIsReused(){
+		
+		nextLength = 300;
+		
+		byte[] first = handler.provide20MsAudio();
+		byte[] second = handler.provide20MsAudio();
+		
+		assertEquals(300, first.length);
+		assertSame(first, second);
+		
+	}
+	
+	@Test
+	void testKeptPacketsAreBounded(){
+		
+		for(nextLength = 1; nextLength <= 1000; nextLength++){
+			
+			assertEquals(nextLength, handler.provide20MsAudio().length);
+			
+			assertTrue(handler.getKeptBytes() <= AudioHandler.MAX_KEPT_BYTES);
+			
+		}
+		
+	}
+	
+	@Test
+	void testTrackChangeDropsKeptPackets(){
+		
+		for(nextLength = 100; nextLength < 110; nextLength++)
+			handler.provide20MsAudio();
+		
+		handler.onTrackChanged();
+		
+		nextLength = 200;
+		handler.provide20MsAudio();
+		
+		assertEquals(200, handler.getKeptBytes());
+		
+	}
+	
+}
@@ -0,0 +1,259 @@
+package io.github.vhoyon.bot.utilities.music;
+
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayer;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
+import com.sedmelluq.discord.lavaplayer.track.playback.MutableAudioFrame;
+import io.github.vhoyon.bot.utilities.BotCommand;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.*;
+
+class MusicPlayerTest {
+	
+	AudioPlayer current;
+	AudioPlayer standby;
+	MusicPlayer player;
+	
+	@BeforeEach
+	void setUp(){
+		
+		current = mock(AudioPlayer.class);
+		standby = mock(AudioPlayer.class);
+		
+		when(current.startTrack(any(), anyBoolean())).thenReturn(true);
+		when(standby.startTrack(any(), anyBoolean())).thenReturn(true);
+		
+		BotCommand command = mock(BotCommand.class);
+		doReturn(100).when(command).setting("volume");
+		
+		player = new MusicPlayer(current, standby, new PlaybackState(),
+				command);
+		
+	}
+	
+	AudioTrack track(String uri){
+		
+		AudioTrack track = mock(AudioTrack.class);
+		AudioTrack clone = mock(AudioTrack.class);
+		
+		// The listener does not prefetch streams on its own, so each test
+		// decides when the next track is prefetched
+		AudioTrackInfo info = new AudioTrackInfo(uri, "author", 1000, uri,
+				true, uri);
+		
+		when(track.getInfo()).thenReturn(info);
+		when(clone.getInfo()).thenReturn(info);
+		when(track.makeClone()).thenReturn(clone);
+		
+		return track;
+		
+	}
+	
+	/**
+	 * Queues the {@code track} and prefetches it in the standby player.
+	 *
+	 * @return The clone of the track playing on standby.
+	 */
+	AudioTrack prefetched(AudioTrack track){
+		
+		player.getListener().getTracks().add(track);
+		player.prefetch();
+		
+		AudioTrack clone = track.makeClone();
+		
+		verify(standby).setPaused(true);
+		verify(standby).startTrack(clone, false);
+		
+		when(standby.getPlayingTrack()).thenReturn(clone);
+		
+		return clone;
+		
+	}
+	
+	@Test
+	void testSwapsOntoThePrefetchedClone(){
+		
+		AudioTrack next = track("next");
+		
+		AudioTrack clone = prefetched(next);
+		
+		assertTrue(player.getListener().nextTrack());
+		
+		assertSame(standby, player.getAudioPlayer());
+		assertEquals(0, player.getNumberOfTracks());
+		
+		verify(standby).setPaused(false);
+		verify(current).stopTrack();
+		verify(current, never()).startTrack(next, false);
+		verify(current, never()).startTrack(clone, false);
+		
+		// The previous track ended by itself, the listener recorded it
+		assertTrue(player.getPlaybackState().getHistory().isEmpty());
+		
+	}
+	
+	@Test
+	void testTrackAfterTheSwapStartsInTheNewPlayer(){
+		
+		AudioTrack next = track("next");
+		AudioTrack after = track("after");
+		
+		prefetched(next);
+		
+		player.getListener().getTracks().add(after);
+		
+		assertTrue(player.getListener().nextTrack());
+		assertTrue(player.skipTrack());
+		
+		verify(standby).startTrack(after, false);
+		verify(current, never()).startTrack(after, false);
+		
+	}
+	
+	@Test
+	void testChangedPlaylistStartsInTheCurrentPlayer(){
+		
+		AudioTrack next = track("next");
+		AudioTrack other = track("other");
+		
+		prefetched(next);
+		
+		player.getListener().getTracks().add(other);
+		
+		// Skipping over the prefetched track
+		assertTrue(player.skipTo(2));
+		
+		assertSame(current, player.getAudioPlayer());
+		
+		verify(standby).stopTrack();
+		verify(current).startTrack(other, false);
+		
+	}
+	
+	@Test
+	void testCleanedUpStandbyTrackStartsInTheCurrentPlayer(){
+		
+		AudioTrack next = track("next");
+		
+		prefetched(next);
+		
+		// lavaplayer cleaned up the track that stayed paused for too long
+		when(standby.getPlayingTrack()).thenReturn(null);
+		
+		assertTrue(player.getListener().nextTrack());
+		
+		assertSame(current, player.getAudioPlayer());
+		
+		verify(standby).stopTrack();
+		verify(current).startTrack(next, false);
+		
+	}
+	
+	@Test
+	void testCancelledPrefetchStopsTheStandbyPlayer(){
+		
+		AudioTrack next = track("next");
+		
+		prefetched(next);
+		
+		player.getListener().purgeQueue();
+		
+		verify(standby).stopTrack();
+		
+		// The track can be prefetched again once queued again
+		player.getListener().getTracks().add(next);
+		player.prefetch();
+		
+		verify(standby, times(2)).startTrack(next.makeClone(), false);
+		
+	}
+	
+	@Test
+	void testSkipRacingTheEndOfATrackDoesNotSwap() throws Exception{
+		
+		AudioTrack skipped = track("skipped");
+		AudioTrack next = track("next");
+		
+		CountDownLatch isStarting = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		
+		when(current.startTrack(skipped, false)).thenAnswer(invocation -> {
+			isStarting.countDown();
+			release.await(10, TimeUnit.SECONDS);
+			return true;
+		});
+		
+		// The skip starts a track in the current player...
+		Thread skip = new Thread(() -> player.startNext(skipped));
+		skip.start();
+		
+		assertTrue(isStarting.await(10, TimeUnit.SECONDS));
+		
+		// ...while the end of the previous track starts the prefetched one
+		prefetched(next);
+		
+		assertTrue(player.getListener().nextTrack());
+		
+		release.countDown();
+		skip.join(TimeUnit.SECONDS.toMillis(10));
+		
+		// Swapping would have left the skipped track playing on standby
+		assertSame(current, player.getAudioPlayer());
+		
+		verify(standby).stopTrack();
+		verify(current).startTrack(next, false);
+		
+	}
+	
+	@Test
+	void testNewPlayerProvidesTheFrameOfTheSameCycle(){
+		
+		AudioTrack next = track("next");
+		
+		prefetched(next);
+		
+		// The end of the track is detected while providing its last frame
+		when(current.provide(any(MutableAudioFrame.class))).thenAnswer(
+				invocation -> {
+					player.getListener().nextTrack();
+					return false;
+				});
+		when(standby.provide(any(MutableAudioFrame.class))).thenReturn(true);
+		
+		assertTrue(player.getAudioHandler().canProvide());
+		
+		assertSame(standby, player.getAudioPlayer());
+		assertEquals(1, player.getSilencesCount());
+		
+	}
+	
+	@Test
+	void testSkippedTrackIsAddedToTheHistory(){
+		
+		AudioTrack playing = track("playing");
+		AudioTrack next = track("next");
+		
+		when(current.getPlayingTrack()).thenReturn(playing);
+		
+		prefetched(next);
+		
+		assertTrue(player.skipTrack());
+		
+		assertSame(standby, player.getAudioPlayer());
+		assertEquals(Collections.singletonList("playing"), player
+				.getPlaybackState().getHistory());
+		
+		verify(current).stopTrack();
+		
+	}
+	
+}
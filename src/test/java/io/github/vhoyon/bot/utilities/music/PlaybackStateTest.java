@@ -0,0 +1,64 @@
+package io.github.vhoyon.bot.utilities.music;
+
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
+import io.github.vhoyon.bot.utilities.music.PlaybackState.LoopMode;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PlaybackStateTest {
+	
+	AudioTrack track(String uri){
+		
+		AudioTrack track = mock(AudioTrack.class);
+		
+		when(track.getInfo()).thenReturn(
+				new AudioTrackInfo(uri, "author", 1000, uri, false, uri));
+		
+		return track;
+		
+	}
+	
+	@Test
+	void testLoopMode(){
+		
+		PlaybackState state = new PlaybackState();
+		
+		assertEquals(LoopMode.OFF, state.getLoopMode());
+		assertFalse(state.isLooping());
+		
+		state.setLoopMode(LoopMode.SINGLE);
+		
+		assertTrue(state.isLooping());
+		
+		state.setLoopMode(null);
+		
+		assertEquals(LoopMode.OFF, state.getLoopMode());
+		
+	}
+	
+	@Test
+	void testHistoryIsBounded(){
+		
+		PlaybackState state = new PlaybackState();
+		
+		assertNull(state.getLatestSource());
+		
+		for(int i = 0; i < PlaybackState.HISTORY_SIZE + 5; i++)
+			state.addToHistory(track("track" + i));
+		
+		List<String> history = state.getHistory();
+		
+		assertEquals(PlaybackState.HISTORY_SIZE, history.size());
+		assertEquals("track" + (PlaybackState.HISTORY_SIZE + 4),
+				state.getLatestSource());
+		assertEquals("track5", history.get(history.size() - 1));
+		
+	}
+	
+}
@@ -0,0 +1,250 @@
+package io.github.vhoyon.bot.utilities.music;
+
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayer;
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import io.github.vhoyon.bot.utilities.music.PlayerReaper.Reason;
+import io.github.vhoyon.bot.utilities.specifics.LongKeyedMap;
+import net.dv8tion.jda.core.entities.Member;
+import net.dv8tion.jda.core.entities.User;
+import net.dv8tion.jda.core.entities.VoiceChannel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class PlayerReaperTest {
+	
+	static final long IDLE_TIMEOUT = TimeUnit.MINUTES.toMillis(5);
+	static final long PAUSED_TIMEOUT = TimeUnit.MINUTES.toMillis(30);
+	
+	AtomicLong now = new AtomicLong(1_000_000);
+	LongKeyedMap<MusicPlayer> players = new LongKeyedMap<>();
+	MusicManager musicManager;
+	PlayerReaper reaper;
+	
+	@BeforeEach
+	void setUp(){
+		
+		musicManager = mock(MusicManager.class);
+		
+		doAnswer(invocation -> {
+			LongKeyedMap.LongObjConsumer<MusicPlayer> action = invocation
+					.getArgument(0);
+			players.forEach(action);
+			return null;
+		}).when(musicManager).forEachPlayer(any());
+		
+		// Like the MusicManager, only closes the player still in the map
+		when(musicManager.reapPlayer(anyLong(), any())).thenAnswer(
+				invocation -> players.remove(
+						invocation.<Long>getArgument(0),
+						invocation.<MusicPlayer>getArgument(1)));
+		
+		// Only swept by the tests
+		reaper = new PlayerReaper(musicManager, IDLE_TIMEOUT, PAUSED_TIMEOUT,
+				TimeUnit.DAYS.toMillis(1), now::get);
+		
+	}
+	
+	@AfterEach
+	void tearDown(){
+		reaper.stop();
+	}
+	
+	/**
+	 * @return A player that plays a track to a user, until the test changes
+	 *         its state.
+	 */
+	MusicPlayer listenedPlayer(long guildId){
+		
+		MusicPlayer player = mock(MusicPlayer.class);
+		AudioPlayer audioPlayer = mock(AudioPlayer.class);
+		VoiceChannel channel = mock(VoiceChannel.class);
+		Member member = mock(Member.class);
+		
+		when(member.getUser()).thenReturn(mock(User.class));
+		when(channel.getMembers()).thenReturn(
+				Collections.singletonList(member));
+		
+		when(player.getConnectedChannel()).thenReturn(channel);
+		when(player.getAudioPlayer()).thenReturn(audioPlayer);
+		when(audioPlayer.getPlayingTrack()).thenReturn(mock(AudioTrack.class));
+		
+		players.put(guildId, player);
+		
+		return player;
+		
+	}
+	
+	MusicPlayer idlePlayer(long guildId){
+		
+		MusicPlayer player = listenedPlayer(guildId);
+		
+		when(player.getAudioPlayer().getPlayingTrack()).thenReturn(null);
+		
+		return player;
+		
+	}
+	
+	MusicPlayer pausedPlayer(long guildId){
+		
+		MusicPlayer player = listenedPlayer(guildId);
+		
+		when(player.isPaused()).thenReturn(true);
+		
+		return player;
+		
+	}
+	
+	void sweepAfter(long millis){
+		now.addAndGet(millis);
+		reaper.sweep();
+	}
+	
+	@Test
+	void testListenedPlayerIsKept(){
+		
+		MusicPlayer player = listenedPlayer(1L);
+		
+		reaper.sweep();
+		sweepAfter(PAUSED_TIMEOUT);
+		
+		assertSame(player, players.get(1L));
+		verify(musicManager, never()).reapPlayer(anyLong(), any());
+		
+	}
+	
+	@Test
+	void testIdlePlayerIsReapedAfterTheIdleTimeout(){
+		
+		MusicPlayer player = idlePlayer(1L);
+		
+		when(player.getNumberOfTracks()).thenReturn(3);
+		
+		reaper.sweep();
+		sweepAfter(IDLE_TIMEOUT - 1);
+		
+		assertSame(player, players.get(1L));
+		
+		sweepAfter(1);
+		
+		assertNull(players.get(1L));
+		assertEquals(1, reaper.getReapedCount(Reason.IDLE));
+		assertEquals(3, reaper.getReclaimedTracksCount());
+		
+	}
+	
+	@Test
+	void testStateChangeResetsTheTimer(){
+		
+		MusicPlayer player = idlePlayer(1L);
+		
+		reaper.sweep();
+		sweepAfter(IDLE_TIMEOUT - 1);
+		
+		// Paused with a track, which has its own timer from now on
+		when(player.getAudioPlayer().getPlayingTrack()).thenReturn(
+				mock(AudioTrack.class));
+		when(player.isPaused()).thenReturn(true);
+		
+		sweepAfter(1);
+		sweepAfter(PAUSED_TIMEOUT - 1);
+		
+		assertSame(player, players.get(1L));
+		
+		sweepAfter(1);
+		
+		assertNull(players.get(1L));
+		assertEquals(0, reaper.getReapedCount(Reason.IDLE));
+		assertEquals(1, reaper.getReapedCount(Reason.PAUSED));
+		
+	}
+	
+	@Test
+	void testListenedAgainResetsTheTimer(){
+		
+		MusicPlayer player = idlePlayer(1L);
+		
+		reaper.sweep();
+		
+		when(player.getAudioPlayer().getPlayingTrack()).thenReturn(
+				mock(AudioTrack.class));
+		
+		sweepAfter(IDLE_TIMEOUT - 1);
+		
+		when(player.getAudioPlayer().getPlayingTrack()).thenReturn(null);
+		
+		sweepAfter(1);
+		sweepAfter(IDLE_TIMEOUT - 1);
+		
+		assertSame(player, players.get(1L));
+		
+		sweepAfter(1);
+		
+		assertNull(players.get(1L));
+		
+	}
+	
+	@Test
+	void testPausedAndIdleTimeoutsApplySeparately(){
+		
+		idlePlayer(1L);
+		MusicPlayer paused = pausedPlayer(2L);
+		MusicPlayer alone = listenedPlayer(3L);
+		
+		when(alone.getConnectedChannel().getMembers().get(0).getUser()
+				.isBot()).thenReturn(true);
+		
+		reaper.sweep();
+		sweepAfter(IDLE_TIMEOUT);
+		
+		assertNull(players.get(1L));
+		assertNull(players.get(3L));
+		assertSame(paused, players.get(2L));
+		
+		sweepAfter(PAUSED_TIMEOUT - IDLE_TIMEOUT - 1);
+		
+		assertSame(paused, players.get(2L));
+		
+		sweepAfter(1);
+		
+		assertNull(players.get(2L));
+		assertEquals(1, reaper.getReapedCount(Reason.IDLE));
+		assertEquals(1, reaper.getReapedCount(Reason.ALONE));
+		assertEquals(1, reaper.getReapedCount(Reason.PAUSED));
+		
+	}
+	
+	@Test
+	void testReplacedPlayerIsNotReaped(){
+		
+		MusicPlayer player = idlePlayer(1L);
+		MusicPlayer replacement = mock(MusicPlayer.class);
+		
+		when(player.getNumberOfTracks()).thenReturn(3);
+		
+		reaper.sweep();
+		
+		// A command replaces the player while the sweep is closing it
+		doAnswer(invocation -> {
+			players.put(1L, replacement);
+			return players.remove(1L, player);
+		}).when(musicManager).reapPlayer(1L, player);
+		
+		sweepAfter(IDLE_TIMEOUT);
+		
+		assertSame(replacement, players.get(1L));
+		assertEquals(0, reaper.getReapedCount(Reason.IDLE));
+		assertEquals(0, reaper.getReclaimedTracksCount());
+		
+	}
+	
+}
@@ -0,0 +1,133 @@
+package io.github.vhoyon.bot.utilities.music;
+
+import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrackCacheTest {
+	
+	AtomicLong now;
+	TrackCache cache;
+	
+	@BeforeEach
+	void setUp(){
+		now = new AtomicLong(1000);
+		cache = new TrackCache(2, 100, 10, now::get);
+	}
+	
+	void putTrack(String key, String title){
+		cache.putTracks(key, null, Collections.singletonList(new byte[]{
+			1, 2, 3
+		}), Collections.singletonList(new AudioTrackInfo(title, "author",
+				1000, key, false, null)));
+	}
+	
+	@Test
+	void testNormalize(){
+		assertEquals("youtube:abc", TrackCache.normalize(" https://youtu.be/abc "));
+		assertEquals("youtube:abc", TrackCache
+				.normalize("https://www.youtube.com/watch?v=abc&t=30"));
+		assertEquals("youtube:abc", TrackCache
+				.normalize("http://m.youtube.com/watch?feature=share&v=abc"));
+		assertEquals("youtube.com/watch?v=abc&list=xyz", TrackCache
+				.normalize("https://www.youtube.com/watch?v=abc&list=xyz"));
+		assertEquals("soundcloud.com/artist/song", TrackCache
+				.normalize("https://SoundCloud.com/artist/song#comments"));
+		assertEquals("ytsearch:some song", TrackCache
+				.normalize("ytsearch:Some Song"));
+	}
+	
+	@Test
+	void testTracksExpire(){
+		putTrack("a", "A");
+		
+		TrackCache.Result result = cache.get("a");
+		
+		assertNotNull(result);
+		assertFalse(result.isNoMatch());
+		assertFalse(result.isPlaylist());
+		assertEquals("A", result.getInfos().get(0).title);
+		
+		now.addAndGet(100);
+		
+		assertNull(cache.get("a"));
+		assertEquals(1, cache.getHitsCount());
+		assertEquals(1, cache.getMissesCount());
+	}
+	
+	@Test
+	void testNoMatchesExpireSooner(){
+		cache.putNoMatch("nothing");
+		
+		assertTrue(cache.get("nothing").isNoMatch());
+		
+		now.addAndGet(10);
+		
+		assertNull(cache.get("nothing"));
+	}
+	
+	@Test
+	void testLeastRecentlyUsedIsEvicted(){
+		putTrack("a", "A");
+		putTrack("b", "B");
+		
+		assertNotNull(cache.get("a"));
+		
+		putTrack("c", "C");
+		
+		assertNotNull(cache.get("a"));
+		assertNull(cache.get("b"));
+		assertNotNull(cache.get("c"));
+		assertEquals(2, cache.size());
+	}
+	
+	@Test
+	void testSaveAndLoad() throws Exception{
+		File file = Files.createTempFile("track-cache", ".bin").toFile();
+		
+		try{
+			
+			cache.putTracks("list", "Playlist", Arrays.asList(new byte[]{
+				1
+			}, new byte[]{
+				2, 3
+			}), Arrays.asList(new AudioTrackInfo("One", null, 1, "1", false,
+					"https://example.com/1"), new AudioTrackInfo("Two",
+					"author", 2, "2", true, null)));
+			cache.putNoMatch("nothing");
+			
+			assertEquals(2, cache.save(file));
+			
+			now.addAndGet(50);
+			
+			TrackCache loaded = new TrackCache(2, 100, 10, now::get);
+			
+			// The negative result expired since it was saved
+			assertEquals(1, loaded.load(file));
+			assertNull(loaded.get("nothing"));
+			
+			TrackCache.Result result = loaded.get("list");
+			
+			assertEquals("Playlist", result.getPlaylistName());
+			assertArrayEquals(new byte[]{
+				2, 3
+			}, result.getEncodedTracks().get(1));
+			assertNull(result.getInfos().get(0).author);
+			assertEquals("https://example.com/1", result.getInfos().get(0).uri);
+			assertTrue(result.getInfos().get(1).isStream);
+			
+		}
+		finally{
+			file.delete();
+		}
+	}
+	
+}
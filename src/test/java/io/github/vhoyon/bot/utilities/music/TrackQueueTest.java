@@ -0,0 +1,132 @@
+package io.github.vhoyon.bot.utilities.music;
+
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class TrackQueueTest {
+	
+	TrackQueue queue;
+	List<AudioTrack> tracks;
+	
+	@BeforeEach
+	void setUp(){
+		
+		queue = new TrackQueue();
+		tracks = new ArrayList<>();
+		
+		for(int i = 0; i < 5; i++)
+			tracks.add(mock(AudioTrack.class));
+		
+		queue.addAll(tracks);
+		
+	}
+	
+	@Test
+	void testPollKeepsOrder(){
+		
+		for(AudioTrack track : tracks)
+			assertSame(track, queue.poll());
+		
+		assertNull(queue.poll());
+		assertTrue(queue.isEmpty());
+		
+	}
+	
+	@Test
+	void testSkipToRemovesTracksBefore(){
+		
+		assertSame(tracks.get(3), queue.skipTo(3));
+		
+		assertEquals(1, queue.size());
+		assertSame(tracks.get(4), queue.peek());
+		
+		assertThrows(IndexOutOfBoundsException.class, () -> queue.skipTo(1));
+		
+	}
+	
+	@Test
+	void testRemoveAt(){
+		
+		assertSame(tracks.get(1), queue.removeAt(1));
+		assertSame(tracks.get(3), queue.removeAt(2));
+		
+		assertEquals(Arrays.asList(tracks.get(0), tracks.get(2),
+				tracks.get(4)), queue.toList());
+		
+	}
+	
+	@Test
+	void testMove(){
+		
+		assertSame(tracks.get(4), queue.move(4, 0));
+		assertSame(tracks.get(1), queue.move(2, 3));
+		
+		assertEquals(Arrays.asList(tracks.get(4), tracks.get(0),
+				tracks.get(2), tracks.get(1), tracks.get(3)), queue.toList());
+		
+	}
+	
+	@Test
+	void testGetRange(){
+		
+		assertEquals(tracks.subList(1, 3), queue.getRange(1, 3));
+		assertEquals(tracks.subList(3, 5), queue.getRange(3, 10));
+		assertTrue(queue.getRange(5, 10).isEmpty());
+		
+	}
+	
+	@Test
+	void testShuffleKeepsTracks(){
+		
+		queue.shuffle(new Random(42));
+		
+		List<AudioTrack> shuffled = queue.toList();
+		
+		assertEquals(tracks.size(), shuffled.size());
+		assertTrue(shuffled.containsAll(tracks));
+		
+	}
+	
+	@Test
+	void testOperationsAcrossTheEndOfTheRing(){
+		
+		List<AudioTrack> expected = new ArrayList<>(tracks);
+		
+		// Moves the start of the ring so that the tracks wrap around the array
+		for(int i = 0; i < 14; i++){
+			
+			AudioTrack track = mock(AudioTrack.class);
+			
+			queue.add(track);
+			expected.add(track);
+			
+			assertSame(expected.remove(0), queue.poll());
+			
+		}
+		
+		queue.move(0, 4);
+		expected.add(4, expected.remove(0));
+		
+		assertSame(expected.remove(3), queue.removeAt(3));
+		
+		List<AudioTrack> added = Collections.nCopies(20,
+				mock(AudioTrack.class));
+		
+		queue.addAll(added);
+		expected.addAll(added);
+		
+		assertEquals(expected, queue.toList());
+		
+	}
+	
+}
@@ -0,0 +1,160 @@
+package io.github.vhoyon.bot.utilities.music;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class YouTubeSearchTest {
+	
+	HttpServer server;
+	AtomicInteger requestsCount;
+	CountDownLatch received;
+	CountDownLatch release;
+	AtomicLong now;
+	YouTubeSearch search;
+	
+	@BeforeEach
+	void setUp() throws IOException{
+		requestsCount = new AtomicInteger();
+		received = new CountDownLatch(1);
+		release = new CountDownLatch(0);
+		now = new AtomicLong(1000);
+		
+		// Stand-in for the YouTube Data API
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.createContext("/youtube/v3/search", exchange -> {
+			
+			requestsCount.incrementAndGet();
+			received.countDown();
+			
+			try{
+				release.await(5, TimeUnit.SECONDS);
+			}
+			catch(InterruptedException e){
+				Thread.currentThread().interrupt();
+			}
+			
+			String query = exchange.getRequestURI().getQuery();
+			
+			String body = query.contains("q=nothing") ? "{\"items\":[]}"
+					: "{\"items\":[{\"id\":{\"kind\":\"youtube#video\",\"videoId\":\"abc123\"}}]}";
+			
+			byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+			
+			exchange.getResponseHeaders().set("Content-Type",
+					"application/json");
+			exchange.sendResponseHeaders(200, bytes.length);
+			
+			try(OutputStream output = exchange.getResponseBody()){
+				output.write(bytes);
+			}
+			
+		});
+		server.start();
+		
+		search = new YouTubeSearch("key", "http://127.0.0.1:"
+				+ server.getAddress().getPort() + "/", 100, 10, now::get);
+	}
+	
+	@AfterEach
+	void tearDown(){
+		server.stop(0);
+	}
+	
+	@Test
+	void testResultIsCached() throws Exception{
+		assertEquals("abc123", search.search("Some Song"));
+		assertEquals("abc123", search.search("  some   song "));
+		
+		assertEquals(1, requestsCount.get());
+		assertEquals(1, search.getHitsCount());
+		
+		now.addAndGet(100);
+		
+		assertEquals("abc123", search.search("some song"));
+		assertEquals(2, requestsCount.get());
+	}
+	
+	@Test
+	void testSearchAsyncDoesNotWait() throws Exception{
+		release = new CountDownLatch(1);
+		
+		CompletableFuture<String> result = search.searchAsync("some song");
+		
+		assertTrue(received.await(5, TimeUnit.SECONDS));
+		assertFalse(result.isDone());
+		
+		release.countDown();
+		
+		assertEquals("abc123", result.get(5, TimeUnit.SECONDS));
+	}
+	
+	@Test
+	void testConcurrentSearchesAreCoalesced() throws Exception{
+		release = new CountDownLatch(1);
+		
+		ExecutorService executor = Executors.newFixedThreadPool(9);
+		
+		try{
+			
+			CompletableFuture<String> first = search.searchAsync("same song");
+			
+			// The first search is waiting for YouTube until released
+			assertTrue(received.await(5, TimeUnit.SECONDS));
+			
+			List<Future<String>> results = new ArrayList<>();
+			
+			for(int i = 0; i < 9; i++)
+				results.add(executor.submit(() -> search.search("same song")));
+			
+			// Every caller joins the search in progress while YouTube has not
+			// answered yet
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+			
+			while(search.getCoalescedCount() < 9
+					&& System.nanoTime() < deadline)
+				Thread.sleep(10);
+			
+			assertEquals(9, search.getCoalescedCount());
+			assertEquals(1, requestsCount.get());
+			
+			release.countDown();
+			
+			assertEquals("abc123", first.get(5, TimeUnit.SECONDS));
+			
+			for(Future<String> result : results)
+				assertEquals("abc123", result.get(5, TimeUnit.SECONDS));
+			
+			assertEquals(1, requestsCount.get());
+			assertEquals(1, search.getCallsCount());
+			
+		}
+		finally{
+			executor.shutdownNow();
+		}
+	}
+	
+	@Test
+	void testNoVideoFound(){
+		assertThrows(IOException.class, () -> search.search("nothing"));
+		assertThrows(IOException.class, () -> search.search("nothing"));
+		
+		// Failures are not cached
+		assertEquals(2, requestsCount.get());
+	}
+	
+}
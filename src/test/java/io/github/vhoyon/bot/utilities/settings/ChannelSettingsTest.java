@@ -0,0 +1,101 @@
+package io.github.vhoyon.bot.utilities.settings;
+
+import io.github.vhoyon.bot.utilities.interfaces.Resources;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChannelSettingsTest {
+	
+	ChannelSettings settings;
+	
+	@BeforeEach
+	void setUp(){
+		settings = new ChannelSettings(Resources.SETTINGS);
+	}
+	
+	@Test
+	void testChannelsWithoutOverridesShareTheDefaults(){
+		assertSame(settings.getDefaults(), settings.getSettings(1L, null));
+		assertSame(settings.getDefaults(), settings.getSettings(2L, null));
+		
+		assertFalse(settings.hasOverrides(1L));
+		assertEquals(0, settings.getOverridingChannelsCount());
+	}
+	
+	@Test
+	void testUpdateOverridesOnlyItsChannel(){
+		Integer defaultVolume = settings.getValue(2L, "volume");
+		
+		settings.update(1L, "volume", "30", 30);
+		
+		assertTrue(settings.hasOverrides(1L));
+		assertFalse(settings.hasOverrides(2L));
+		assertEquals(1, settings.getOverridingChannelsCount());
+		
+		assertEquals(Integer.valueOf(30), settings.getValue(1L, "volume"));
+		assertEquals(defaultVolume, settings.getValue(2L, "volume"));
+		
+		assertSame(settings.getDefaults(), settings.getSettings(2L, null));
+	}
+	
+	@Test
+	void testUpdateKeepsTheOtherOverrides(){
+		settings.update(1L, "volume", "30", 30);
+		settings.update(1L, ChannelPrefixes.PREFIX, "!", "!");
+		
+		assertEquals(Integer.valueOf(30), settings.getValue(1L, "volume"));
+		assertEquals("!", settings.getValue(1L, ChannelPrefixes.PREFIX));
+		
+		settings.update(1L, "volume", "40", 40);
+		
+		assertEquals(Integer.valueOf(40), settings.getValue(1L, "volume"));
+		assertEquals("!", settings.getValue(1L, ChannelPrefixes.PREFIX));
+		assertEquals(1, settings.getOverridingChannelsCount());
+	}
+	
+	@Test
+	void testUpdateToDefaultForgetsTheChannel(){
+		Integer defaultVolume = settings.getValue(1L, "volume");
+		
+		settings.update(1L, "volume", "30", 30);
+		settings.update(1L, "volume", null, defaultVolume);
+		
+		assertFalse(settings.hasOverrides(1L));
+		assertEquals(0, settings.getOverridingChannelsCount());
+		assertSame(settings.getDefaults(), settings.getSettings(1L, null));
+	}
+	
+	@Test
+	void testUnknownSettingThrows(){
+		assertThrows(IllegalArgumentException.class,
+				() -> settings.getValue(1L, "unknown"));
+		assertThrows(IllegalArgumentException.class,
+				() -> settings.update(1L, "unknown", "value", "value"));
+	}
+	
+	@Test
+	void testInvalidateReloadsThePrefixes(){
+		ChannelPrefixes prefixes = new ChannelPrefixes(settings);
+		String defaultPrefix = prefixes.getDefaultCommandPrefix();
+		
+		settings.update(1L, ChannelPrefixes.PREFIX, "!", "!");
+		
+		// The cache is only refreshed when invalidated
+		assertEquals(defaultPrefix, prefixes.getCommandPrefix(1L));
+		
+		prefixes.invalidate(1L);
+		
+		assertEquals("!", prefixes.getCommandPrefix(1L));
+		assertEquals(defaultPrefix, prefixes.getCommandPrefix(2L));
+		assertEquals(1, prefixes.getCustomPrefixesCount());
+		
+		settings.update(1L, ChannelPrefixes.PREFIX, null, defaultPrefix);
+		prefixes.invalidate(1L);
+		
+		assertEquals(defaultPrefix, prefixes.getCommandPrefix(1L));
+		assertEquals(0, prefixes.getCustomPrefixesCount());
+	}
+	
+}
@@ -0,0 +1,82 @@
+package io.github.vhoyon.bot.utilities.specifics;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ConfirmationRegistryTest {
+	
+	ConfirmationRegistry registry;
+	
+	@BeforeEach
+	void setUp(){
+		registry = new ConfirmationRegistry(1, 1, TimeUnit.HOURS);
+	}
+	
+	@AfterEach
+	void tearDown(){
+		registry.shutdown();
+		registry = null;
+	}
+	
+	@Test
+	void testTakeWithoutPendingReturnsNull(){
+		assertNull(registry.take(1L, 2L));
+	}
+	
+	@Test
+	void testTakeIsKeyedByChannelAndUser(){
+		CommandConfirmed confirmation = mock(CommandConfirmed.class);
+		
+		registry.register(1L, 2L, confirmation, null);
+		
+		assertNull(registry.take(1L, 3L));
+		assertNull(registry.take(4L, 2L));
+		
+		assertSame(confirmation, registry.take(1L, 2L));
+		assertNull(registry.take(1L, 2L));
+		
+		assertEquals(0, registry.getPendingCount());
+		assertEquals(1, registry.getResolvedCount());
+	}
+	
+	@Test
+	void testRegisterReplacesPreviousOfSameUser(){
+		CommandConfirmed first = mock(CommandConfirmed.class);
+		CommandConfirmed second = mock(CommandConfirmed.class);
+		AtomicInteger forgotten = new AtomicInteger();
+		
+		registry.register(1L, 2L, first, forgotten::incrementAndGet);
+		registry.register(1L, 2L, second, null);
+		registry.register(1L, 5L, first, null);
+		
+		assertEquals(1, forgotten.get());
+		assertEquals(2, registry.getPendingCount());
+		assertSame(second, registry.take(1L, 2L));
+	}
+	
+	@Test
+	void testExpiredConfirmationIsCancelledAndForgotten(){
+		registry.shutdown();
+		registry = new ConfirmationRegistry(20, 10, TimeUnit.MILLISECONDS);
+		
+		CommandConfirmed confirmation = mock(CommandConfirmed.class);
+		AtomicInteger forgotten = new AtomicInteger();
+		
+		registry.register(1L, 2L, confirmation, forgotten::incrementAndGet);
+		
+		verify(confirmation, timeout(2000)).cancelled();
+		
+		assertEquals(1, forgotten.get());
+		assertEquals(1, registry.getExpiredCount());
+		assertEquals(0, registry.getPendingCount());
+		assertNull(registry.take(1L, 2L));
+	}
+	
+}
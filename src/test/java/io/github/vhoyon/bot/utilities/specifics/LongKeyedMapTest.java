@@ -0,0 +1,149 @@
+package io.github.vhoyon.bot.utilities.specifics;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongKeyedMapTest {
+	
+	LongKeyedMap<String> map;
+	
+	@BeforeEach
+	void setUp(){
+		map = new LongKeyedMap<>();
+	}
+	
+	@Test
+	void testPutAndGet(){
+		assertNull(map.put(1L, "one"));
+		assertNull(map.put(400000000000000000L, "snowflake"));
+		
+		assertEquals("one", map.get(1L));
+		assertEquals("snowflake", map.get(400000000000000000L));
+		assertNull(map.get(2L));
+		assertEquals(2, map.size());
+	}
+	
+	@Test
+	void testPutReplaces(){
+		map.put(5L, "first");
+		
+		assertEquals("first", map.put(5L, "second"));
+		assertEquals("second", map.get(5L));
+		assertEquals(1, map.size());
+	}
+	
+	@Test
+	void testRemove(){
+		map.put(5L, "value");
+		
+		assertEquals("value", map.remove(5L));
+		assertNull(map.get(5L));
+		assertNull(map.remove(5L));
+		assertTrue(map.isEmpty());
+		
+		map.put(5L, "again");
+		
+		assertEquals("again", map.get(5L));
+		assertEquals(1, map.size());
+	}
+	
+	@Test
+	void testRemoveOnlyExpectedValue(){
+		String value = new String("value");
+		
+		map.put(5L, value);
+		
+		assertFalse(map.remove(5L, new String("value")));
+		assertEquals(value, map.get(5L));
+		
+		assertTrue(map.remove(5L, value));
+		assertNull(map.get(5L));
+		assertFalse(map.remove(5L, value));
+	}
+	
+	@Test
+	void testGrowsAndKeepsValues(){
+		int amount = 10000;
+		
+		for(long i = 0; i < amount; i++){
+			map.put(i * 4194304L, "v" + i);
+		}
+		
+		assertEquals(amount, map.size());
+		assertTrue(map.capacity() >= amount);
+		
+		for(long i = 0; i < amount; i++){
+			assertEquals("v" + i, map.get(i * 4194304L));
+		}
+	}
+	
+	@Test
+	void testRemovalsDoNotFillTable(){
+		for(long i = 0; i < 10000; i++){
+			map.put(i, "value");
+			map.remove(i);
+		}
+		
+		assertTrue(map.isEmpty());
+		assertTrue(map.capacity() <= 128);
+	}
+	
+	@Test
+	void testComputeIfAbsentCreatesOnce(){
+		AtomicInteger created = new AtomicInteger();
+		
+		String first = map.computeIfAbsent(9L, key -> {
+			created.incrementAndGet();
+			return "created" + key;
+		});
+		String second = map.computeIfAbsent(9L, key -> {
+			created.incrementAndGet();
+			return "other";
+		});
+		
+		assertEquals("created9", first);
+		assertSame(first, second);
+		assertEquals(1, created.get());
+	}
+	
+	@Test
+	void testPutIfAbsentKeepsExistingValue(){
+		assertNull(map.putIfAbsent(9L, "first"));
+		assertEquals("first", map.putIfAbsent(9L, "second"));
+		
+		assertEquals("first", map.get(9L));
+		assertEquals(1, map.size());
+		
+		map.remove(9L);
+		
+		assertNull(map.putIfAbsent(9L, "third"));
+		assertEquals("third", map.get(9L));
+	}
+	
+	@Test
+	void testForEachVisitsEveryEntry(){
+		map.put(1L, "a");
+		map.put(2L, "b");
+		map.put(3L, "c");
+		map.remove(2L);
+		
+		AtomicInteger visited = new AtomicInteger();
+		
+		map.forEach((key, value) -> {
+			visited.incrementAndGet();
+			assertEquals(key == 1L ? "a" : "c", value);
+		});
+		
+		assertEquals(2, visited.get());
+	}
+	
+	@Test
+	void testNullValueThrows(){
+		assertThrows(NullPointerException.class, () -> map.put(1L, null));
+	}
+	
+}
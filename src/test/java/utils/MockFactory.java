@@ -3,6 +3,8 @@ package utils;
 import io.github.vhoyon.bot.app.CommandRouter;
 import io.github.vhoyon.vramework.objects.Request;
 import io.github.vhoyon.vramework.utilities.settings.Setting;
+import net.dv8tion.jda.core.entities.*;
+import net.dv8tion.jda.core.events.message.MessageReceivedEvent;
 
 import static org.mockito.Mockito.*;
 
@@ -23,4 +25,42 @@ public class MockFactory {
 		return router;
 	}
 	
+	public static MessageReceivedEvent createMessageEvent(long guildId,
+			long channelId, long userId, String message){
+		// Stub only mocks does not record their invocations, so they can be
+		// reused millions of times (such as in the benchmarks)
+		MessageReceivedEvent event = mock(MessageReceivedEvent.class,
+				withSettings().stubOnly().defaultAnswer(RETURNS_DEEP_STUBS));
+		
+		Guild guild = mock(Guild.class, withSettings().stubOnly()
+				.defaultAnswer(RETURNS_DEEP_STUBS));
+		TextChannel channel = mock(TextChannel.class, withSettings()
+				.stubOnly().defaultAnswer(RETURNS_DEEP_STUBS));
+		User author = mock(User.class, withSettings().stubOnly());
+		Message eventMessage = mock(Message.class, withSettings().stubOnly());
+		
+		doReturn(guildId).when(guild).getIdLong();
+		doReturn(Long.toString(guildId)).when(guild).getId();
+		
+		doReturn(channelId).when(channel).getIdLong();
+		doReturn(Long.toString(channelId)).when(channel).getId();
+		doReturn(guild).when(channel).getGuild();
+		
+		doReturn(userId).when(author).getIdLong();
+		doReturn(Long.toString(userId)).when(author).getId();
+		
+		doReturn(message).when(eventMessage).getContentRaw();
+		doReturn(message).when(eventMessage).getContentDisplay();
+		
+		doReturn(guild).when(event).getGuild();
+		doReturn(channel).when(event).getChannel();
+		doReturn(channel).when(event).getTextChannel();
+		doReturn(author).when(event).getAuthor();
+		doReturn(eventMessage).when(event).getMessage();
+		doReturn(ChannelType.TEXT).when(event).getChannelType();
+		doReturn(true).when(event).isFromType(ChannelType.TEXT);
+		
+		return event;
+	}
+	
 }